@@ -0,0 +1,118 @@
+package org.trvedata.crdt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trvedata.crdt.operation.Operation;
+
+/**
+ * Passes batches of operations on to another listener on an executor, so that a slow listener (e.g. a UI or a search
+ * indexer) does not hold up the processing of incoming messages. Batches are delivered one at a time. Once
+ * maxQueuedBatches batches are waiting for delivery, each further batch is coalesced into the last waiting batch from
+ * the same source, so a listener that falls behind receives fewer, larger batches rather than a growing queue of calls.
+ * The queue therefore never holds more than maxQueuedBatches batches plus one per source. Operations from one source
+ * are always delivered in order, but a coalesced batch may overtake batches from other sources.
+ */
+public class AsyncBatchListener implements CRDTBatchListener {
+	private static final Logger log = LoggerFactory.getLogger(AsyncBatchListener.class);
+
+	private static class Batch {
+		final Object source;
+		final List<Operation> operations;
+
+		Batch(Object source, List<Operation> operations) {
+			this.source = source;
+			this.operations = new ArrayList<Operation>(operations);
+		}
+	}
+
+	private final CRDTBatchListener delegate;
+	private final Executor executor;
+	private final int maxQueuedBatches;
+	private final ArrayDeque<Batch> queue = new ArrayDeque<Batch>();
+	// The last waiting batch from each source, into which further batches from that source are coalesced
+	private final HashMap<Object, Batch> lastBatchBySource = new HashMap<Object, Batch>();
+	private boolean draining = false;
+	private long coalescedBatchCount = 0;
+
+	private final Runnable drain = new Runnable() {
+		@Override
+		public void run() {
+			while (true) {
+				Batch batch;
+				synchronized (queue) {
+					batch = queue.poll();
+					if (batch == null) {
+						draining = false;
+						return;
+					}
+					if (lastBatchBySource.get(batch.source) == batch)
+						lastBatchBySource.remove(batch.source);
+				}
+				try {
+					delegate.onOperations(batch.source, batch.operations);
+				} catch (RuntimeException e) {
+					log.error("Batch listener {} failed", delegate, e);
+				}
+			}
+		}
+	};
+
+	public AsyncBatchListener(CRDTBatchListener delegate, Executor executor, int maxQueuedBatches) {
+		if (maxQueuedBatches < 1)
+			throw new IllegalArgumentException("maxQueuedBatches must be >= 1: " + maxQueuedBatches);
+		this.delegate = delegate;
+		this.executor = executor;
+		this.maxQueuedBatches = maxQueuedBatches;
+	}
+
+	@Override
+	public void onOperations(Object source, List<Operation> operations) {
+		synchronized (this.queue) {
+			Batch last = this.lastBatchBySource.get(source);
+			if (last != null && this.queue.size() >= this.maxQueuedBatches) {
+				last.operations.addAll(operations);
+				this.coalescedBatchCount++;
+			} else {
+				Batch batch = new Batch(source, operations);
+				this.queue.addLast(batch);
+				this.lastBatchBySource.put(source, batch);
+			}
+			if (this.draining)
+				return;
+			this.draining = true;
+		}
+		try {
+			this.executor.execute(this.drain);
+		} catch (RuntimeException e) {
+			// Let the next batch try again, rather than leaving the queue stuck behind a drain that never runs
+			synchronized (this.queue) {
+				this.draining = false;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Number of batches waiting for delivery.
+	 */
+	public int queuedBatchCount() {
+		synchronized (this.queue) {
+			return this.queue.size();
+		}
+	}
+
+	/**
+	 * Number of batches that were merged into a waiting batch because the queue was full.
+	 */
+	public long coalescedBatchCount() {
+		synchronized (this.queue) {
+			return this.coalescedBatchCount;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package org.trvedata.crdt;
+
+import java.util.Map;
+
+/**
+ * Describes why operations from a peer are buffered rather than applied: they depend on messages from other peers
+ * that have not been processed yet.
+ */
+public class BlockedDependency {
+	private final PeerID blockedPeerId;
+	private final Map<PeerID, Long> missingMsgCounts;
+	private final long blockedSinceMillis;
+
+	public BlockedDependency(PeerID blockedPeerId, Map<PeerID, Long> missingMsgCounts, long blockedSinceMillis) {
+		this.blockedPeerId = blockedPeerId;
+		this.missingMsgCounts = missingMsgCounts;
+		this.blockedSinceMillis = blockedSinceMillis;
+	}
+
+	/**
+	 * The peer whose operations are buffered.
+	 */
+	public PeerID getBlockedPeerId() {
+		return blockedPeerId;
+	}
+
+	/**
+	 * For each peer whose messages are missing, the message count that needs to be reached.
+	 */
+	public Map<PeerID, Long> getMissingMsgCounts() {
+		return missingMsgCounts;
+	}
+
+	/**
+	 * Wall-clock time (milliseconds since the epoch) since which operations from the blocked peer have been waiting.
+	 */
+	public long getBlockedSinceMillis() {
+		return blockedSinceMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "BlockedDependency [blockedPeerId=" + blockedPeerId + ", missingMsgCounts=" + missingMsgCounts
+				+ ", blockedSinceMillis=" + blockedSinceMillis + "]";
+	}
+}
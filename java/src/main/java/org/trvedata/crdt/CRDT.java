@@ -1,13 +1,126 @@
 package org.trvedata.crdt;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.trvedata.crdt.metrics.Metrics;
 import org.trvedata.crdt.operation.ChangingOperation;
+import org.trvedata.crdt.operation.Operation;
 
 public abstract class CRDT {
 	
 	protected Peer peer;
+	private ItemID objectId;
+	private final Set<CRDTEventListener> eventListeners = new HashSet<CRDTEventListener>();
+	private final Set<CRDTBatchListener> batchListeners = new HashSet<CRDTBatchListener>();
+	// Operations applied since the last batch was dispatched, or null if there are none
+	private List<Operation> pendingBatch = null;
 	
 	public abstract void applyOperation(ChangingOperation changingOp);
 
+	/**
+	 * Rewrites operations that have been generated locally but not yet sent into a cheaper form with the same effect,
+	 * e.g. by dropping operations that cancel each other out. Called by the peer when it makes a message, if
+	 * coalescing is enabled. The default implementation returns the operations unchanged.
+	 */
+	public Deque<Operation> coalesce(Deque<Operation> operations) {
+		return operations;
+	}
+
+	/**
+	 * Returns operations that bring a peer that has seen the given version up to date with this object, i.e. that
+	 * recreate all items and deletions it has not seen. Applying them in order, with
+	 * {@link #applyOperation(ChangingOperation)}, must be valid on any replica that has seen that version.
+	 */
+	public abstract List<ChangingOperation> delta(VersionVector remoteVersion);
+
+	/**
+	 * Applies operations produced by {@link #delta(VersionVector)} on another peer. Since this peer may have seen
+	 * some of them already by the time the delta arrives, implementations must skip operations whose effect is
+	 * already present. The default implementation applies all of them, which is only correct for idempotent
+	 * operations.
+	 */
+	public void applyDelta(List<ChangingOperation> operations) {
+		for (ChangingOperation operation : operations)
+			applyOperation(operation);
+	}
+
+	public void addEventListener(CRDTEventListener listener) {
+		this.eventListeners.add(listener);
+	}
+
+	public void removeEventListener(CRDTEventListener listener) {
+		this.eventListeners.remove(listener);
+	}
+
+	public void addBatchListener(CRDTBatchListener listener) {
+		this.batchListeners.add(listener);
+	}
+
+	public void removeBatchListener(CRDTBatchListener listener) {
+		this.batchListeners.remove(listener);
+	}
+
+	public void onOperation(Operation op) {
+		for (CRDTEventListener listener : this.eventListeners)
+			listener.onOperation(this, op);
+		if (!this.batchListeners.isEmpty()) {
+			if (this.pendingBatch == null)
+				this.pendingBatch = new ArrayList<Operation>();
+			this.pendingBatch.add(op);
+		}
+	}
+
+	/**
+	 * Passes the operations applied since the last call to the batch listeners. Called by the peer when it has
+	 * applied a message or a state delta in full.
+	 */
+	void dispatchBatch() {
+		if (this.pendingBatch == null)
+			return;
+		List<Operation> batch = Collections.unmodifiableList(this.pendingBatch);
+		this.pendingBatch = null;
+		for (CRDTBatchListener listener : this.batchListeners)
+			listener.onOperations(this, batch);
+	}
+
+	/**
+	 * Sends a locally generated operation to other peers, tagged with the ID of this object.
+	 */
+	protected void sendOperation(ChangingOperation operation) {
+		operation.setTarget(this.objectId);
+		this.peer.sendOperation(operation);
+	}
+
+	/**
+	 * Returns <code>true</code> if the given operation modifies this object.
+	 */
+	protected boolean isOwnOperation(Operation operation) {
+		if (!(operation instanceof ChangingOperation))
+			return false;
+		ItemID target = ((ChangingOperation) operation).getTarget();
+		return target == null ? this.objectId == null : target.equals(this.objectId);
+	}
+
+	/**
+	 * Called when the object is attached to a peer, to register its metrics (e.g. gauges for its size) with the
+	 * peer's registry. Metric names should start with the given prefix. The default implementation registers none.
+	 */
+	protected void registerMetrics(Metrics metrics, String prefix) {
+	}
+
+	/**
+	 * Called on the peer's thread whenever the peer publishes its gauges: after it has processed received messages,
+	 * and when it makes a message. Objects whose gauges measure state that is not thread-safe register
+	 * {@link org.trvedata.crdt.metrics.SettableGauge}s and set them here. The default implementation does nothing.
+	 */
+	protected void publishGauges() {
+	}
+
 	public Peer getPeer() {
 		return peer;
 	}
@@ -15,4 +128,16 @@ public abstract class CRDT {
 	void setPeer(Peer peer) {
 		this.peer = peer;
 	}
+
+	/**
+	 * Returns the ID under which this object is registered with its peer, or <code>null</code> if it is the peer's
+	 * root object.
+	 */
+	public ItemID getObjectId() {
+		return objectId;
+	}
+
+	void setObjectId(ItemID objectId) {
+		this.objectId = objectId;
+	}
 }
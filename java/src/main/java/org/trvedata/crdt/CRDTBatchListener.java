@@ -0,0 +1,15 @@
+package org.trvedata.crdt;
+
+import java.util.List;
+
+import org.trvedata.crdt.operation.Operation;
+
+/**
+ * Receives the remote operations applied to a CRDT object in batches, rather than one call per operation like a
+ * {@link CRDTEventListener}: a batch is dispatched whenever the peer has applied a message in full, and contains
+ * all operations applied since the previous batch (usually just that message's, unless waiting for causal
+ * dependencies interleaved it with others). A state delta is dispatched as one batch per object.
+ */
+public interface CRDTBatchListener {
+	void onOperations(Object source, List<Operation> operations);
+}
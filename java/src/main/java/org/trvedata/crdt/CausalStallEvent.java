@@ -0,0 +1,32 @@
+package org.trvedata.crdt;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event emitted when a message that could not be applied on arrival, because it was waiting for
+ * causal dependencies, has finally been applied.
+ */
+@Name("org.trvedata.crdt.CausalStall")
+@Label("Causal Stall")
+@Category("trvesync")
+@Description("A message that was buffered until its causal dependencies arrived")
+@Enabled(false)
+@StackTrace(false)
+class CausalStallEvent extends Event {
+	@Label("Origin Peer")
+	String originPeerId;
+
+	@Label("Message Counter")
+	long msgCounter;
+
+	@Label("Wait Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long waitNanos;
+}
@@ -0,0 +1,20 @@
+package org.trvedata.crdt;
+
+/**
+ * Controls when a peer emits clock updates, i.e. tells other peers which messages it has received since its last
+ * clock update.
+ */
+public enum ClockUpdateMode {
+	/**
+	 * A clock update is emitted before every operation that follows the receipt of new messages. A message may contain
+	 * several of them if messages are received between local operations.
+	 */
+	PER_OPERATION,
+
+	/**
+	 * At most one clock update is emitted per message, when the message is made. It covers everything received up to
+	 * that point and goes before all operations in the message, so receivers may wait for slightly more dependencies
+	 * than strictly necessary, but in a busy channel the clock updates no longer dominate the message content.
+	 */
+	PER_MESSAGE
+}
@@ -0,0 +1,31 @@
+package org.trvedata.crdt;
+
+import java.util.List;
+
+/**
+ * Packet of cursor positions broadcast from one peer to the others. Unlike a {@link Message}, a cursor message is not
+ * part of the causal history: it has no message counter, is never buffered waiting for dependencies, and need not be
+ * persisted. Losing one is harmless, since the next one supersedes it.
+ */
+public class CursorMessage {
+	private final PeerID originPeerId;
+	private final List<CursorUpdate> updates;
+
+	public CursorMessage(PeerID originPeerId, List<CursorUpdate> updates) {
+		this.originPeerId = originPeerId;
+		this.updates = updates;
+	}
+
+	public PeerID getOriginPeerId() {
+		return originPeerId;
+	}
+
+	public List<CursorUpdate> getUpdates() {
+		return updates;
+	}
+
+	@Override
+	public String toString() {
+		return "CursorMessage [originPeerId=" + originPeerId + ", updates=" + updates + "]";
+	}
+}
@@ -0,0 +1,125 @@
+package org.trvedata.crdt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the cursor positions of the local peer and of the other peers editing a document. Cursor positions are
+ * ephemeral last-value-wins registers, one per peer: they are exchanged in {@link CursorMessage}s outside the causal
+ * delivery path, so they never wait for document operations or hold them up. A position may refer to an item that has
+ * not arrived yet, in which case it cannot be resolved to an index until it does.
+ *
+ * Moves of the local cursor are coalesced: only the latest position is sent when the next cursor message is made.
+ */
+public class CursorTracker {
+	// Last epoch handed out in this process, so that trackers created within the same millisecond get distinct ones
+	private static final AtomicLong lastEpoch = new AtomicLong();
+
+	private final Peer peer;
+	private final Map<PeerID, CursorUpdate> cursorsByPeerId = new HashMap<PeerID, CursorUpdate>();
+	private final long epoch;
+	private long localSeq = 0;
+	private boolean localCursorChanged = false;
+
+	CursorTracker(Peer peer) {
+		this.peer = peer;
+		this.epoch = nextEpoch();
+	}
+
+	/*
+	 * Returns the wall clock time in milliseconds, or a greater value if that has already been used. A peer that
+	 * restarts therefore numbers its cursor updates in a greater epoch than before, as long as the clock has not gone
+	 * back by more than the time the restart took.
+	 */
+	private static long nextEpoch() {
+		while (true) {
+			long last = lastEpoch.get();
+			long epoch = Math.max(System.currentTimeMillis(), last + 1);
+			if (lastEpoch.compareAndSet(last, epoch))
+				return epoch;
+		}
+	}
+
+	/**
+	 * Moves the local cursor to the item with the given ID (or to the end of the document if <code>null</code>).
+	 */
+	public void setLocalCursor(ItemID position) {
+		PeerID ownPeerId = this.peer.getPeerId();
+		this.cursorsByPeerId.put(ownPeerId, new CursorUpdate(ownPeerId, this.epoch, ++this.localSeq, position));
+		this.localCursorChanged = true;
+		this.peer.cursorMoved();
+	}
+
+	/**
+	 * Returns <code>true</code> if the local cursor has moved since the last cursor message was made.
+	 */
+	public boolean anythingToSend() {
+		return this.localCursorChanged;
+	}
+
+	/**
+	 * Returns a message with the latest position of the local cursor, or <code>null</code> if it has not moved since
+	 * the last call.
+	 */
+	public CursorMessage makeCursorMessage() {
+		if (!this.localCursorChanged)
+			return null;
+		this.localCursorChanged = false;
+		CursorUpdate update = this.cursorsByPeerId.get(this.peer.getPeerId());
+		return new CursorMessage(this.peer.getPeerId(), Collections.singletonList(update));
+	}
+
+	/**
+	 * Applies the cursor positions in a message received from another peer. Updates older than the position we
+	 * already know for a peer (see {@link CursorUpdate#isNewerThan(CursorUpdate)}) are ignored, as are updates for
+	 * our own cursor.
+	 */
+	public void processCursorMessage(CursorMessage message) {
+		for (CursorUpdate update : message.getUpdates()) {
+			if (update.getPeerId().equals(this.peer.getPeerId()))
+				continue;
+			CursorUpdate current = this.cursorsByPeerId.get(update.getPeerId());
+			if (current == null || update.isNewerThan(current))
+				this.cursorsByPeerId.put(update.getPeerId(), update);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the cursor position of the given peer is known.
+	 */
+	public boolean hasCursor(PeerID peerId) {
+		return this.cursorsByPeerId.containsKey(peerId);
+	}
+
+	/**
+	 * Returns the cursor position of the given peer: the ID of the item at the cursor, or <code>null</code> if the
+	 * cursor is at the end of the document or unknown (see {@link #hasCursor(PeerID)}).
+	 */
+	public ItemID getCursor(PeerID peerId) {
+		CursorUpdate update = this.cursorsByPeerId.get(peerId);
+		return update == null ? null : update.getPosition();
+	}
+
+	/**
+	 * Returns the latest known cursor update of every peer, including the local one.
+	 */
+	public List<CursorUpdate> getCursors() {
+		return new ArrayList<CursorUpdate>(this.cursorsByPeerId.values());
+	}
+
+	/**
+	 * Forgets the cursor of a peer that has left the document.
+	 */
+	public void removeCursor(PeerID peerId) {
+		this.cursorsByPeerId.remove(peerId);
+	}
+
+	@Override
+	public String toString() {
+		return "CursorTracker [cursorsByPeerId=" + cursorsByPeerId + "]";
+	}
+}
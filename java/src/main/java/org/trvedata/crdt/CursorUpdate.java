@@ -0,0 +1,52 @@
+package org.trvedata.crdt;
+
+/**
+ * The cursor position of one peer. The position is the ID of the item at the cursor (the item that would be deleted by
+ * pressing the delete key), or <code>null</code> if the cursor is at the end of the document. Each peer numbers its
+ * cursor updates sequentially within an epoch, which is taken from the wall clock when the peer starts, so that a
+ * receiver can ignore updates that arrive out of order even across a restart of the peer.
+ */
+public class CursorUpdate {
+	private final PeerID peerId;
+	private final long epoch;
+	private final long seq;
+	private final ItemID position;
+
+	public CursorUpdate(PeerID peerId, long epoch, long seq, ItemID position) {
+		this.peerId = peerId;
+		this.epoch = epoch;
+		this.seq = seq;
+		this.position = position;
+	}
+
+	public PeerID getPeerId() {
+		return peerId;
+	}
+
+	public long getEpoch() {
+		return epoch;
+	}
+
+	public long getSeq() {
+		return seq;
+	}
+
+	/**
+	 * Returns <code>true</code> if this update was made after the given one by the same peer: in a later epoch, or
+	 * later in the same epoch.
+	 */
+	public boolean isNewerThan(CursorUpdate other) {
+		if (epoch != other.epoch)
+			return epoch > other.epoch;
+		return seq > other.seq;
+	}
+
+	public ItemID getPosition() {
+		return position;
+	}
+
+	@Override
+	public String toString() {
+		return "CursorUpdate [peerId=" + peerId + ", epoch=" + epoch + ", seq=" + seq + ", position=" + position + "]";
+	}
+}
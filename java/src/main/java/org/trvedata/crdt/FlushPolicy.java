@@ -0,0 +1,109 @@
+package org.trvedata.crdt;
+
+/**
+ * Configuration for a {@link MessageScheduler}: decides how long operations may wait in a peer's send buffer, and how
+ * many of them may go into one message.
+ *
+ * A batch is flushed as soon as it reaches maxOps operations or maxBytes (estimated) bytes. Otherwise it waits for
+ * the linger time, measured from the first operation of the batch. The linger time adapts to the observed network
+ * round-trip time: it is half the smoothed RTT, bounded by minLingerMillis and maxLingerMillis. On a slow link a few
+ * more milliseconds of waiting cost little compared to the RTT and let bulk edits share a message; on a fast link
+ * messages go out quickly. While the scheduler is in interactive mode (e.g. the user is typing), the linger time is
+ * interactiveLingerMillis instead, which should be just long enough to group the operations of a single keystroke.
+ * The same limits cap the size of each message: a batch that has grown beyond them before the flush runs (e.g. a
+ * bulk edit made while holding the peer's monitor) is split into several messages.
+ *
+ * Cursor moves are sent separately from operations, at most once per cursorFlushMillis, with only the latest position.
+ */
+public class FlushPolicy {
+	private int maxOps = 1000;
+	private int maxBytes = 64 * 1024;
+	private long minLingerMillis = 5;
+	private long maxLingerMillis = 200;
+	private long interactiveLingerMillis = 2;
+	private long cursorFlushMillis = 50;
+
+	public int getMaxOps() {
+		return maxOps;
+	}
+
+	public FlushPolicy setMaxOps(int maxOps) {
+		if (maxOps < 1)
+			throw new IllegalArgumentException("maxOps must be >= 1: " + maxOps);
+		this.maxOps = maxOps;
+		return this;
+	}
+
+	public int getMaxBytes() {
+		return maxBytes;
+	}
+
+	public FlushPolicy setMaxBytes(int maxBytes) {
+		if (maxBytes < 1)
+			throw new IllegalArgumentException("maxBytes must be >= 1: " + maxBytes);
+		this.maxBytes = maxBytes;
+		return this;
+	}
+
+	public long getMinLingerMillis() {
+		return minLingerMillis;
+	}
+
+	public FlushPolicy setMinLingerMillis(long minLingerMillis) {
+		if (minLingerMillis < 0)
+			throw new IllegalArgumentException("minLingerMillis must be >= 0: " + minLingerMillis);
+		this.minLingerMillis = minLingerMillis;
+		return this;
+	}
+
+	public long getMaxLingerMillis() {
+		return maxLingerMillis;
+	}
+
+	public FlushPolicy setMaxLingerMillis(long maxLingerMillis) {
+		if (maxLingerMillis < 0)
+			throw new IllegalArgumentException("maxLingerMillis must be >= 0: " + maxLingerMillis);
+		this.maxLingerMillis = maxLingerMillis;
+		return this;
+	}
+
+	public long getInteractiveLingerMillis() {
+		return interactiveLingerMillis;
+	}
+
+	public FlushPolicy setInteractiveLingerMillis(long interactiveLingerMillis) {
+		if (interactiveLingerMillis < 0)
+			throw new IllegalArgumentException("interactiveLingerMillis must be >= 0: " + interactiveLingerMillis);
+		this.interactiveLingerMillis = interactiveLingerMillis;
+		return this;
+	}
+
+	public long getCursorFlushMillis() {
+		return cursorFlushMillis;
+	}
+
+	public FlushPolicy setCursorFlushMillis(long cursorFlushMillis) {
+		if (cursorFlushMillis < 0)
+			throw new IllegalArgumentException("cursorFlushMillis must be >= 0: " + cursorFlushMillis);
+		this.cursorFlushMillis = cursorFlushMillis;
+		return this;
+	}
+
+	/**
+	 * Returns the linger time to use for non-interactive batches, given the smoothed round-trip time in milliseconds
+	 * (negative if no round trip has been observed yet).
+	 */
+	public long lingerMillis(double smoothedRttMillis) {
+		if (smoothedRttMillis < 0)
+			return maxLingerMillis;
+		long linger = (long) (smoothedRttMillis / 2);
+		return Math.max(minLingerMillis, Math.min(maxLingerMillis, linger));
+	}
+
+	@Override
+	public String toString() {
+		return "FlushPolicy [maxOps=" + maxOps + ", maxBytes=" + maxBytes + ", minLingerMillis=" + minLingerMillis
+				+ ", maxLingerMillis=" + maxLingerMillis + ", interactiveLingerMillis=" + interactiveLingerMillis
+				+ ", cursorFlushMillis=" + cursorFlushMillis + "]";
+	}
+}
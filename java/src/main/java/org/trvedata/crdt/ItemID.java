@@ -1,6 +1,10 @@
 package org.trvedata.crdt;
 
-public class ItemID implements Comparable<ItemID> {
+import java.io.Serializable;
+
+public class ItemID implements Comparable<ItemID>, Serializable {
+	private static final long serialVersionUID = 1L;
+
 	private long logicalTs;
 	private PeerID peerId;
 
@@ -25,6 +29,10 @@ public class ItemID implements Comparable<ItemID> {
 		this.logicalTs = logicalTs;
 	}
 
+	public PeerID getPeerId() {
+		return peerId;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		ItemID o = (ItemID) obj;
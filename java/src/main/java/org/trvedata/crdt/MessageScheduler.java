@@ -0,0 +1,187 @@
+package org.trvedata.crdt;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the operations buffered in a {@link Peer} as messages, at times chosen by a {@link FlushPolicy}, so that the
+ * application does not have to decide when to call {@link Peer#makeMessage()}.
+ *
+ * Flushes run on the given executor. The scheduler calls makeMessage() while holding the peer's monitor, so while a
+ * scheduler is attached, application code that edits the document or processes incoming messages must synchronize
+ * on the peer as well.
+ */
+public class MessageScheduler {
+	private static final Logger log = LoggerFactory.getLogger(MessageScheduler.class);
+
+	/**
+	 * Receives the messages made by the scheduler, in order. Called on an executor thread.
+	 */
+	public interface MessageSink {
+		void sendMessage(Message message);
+
+		void sendCursorMessage(CursorMessage message);
+	}
+
+	private final Peer peer;
+	private final FlushPolicy policy;
+	private final MessageSink sink;
+	private final ScheduledExecutorService executor;
+	private final Object sendLock = new Object();
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+
+	private final Runnable cursorFlushTask = new Runnable() {
+		@Override
+		public void run() {
+			flushCursors();
+		}
+	};
+
+	private ScheduledFuture<?> pendingFlush;
+	private ScheduledFuture<?> pendingCursorFlush;
+	private long pendingFlushDeadline;
+	private boolean interactive = false;
+	private double smoothedRttMillis = -1;
+
+	public MessageScheduler(Peer peer, FlushPolicy policy, MessageSink sink, ScheduledExecutorService executor) {
+		this.peer = peer;
+		this.policy = policy;
+		this.sink = sink;
+		this.executor = executor;
+		synchronized (peer) {
+			peer.setMessageScheduler(this);
+		}
+	}
+
+	/**
+	 * In interactive mode, batches are sent after the (short) interactive linger time rather than the adaptive one.
+	 * Applications should switch it on while the user is typing and off during bulk imports.
+	 */
+	public synchronized void setInteractive(boolean interactive) {
+		this.interactive = interactive;
+	}
+
+	public synchronized boolean isInteractive() {
+		return interactive;
+	}
+
+	/**
+	 * Records the round-trip time of one message, as observed by the transport. The smoothed value is an
+	 * exponentially weighted moving average (with the same weight of 1/8 that TCP uses).
+	 */
+	public synchronized void recordRoundTrip(long rttMillis) {
+		if (rttMillis < 0)
+			throw new IllegalArgumentException("rttMillis must be >= 0: " + rttMillis);
+		if (smoothedRttMillis < 0)
+			smoothedRttMillis = rttMillis;
+		else
+			smoothedRttMillis += (rttMillis - smoothedRttMillis) / 8;
+	}
+
+	public synchronized double getSmoothedRttMillis() {
+		return smoothedRttMillis;
+	}
+
+	/*
+	 * Called by the peer (with its monitor held) every time an operation is added to the send buffer.
+	 */
+	void operationQueued() {
+		if (peer.pendingOperationCount() >= policy.getMaxOps() || peer.pendingBytes() >= policy.getMaxBytes()) {
+			scheduleFlush(0);
+		} else {
+			synchronized (this) {
+				scheduleFlush(interactive ? policy.getInteractiveLingerMillis() : policy.lingerMillis(smoothedRttMillis));
+			}
+		}
+	}
+
+	/*
+	 * Called by the peer (with its monitor held) when the local cursor has moved. Further moves within the cursor
+	 * flush window are coalesced into the one cursor message.
+	 */
+	synchronized void cursorMoved() {
+		if (pendingCursorFlush == null)
+			pendingCursorFlush = executor.schedule(cursorFlushTask, policy.getCursorFlushMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * Makes sure a flush happens within delayMillis. A flush that is already scheduled earlier is left alone, so the
+	 * linger time counts from the first operation of a batch.
+	 */
+	private synchronized void scheduleFlush(long delayMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+		if (pendingFlush != null) {
+			if (pendingFlushDeadline - deadline <= 0)
+				return;
+			pendingFlush.cancel(false);
+		}
+		pendingFlushDeadline = deadline;
+		pendingFlush = executor.schedule(flushTask, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends everything that is currently buffered, without waiting for the linger time. The buffer is split into
+	 * messages of at most maxOps operations and maxBytes bytes, as set by the policy.
+	 */
+	public void flush() {
+		synchronized (this) {
+			pendingFlush = null;
+		}
+		// Hold sendLock until the sink has the messages, so that they reach it in msgCounter order even if the
+		// executor runs flushes on several threads.
+		synchronized (sendLock) {
+			while (true) {
+				final Message message;
+				synchronized (peer) {
+					if (!peer.anythingToSend())
+						return;
+					message = peer.makeMessage(policy.getMaxOps(), policy.getMaxBytes());
+				}
+				log.debug("Peer {}: flushing {} operations", peer.getPeerId(), message.getOperations().size());
+				sink.sendMessage(message);
+			}
+		}
+	}
+
+	/**
+	 * Sends the latest position of the local cursor, if it has moved since it was last sent.
+	 */
+	public void flushCursors() {
+		synchronized (this) {
+			pendingCursorFlush = null;
+		}
+		final CursorMessage message;
+		synchronized (peer) {
+			message = peer.getCursors().makeCursorMessage();
+		}
+		if (message != null)
+			sink.sendCursorMessage(message);
+	}
+
+	/**
+	 * Detaches the scheduler from the peer and cancels any pending flush. Operations that are still buffered stay in
+	 * the peer's send buffer.
+	 */
+	public void close() {
+		synchronized (peer) {
+			peer.setMessageScheduler(null);
+		}
+		synchronized (this) {
+			if (pendingFlush != null)
+				pendingFlush.cancel(false);
+			if (pendingCursorFlush != null)
+				pendingCursorFlush.cancel(false);
+			pendingFlush = null;
+			pendingCursorFlush = null;
+		}
+	}
+}
@@ -2,31 +2,88 @@ package org.trvedata.crdt;
 
 import java.security.SecureRandom;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.trvedata.crdt.metrics.Counter;
+import org.trvedata.crdt.metrics.Histogram;
+import org.trvedata.crdt.metrics.Metrics;
+import org.trvedata.crdt.metrics.SettableGauge;
 import org.trvedata.crdt.operation.ChangingOperation;
 import org.trvedata.crdt.operation.LocalClockUpdate;
 import org.trvedata.crdt.operation.MessageHistory;
 import org.trvedata.crdt.operation.MessageProcessed;
 import org.trvedata.crdt.operation.Operation;
 import org.trvedata.crdt.operation.OperationList;
+import org.trvedata.crdt.operation.OperationSize;
 import org.trvedata.crdt.orderedlist.OrderedList;
 
 public class Peer {
 	private static final Logger log = LoggerFactory.getLogger(Peer.class);
+	private static final Comparator<Message> MESSAGE_COUNTER_ORDER = new Comparator<Message>() {
+		@Override
+		public int compare(Message m1, Message m2) {
+			return Long.compare(m1.getMsgCounter(), m2.getMsgCounter());
+		}
+	};
 	
 	private final PeerID ownPeerID;
 	private final PeerMatrix peerMatrix;
 	private final CRDT crdt;
-	private final Map<PeerID, Deque<Operation>> recvBuf = new HashMap<PeerID, Deque<Operation>>();;
+	private final Map<ItemID, CRDT> objectsById = new HashMap<ItemID, CRDT>();
+	// Objects changed by the message currently being applied, whose batch listeners are called when it is complete
+	private final Set<CRDT> changedObjects = new LinkedHashSet<CRDT>();
+	private final ReceiveBuffer recvBuf = new ReceiveBuffer();
+	// Highest msgCounter received from each peer, whether applied or still in recvBuf. Messages from one peer are only
+	// added to recvBuf in order, so everything up to this counter has been received already.
+	// Messages that arrive ahead of an earlier message from the same peer are held in recvBuf, and added to its queue
+	// once the gap before them has been filled.
+	private final Map<PeerID, Long> receivedMsgCounters = new HashMap<PeerID, Long>();
 	private final MessageHistory messageHistory = new MessageHistory();
+	private final CursorTracker cursors = new CursorTracker(this);
 	private Deque<Operation> sendBuf = new ArrayDeque<Operation>();
+	private int sendBufBytes = 0;
+	// Whether sendBuf has been coalesced since an operation was last added to it
+	private boolean sendBufCoalesced = true;
 	private long logicalTs = 0;
+	private final VersionVector versionVector = new VersionVector();
+	private long appliedOperationCount = 0;
+	private long bufferedOperationCount = 0;
+	private long duplicateMessageCount = 0;
+	private boolean coalescing = false;
+	private ClockUpdateMode clockUpdateMode = ClockUpdateMode.PER_OPERATION;
+	private MessageScheduler messageScheduler;
+	// System.nanoTime() when the current call to processMessage(s) started; messages received before then have been
+	// stalled waiting for causal dependencies.
+	private long processingStartNanos;
+
+	private final Metrics metrics = new Metrics();
+	private final Map<Class<?>, Counter> appliedOpCounters = new HashMap<Class<?>, Counter>();
+	private final Counter messagesSent = metrics.counter("peer.messages.sent");
+	private final Counter messagesReceived = metrics.counter("peer.messages.received");
+	private final Counter messagesDuplicate = metrics.counter("peer.messages.duplicate");
+	private final Counter clockUpdatesSent = metrics.counter("peer.clockUpdates.sent");
+	private final Counter clockUpdateBytes = metrics.counter("peer.clockUpdates.bytes");
+	private final Histogram causalWaitMicros = metrics.histogram("peer.causalWait.micros");
+	// Gauges are set by publishGauges() on the thread that uses the peer, since they may be read from another thread
+	private final SettableGauge peerCountGauge = new SettableGauge();
+	private final SettableGauge bufferedOperationsGauge = new SettableGauge();
+	private final SettableGauge bufferedBytesGauge = new SettableGauge();
+	private final SettableGauge spilledBytesGauge = new SettableGauge();
+	private final SettableGauge heldMessagesGauge = new SettableGauge();
+	// Queue sizes of the peers whose operations are currently buffered; removed when a queue drains
+	private final Map<PeerID, SettableGauge> senderGauges = new HashMap<PeerID, SettableGauge>();
 
 	public Peer() {
 		this((PeerID)null, null);
@@ -37,6 +94,49 @@ public class Peer {
 		this.peerMatrix = new PeerMatrix(this.ownPeerID);
 		this.crdt = crdt != null ? crdt : new OrderedList();
 		this.crdt.setPeer(this);
+		this.crdt.registerMetrics(this.metrics, "crdt");
+		registerGauges();
+	}
+
+	private void registerGauges() {
+		this.metrics.gauge("peer.peerMatrix.peers", this.peerCountGauge);
+		this.metrics.gauge("peer.recvBuf.operations", this.bufferedOperationsGauge);
+		this.metrics.gauge("peer.recvBuf.bytes", this.bufferedBytesGauge);
+		this.metrics.gauge("peer.recvBuf.spilledBytes", this.spilledBytesGauge);
+		this.metrics.gauge("peer.recvBuf.heldMessages", this.heldMessagesGauge);
+		publishGauges();
+	}
+
+	/*
+	 * Copies the current sizes of the peer's data structures, and those of its CRDT objects, into their gauges. Called
+	 * whenever processing of received messages or deltas has finished, and when a message is made, which covers
+	 * local edits. A per-sender gauge exists only while operations from that sender are buffered, so the number of
+	 * gauges is bounded by the number of blocked senders rather than all senders ever seen.
+	 */
+	private void publishGauges() {
+		this.peerCountGauge.set(this.peerMatrix.peerCount());
+		this.bufferedOperationsGauge.set(this.bufferedOperationCount);
+		this.bufferedBytesGauge.set(this.recvBuf.bufferedBytes());
+		this.spilledBytesGauge.set(this.recvBuf.spilledBytes());
+		this.heldMessagesGauge.set(this.recvBuf.heldMessageCount());
+		this.crdt.publishGauges();
+		for (CRDT object : this.objectsById.values())
+			object.publishGauges();
+		for (PeerID senderPeerId : this.recvBuf.peerIds()) {
+			int size = this.recvBuf.size(senderPeerId);
+			SettableGauge gauge = this.senderGauges.get(senderPeerId);
+			if (size > 0) {
+				if (gauge == null) {
+					gauge = new SettableGauge();
+					this.senderGauges.put(senderPeerId, gauge);
+					this.metrics.gauge("peer.recvBuf.operations." + senderPeerId.getPeerID(), gauge);
+				}
+				gauge.set(size);
+			} else if (gauge != null) {
+				this.senderGauges.remove(senderPeerId);
+				this.metrics.removeGauge("peer.recvBuf.operations." + senderPeerId.getPeerID());
+			}
+		}
 	}
 	
 	public Peer(String peerId, CRDT crdt) {
@@ -53,73 +153,437 @@ public class Peer {
 		return new PeerID(ret);
 	}
 
+	/**
+	 * Registers an additional CRDT object with this peer, under the given object ID. Operations generated by the
+	 * object are tagged with the ID, and incoming operations with that target are routed to it, so that several
+	 * objects (e.g. the characters and cursors of a text document) share one peer's causal delivery. All peers must
+	 * register the same object under the same ID before operations for it arrive; typically the ID is the ID of the
+	 * operation that created the object, as recorded in the document schema.
+	 */
+	public <C extends CRDT> C registerObject(ItemID objectId, C object) {
+		if (objectId == null)
+			throw new IllegalArgumentException("objectId must not be null");
+		if (object.getPeer() != null)
+			throw new IllegalArgumentException("CRDT object already belongs to a peer: " + object);
+		if (this.objectsById.containsKey(objectId))
+			throw new IllegalArgumentException("Object ID already registered: " + objectId);
+		object.setPeer(this);
+		object.setObjectId(objectId);
+		object.registerMetrics(this.metrics, "crdt." + objectId);
+		this.objectsById.put(objectId, object);
+		object.publishGauges();
+		return object;
+	}
+
+	/**
+	 * Returns the object registered under the given ID, or the root object if objectId is <code>null</code>.
+	 */
+	public CRDT getObject(ItemID objectId) {
+		return objectId == null ? this.crdt : this.objectsById.get(objectId);
+	}
+
 	public boolean anythingToSend() {
 		return !this.sendBuf.isEmpty();
 	}
 
 	public ItemID nextId() {
-		return new ItemID(++this.logicalTs, this.ownPeerID);
+		this.versionVector.update(this.ownPeerID, ++this.logicalTs);
+		return new ItemID(this.logicalTs, this.ownPeerID);
+	}
+
+	/**
+	 * Advances this peer's logical clock, if necessary, so that the IDs it generates from now on are greater than the
+	 * given timestamp. Used when state is loaded without going through {@link #processMessage(Message)}.
+	 */
+	public void updateLogicalTs(long logicalTs) {
+		if (this.logicalTs < logicalTs)
+			this.logicalTs = logicalTs;
+	}
+
+	/**
+	 * Number of operations buffered for sending, including clock updates.
+	 */
+	public int pendingOperationCount() {
+		return this.sendBuf.size();
+	}
+
+	/**
+	 * Estimated encoded size, in bytes, of the operations buffered for sending (see {@link OperationSize}).
+	 */
+	public int pendingBytes() {
+		return this.sendBufBytes;
+	}
+
+	public ClockUpdateMode getClockUpdateMode() {
+		return clockUpdateMode;
+	}
+
+	public void setClockUpdateMode(ClockUpdateMode clockUpdateMode) {
+		this.clockUpdateMode = clockUpdateMode;
 	}
 
 	public void sendOperation(Operation operation) {
-		this.sendClockUpdateIfNotEmpty();
+		if (this.clockUpdateMode == ClockUpdateMode.PER_OPERATION)
+			this.sendClockUpdateIfNotEmpty();
 		this.sendBuf.addLast(operation);
+		this.sendBufBytes += OperationSize.estimate(operation);
+		this.sendBufCoalesced = false;
+		if (this.messageScheduler != null)
+			this.messageScheduler.operationQueued();
+	}
+
+	/**
+	 * If coalescing is enabled, the operations buffered for sending are rewritten into a cheaper equivalent form
+	 * when a message is made: clock updates are merged into one, and the CRDT may drop or merge its operations (see
+	 * {@link CRDT#coalesce(Deque)}). Note that an item inserted and deleted within one batch may then disappear
+	 * entirely, so its ID must not be used afterwards.
+	 */
+	public void setCoalescing(boolean coalescing) {
+		this.coalescing = coalescing;
+	}
+
+	public boolean isCoalescing() {
+		return coalescing;
 	}
 
 	public Message makeMessage() {
+		return makeMessage(Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Makes a message from at most maxOps operations, and at most maxBytes (estimated) bytes, from the front of the
+	 * send buffer. A single operation that is larger than maxBytes goes into a message of its own. The rest stays
+	 * buffered for the next message; call this until {@link #anythingToSend()} returns <code>false</code> to send
+	 * everything. Each message is a prefix of the buffer, and clock updates are always at its front, so the messages
+	 * can be applied in order like a single one.
+	 */
+	public Message makeMessage(int maxOps, int maxBytes) {
+		if (maxOps < 1)
+			throw new IllegalArgumentException("maxOps must be >= 1: " + maxOps);
 		this.sendClockUpdateIfNotEmpty();
-		final OperationList operationList = OperationList.create(sendBuf);
+		// A buffer that is sent in several messages is coalesced once, not again for each of them, unless operations
+		// have been added in between
+		if (this.coalescing && !this.sendBufCoalesced) {
+			this.sendBuf = this.crdt.coalesce(mergeClockUpdates(this.sendBuf));
+			for (CRDT object : this.objectsById.values())
+				this.sendBuf = object.coalesce(this.sendBuf);
+			// Coalescing changes the size of the operations, so count them afresh
+			this.sendBufBytes = 0;
+			for (Operation operation : this.sendBuf)
+				this.sendBufBytes += OperationSize.estimate(operation);
+			this.sendBufCoalesced = true;
+		}
+		final Deque<Operation> batch;
+		if (this.sendBuf.size() <= maxOps && this.sendBufBytes <= maxBytes) {
+			batch = this.sendBuf;
+			this.sendBuf = new ArrayDeque<Operation>();
+			this.sendBufBytes = 0;
+		} else {
+			batch = new ArrayDeque<Operation>();
+			int batchBytes = 0;
+			while (!this.sendBuf.isEmpty() && batch.size() < maxOps) {
+				int size = OperationSize.estimate(this.sendBuf.peekFirst());
+				if (!batch.isEmpty() && batchBytes + size > maxBytes)
+					break;
+				batch.addLast(this.sendBuf.pollFirst());
+				batchBytes += size;
+			}
+			this.sendBufBytes -= batchBytes;
+		}
+		final OperationList operationList = OperationList.create(batch);
 		final Message message = new Message(ownPeerID, peerMatrix.incrementMsgCount(), operationList);
-		this.sendBuf = new ArrayDeque<Operation>();
+		this.messagesSent.increment();
+		publishGauges();
 		return message;
 	}
 	
 	protected void sendClockUpdateIfNotEmpty() {
 		final LocalClockUpdate localClockUpdate = this.peerMatrix.getLocalClockUpdate();
 		if (!localClockUpdate.isEmpty()) {
-			this.sendBuf.push(new RemoteClockUpdate(
-					peerMatrix.getCurrentNextTimestamp(ownPeerID), localClockUpdate.entries()));
+			RemoteClockUpdate clockUpdate = new RemoteClockUpdate(
+					peerMatrix.getCurrentNextTimestamp(ownPeerID), localClockUpdate.entries());
+			// Clock updates go ahead of all buffered operations, so that a receiver never applies part of a message
+			// and then stalls on its clock update. But they go behind earlier clock updates, since a later one may
+			// refer to peer indexes that an earlier one assigned.
+			Deque<Operation> earlierClockUpdates = new ArrayDeque<Operation>();
+			while (this.sendBuf.peekFirst() instanceof RemoteClockUpdate)
+				earlierClockUpdates.push(this.sendBuf.pollFirst());
+			this.sendBuf.push(clockUpdate);
+			while (!earlierClockUpdates.isEmpty())
+				this.sendBuf.push(earlierClockUpdates.pop());
+			final int clockUpdateSize = OperationSize.estimate(clockUpdate);
+			this.sendBufBytes += clockUpdateSize;
+			this.sendBufCoalesced = false;
+			this.clockUpdatesSent.increment();
+			this.clockUpdateBytes.add(clockUpdateSize);
 			this.peerMatrix.resetClockUpdate();
 		}
 	}
 
-	public void processMessage(Message message) {
-		if (!(message instanceof Message))
-			throw new RuntimeException("Invalid message: " + message);
-		if (this.recvBuf.get(message.getOriginPeerId()) == null)
-			this.recvBuf.put(message.getOriginPeerId(), new ArrayDeque<Operation>());
-		// append all elements in message.operations to this.recvBuf
-		this.recvBuf.get(message.getOriginPeerId()).addAll(message.getOperations());
-		this.recvBuf.get(message.getOriginPeerId()).add(new MessageProcessed(message.getMsgCounter()));
+	/*
+	 * Replaces all clock updates in the send buffer by a single one, which goes first. Moving a clock update ahead of
+	 * operations only makes them wait for more dependencies, all of which the sender has already received, so it is
+	 * safe.
+	 */
+	private static Deque<Operation> mergeClockUpdates(Deque<Operation> operations) {
+		TreeMap<Long, PeerVClockEntry> entriesByIndex = null;
+		long nextTimestamp = 0;
+		Deque<Operation> result = new ArrayDeque<Operation>(operations.size());
+		for (Operation operation : operations) {
+			if (!(operation instanceof RemoteClockUpdate)) {
+				result.addLast(operation);
+				continue;
+			}
+			RemoteClockUpdate clockUpdate = (RemoteClockUpdate) operation;
+			if (entriesByIndex == null)
+				entriesByIndex = new TreeMap<Long, PeerVClockEntry>();
+			nextTimestamp = Math.max(nextTimestamp, clockUpdate.getNextTimestamp());
+			for (PeerVClockEntry entry : clockUpdate.entries()) {
+				PeerVClockEntry merged = entriesByIndex.get(entry.getPeerIndex().getIdx());
+				if (merged == null) {
+					entriesByIndex.put(entry.getPeerIndex().getIdx(), entry);
+				} else {
+					entriesByIndex.put(entry.getPeerIndex().getIdx(), new PeerVClockEntry(
+							merged.getPeerId() != null ? merged.getPeerId() : entry.getPeerId(), entry.getPeerIndex(),
+							Math.max(merged.getMsgCount(), entry.getMsgCount())));
+				}
+			}
+		}
+		if (entriesByIndex != null)
+			result.addFirst(new RemoteClockUpdate(nextTimestamp, new ArrayList<PeerVClockEntry>(entriesByIndex.values())));
+		return result;
+	}
+
+	/*
+	 * Called by the cursor tracker when the local cursor has moved.
+	 */
+	void cursorMoved() {
+		if (this.messageScheduler != null)
+			this.messageScheduler.cursorMoved();
+	}
+
+	/*
+	 * Attaches the scheduler that decides when buffered operations are sent. Called by the MessageScheduler
+	 * constructor; passing null detaches it again.
+	 */
+	void setMessageScheduler(MessageScheduler messageScheduler) {
+		this.messageScheduler = messageScheduler;
+	}
+
+	/**
+	 * Processes a message received from another peer. Messages that have already been received (whether applied or
+	 * still buffered) are recognised in constant time and dropped, so transports may resend messages whenever they
+	 * are unsure whether they arrived. Returns <code>false</code> if the message was such a duplicate. A message that
+	 * arrives before an earlier message from the same peer is held until the earlier one arrives too.
+	 */
+	public boolean processMessage(Message message) {
+		final ProcessMessageEvent event = new ProcessMessageEvent();
+		event.begin();
+		final long appliedBefore = this.appliedOperationCount;
+		this.processingStartNanos = System.nanoTime();
+		final boolean enqueued = this.enqueueMessage(message);
+		if (enqueued) {
+			while (this.applyOperationsIfReady())
+				;
+			this.recvBuf.spillIfOverLimit();
+			publishGauges();
+		}
+		commitEvent(event, message, enqueued, appliedBefore);
+		return enqueued;
+	}
+
+	private void commitEvent(ProcessMessageEvent event, Message message, boolean enqueued, long appliedBefore) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.originPeerId = message.getOriginPeerId().getPeerID();
+			event.msgCounter = message.getMsgCounter();
+			event.operationCount = message.getOperations().size();
+			for (Operation operation : message.getOperations())
+				event.messageBytes += OperationSize.estimate(operation);
+			event.opsApplied = this.appliedOperationCount - appliedBefore;
+			event.opsBuffered = this.bufferedOperationCount;
+			event.duplicate = !enqueued;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Processes many messages at once, e.g. when catching up after being offline. The messages may be in any order:
+	 * they are grouped by origin and sorted by message counter, and causal delivery runs once for the whole batch
+	 * rather than after every message. A flight recorder event is emitted for every message; since operations are
+	 * only applied after all messages have been added, the event of the last message also covers applying them.
+	 */
+	public ProcessingResult processMessages(Iterable<Message> messages) {
+		final long appliedBefore = this.appliedOperationCount;
+		this.processingStartNanos = System.nanoTime();
+		Map<PeerID, List<Message>> messagesByOrigin = new HashMap<PeerID, List<Message>>();
+		for (Message message : messages) {
+			List<Message> originMessages = messagesByOrigin.get(message.getOriginPeerId());
+			if (originMessages == null) {
+				originMessages = new ArrayList<Message>();
+				messagesByOrigin.put(message.getOriginPeerId(), originMessages);
+			}
+			originMessages.add(message);
+		}
+		ProcessMessageEvent lastEvent = null;
+		Message lastMessage = null;
+		boolean lastEnqueued = false;
+		for (List<Message> originMessages : messagesByOrigin.values()) {
+			Collections.sort(originMessages, MESSAGE_COUNTER_ORDER);
+			for (Message message : originMessages) {
+				if (lastEvent != null)
+					commitEvent(lastEvent, lastMessage, lastEnqueued, this.appliedOperationCount);
+				lastEvent = new ProcessMessageEvent();
+				lastEvent.begin();
+				lastMessage = message;
+				lastEnqueued = this.enqueueMessage(message);
+			}
+		}
 		while (this.applyOperationsIfReady())
 			;
+		this.recvBuf.spillIfOverLimit();
+		publishGauges();
+		if (lastEvent != null)
+			commitEvent(lastEvent, lastMessage, lastEnqueued, appliedBefore);
+		return new ProcessingResult(this.appliedOperationCount - appliedBefore, this.bufferedOperationCount,
+				this.recvBuf.heldMessageCount());
+	}
+
+	/*
+	 * Appends the operations of a message to the receive buffer of its origin peer, followed by a marker that records
+	 * the message as processed once all of them have been applied. A message that follows a gap in the origin's
+	 * message counters is held back until the gap has been filled, since its operations may depend on the missing
+	 * messages. Returns false, without doing anything, if the message has been received (or held) before.
+	 */
+	private boolean enqueueMessage(Message message) {
+		if (!(message instanceof Message))
+			throw new RuntimeException("Invalid message: " + message);
+		PeerID originPeerId = message.getOriginPeerId();
+		long received = receivedMsgCounter(originPeerId);
+		if (message.getMsgCounter() <= received || this.recvBuf.isHeld(originPeerId, message.getMsgCounter())) {
+			log.debug("Peer {}: Dropping duplicate message {} from {}", ownPeerID, message.getMsgCounter(), originPeerId);
+			this.duplicateMessageCount++;
+			this.messagesDuplicate.increment();
+			return false;
+		}
+		this.messagesReceived.increment();
+		if (message.getMsgCounter() > received + 1) {
+			log.debug("Peer {}: Holding message {} from {} until message {} arrives", ownPeerID, message.getMsgCounter(),
+					originPeerId, received + 1);
+			this.recvBuf.hold(message);
+			this.recvBuf.spillIfOverLimit();
+			return true;
+		}
+		appendMessage(message);
+		releaseHeldMessages(originPeerId);
+		return true;
+	}
+
+	/*
+	 * Appends the held messages from the given peer that no longer follow a gap, and drops those that have been
+	 * received (or skipped by a state delta) in the meantime.
+	 */
+	private void releaseHeldMessages(PeerID originPeerId) {
+		while (true) {
+			long next = this.recvBuf.firstHeldCounter(originPeerId);
+			long received = receivedMsgCounter(originPeerId);
+			if (next < 0 || next > received + 1)
+				break;
+			Message heldMessage = this.recvBuf.releaseHeld(originPeerId, next);
+			if (next == received + 1)
+				appendMessage(heldMessage);
+		}
+	}
+
+	private long receivedMsgCounter(PeerID originPeerId) {
+		Long receivedMsgCounter = this.receivedMsgCounters.get(originPeerId);
+		return Math.max(receivedMsgCounter == null ? 0 : receivedMsgCounter, this.peerMatrix.processedMsgCount(originPeerId));
+	}
+
+	private void appendMessage(Message message) {
+		PeerID originPeerId = message.getOriginPeerId();
+		this.receivedMsgCounters.put(originPeerId, message.getMsgCounter());
+		for (Operation operation : message.getOperations()) {
+			this.recvBuf.add(originPeerId, operation);
+			if (operation instanceof ChangingOperation)
+				this.bufferedOperationCount++;
+		}
+		this.recvBuf.add(originPeerId, new MessageProcessed(message.getMsgCounter(), System.nanoTime()));
+		this.recvBuf.spillIfOverLimit();
+	}
+
+	/**
+	 * Total number of remote operations applied to the CRDT objects of this peer.
+	 */
+	public long appliedOperationCount() {
+		return appliedOperationCount;
+	}
+
+	/**
+	 * Returns the buffer holding operations received from other peers that are not yet causally ready. Its memory
+	 * limit can be configured with {@link ReceiveBuffer#setMemoryLimit(long, java.io.File)}.
+	 */
+	public ReceiveBuffer getReceiveBuffer() {
+		return recvBuf;
+	}
+
+	/**
+	 * Describes the causal dependency that has been holding up buffered operations for the longest time, or returns
+	 * <code>null</code> if no operations are buffered.
+	 */
+	public BlockedDependency oldestBlockedDependency() {
+		PeerID blockedPeerId = this.recvBuf.oldestBlockedPeer();
+		if (blockedPeerId == null)
+			return null;
+		return new BlockedDependency(blockedPeerId, this.peerMatrix.missingDependencies(blockedPeerId),
+				this.recvBuf.nonEmptySinceMillis(blockedPeerId));
+	}
+
+	/**
+	 * Number of messages that arrived ahead of an earlier message from the same peer, and are held until it arrives.
+	 */
+	public int heldMessageCount() {
+		return this.recvBuf.heldMessageCount();
+	}
+
+	/**
+	 * Number of messages dropped because they had been received before.
+	 */
+	public long duplicateMessageCount() {
+		return duplicateMessageCount;
+	}
+
+	/**
+	 * Number of remote operations received but not yet applied, because they are waiting for causal dependencies.
+	 */
+	public long bufferedOperationCount() {
+		return bufferedOperationCount;
 	}
 
 	//Returns true if more peers may be casually ready
 	protected boolean applyOperationsIfReady() {
-		Map.Entry<PeerID, Deque<Operation>> casuallyReadyPeerIDWithOperations = findCasuallyReadyPeerWithOperations();
-		if (casuallyReadyPeerIDWithOperations == null)
+		PeerID casuallyReadyPeerID = findCasuallyReadyPeerWithOperations();
+		if (casuallyReadyPeerID == null)
 			return false;
 		
-		applyOperations(casuallyReadyPeerIDWithOperations.getKey(), casuallyReadyPeerIDWithOperations.getValue());
+		applyOperations(casuallyReadyPeerID);
 		return true;
 	}
 
-	private void applyOperations(PeerID readyPeerID, Deque<Operation> readyOperations) {
-		while (!readyOperations.isEmpty()) {
-			Operation operation = readyOperations.pop();
+	private void applyOperations(PeerID readyPeerID) {
+		while (!this.recvBuf.isEmpty(readyPeerID)) {
+			Operation operation = this.recvBuf.poll(readyPeerID);
 			boolean needToRecheckReadyness = applyOperation(operation, readyPeerID);
-			if (needToRecheckReadyness)
+			// Only this peer's readiness can have changed, so check it directly rather than rescanning all peers.
+			if (needToRecheckReadyness && !this.peerMatrix.isCausallyReady(readyPeerID))
 				break;
 		}
 	}
 
-	private Entry<PeerID, Deque<Operation>> findCasuallyReadyPeerWithOperations() {
-		for (Map.Entry<PeerID, Deque<Operation>> e : recvBuf.entrySet()) {
-			PeerID peerID = e.getKey();
-			Deque<Operation> operations = e.getValue();
-			if (peerMatrix.isCausallyReady(peerID) && !operations.isEmpty())
-				return e;
+	private PeerID findCasuallyReadyPeerWithOperations() {
+		for (PeerID peerID : this.recvBuf.peerIds()) {
+			if (!this.recvBuf.isEmpty(peerID) && peerMatrix.isCausallyReady(peerID))
+				return peerID;
 		}
 		return null;
 	}
@@ -136,23 +600,139 @@ public class Peer {
 		} else if (operation instanceof MessageProcessed) {
 			MessageProcessed messageProcessed = (MessageProcessed) operation;
 			this.peerMatrix.processedIncomingMsg(senderPeerID, messageProcessed.getMsgCounter());
+			for (CRDT changed : this.changedObjects)
+				changed.dispatchBatch();
+			this.changedObjects.clear();
+			final long waitNanos = System.nanoTime() - messageProcessed.getReceivedNanos();
+			this.causalWaitMicros.record(waitNanos / 1000);
+			if (messageProcessed.getReceivedNanos() < this.processingStartNanos) {
+				CausalStallEvent event = new CausalStallEvent();
+				if (event.shouldCommit()) {
+					event.originPeerId = senderPeerID.getPeerID();
+					event.msgCounter = messageProcessed.getMsgCounter();
+					event.waitNanos = waitNanos;
+					event.commit();
+				}
+			}
 		} else if (operation instanceof ChangingOperation) {
 			ChangingOperation changingOp = (ChangingOperation) operation;
 			if (changingOp.getOperationID() == null)
 				changingOp.setOperationID(peerMatrix.nextOperationID(senderPeerID));
 			if (this.logicalTs < changingOp.logicalTs())
 				this.logicalTs = changingOp.logicalTs();
-			this.getCRDT().applyOperation(changingOp);
+			this.versionVector.update(senderPeerID, changingOp.logicalTs());
+			CRDT target = this.getObject(changingOp.getTarget());
+			if (target == null)
+				throw new RuntimeException("Operation for unknown target object " + changingOp.getTarget() + ": " + changingOp);
+			target.applyOperation(changingOp);
+			this.changedObjects.add(target);
+			this.appliedOperationCount++;
+			this.bufferedOperationCount--;
+			appliedOpCounter(changingOp.getClass()).increment();
 		} else {
 			throw new UnsupportedOperationException("Unsupported remote operation type: " + operation.getClass().getName());
 		}
 		return false;
 	}
 
+	private Counter appliedOpCounter(Class<?> operationClass) {
+		Counter counter = this.appliedOpCounters.get(operationClass);
+		if (counter == null) {
+			counter = this.metrics.counter("peer.ops.applied." + operationClass.getSimpleName());
+			this.appliedOpCounters.put(operationClass, counter);
+		}
+		return counter;
+	}
+
+	/**
+	 * Returns the metrics of this peer and its CRDT objects. They can be reported to any
+	 * {@link org.trvedata.crdt.metrics.MetricsSink}, or exposed over JMX with
+	 * {@link org.trvedata.crdt.metrics.JmxMetricsExporter}.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the version of this peer's state: the highest timestamp of the operations it has applied, per peer.
+	 * The result is a copy.
+	 */
+	public VersionVector getVersionVector() {
+		return new VersionVector(this.versionVector);
+	}
+
+	/**
+	 * Computes the part of this peer's state that a peer at the given version is missing, so that a new or long
+	 * offline peer can catch up in time proportional to the size of the state, rather than replaying the history of
+	 * messages. All locally generated operations must have been put into a message first, since they are part of
+	 * the state but would otherwise be sent again.
+	 */
+	public StateDelta makeStateDelta(VersionVector remoteVersion) {
+		if (anythingToSend())
+			throw new IllegalStateException("makeStateDelta: make a message of the pending operations first");
+		List<ChangingOperation> operations = new ArrayList<ChangingOperation>(this.crdt.delta(remoteVersion));
+		for (CRDT object : this.objectsById.values())
+			operations.addAll(object.delta(remoteVersion));
+		return new StateDelta(this.ownPeerID, getVersionVector(), this.peerMatrix.exportClocks(), operations);
+	}
+
+	/**
+	 * Merges a delta computed by another peer with {@link #makeStateDelta(VersionVector)} into this peer's state.
+	 * Afterwards, this peer has seen everything the other peer had seen, and drops the corresponding messages as
+	 * duplicates if it receives them. The delta cannot be applied while messages from a peer whose messages it
+	 * skips are still buffered here.
+	 */
+	public void applyStateDelta(StateDelta delta) {
+		List<PeerVClockEntry> originClock = delta.getClocks().get(delta.getOriginPeerId());
+		if (originClock == null)
+			throw new IllegalArgumentException("applyStateDelta: delta has no vector clock for its origin");
+		for (PeerVClockEntry entry : originClock) {
+			if (!entry.getPeerId().equals(this.ownPeerID)
+					&& entry.getMsgCount() > this.peerMatrix.processedMsgCount(entry.getPeerId())
+					&& !this.recvBuf.isEmpty(entry.getPeerId()))
+				throw new IllegalStateException("applyStateDelta: messages from " + entry.getPeerId() + " are still buffered");
+		}
+
+		Map<ItemID, List<ChangingOperation>> operationsByTarget = new LinkedHashMap<ItemID, List<ChangingOperation>>();
+		for (ChangingOperation operation : delta.getOperations()) {
+			List<ChangingOperation> targetOperations = operationsByTarget.get(operation.getTarget());
+			if (targetOperations == null) {
+				targetOperations = new ArrayList<ChangingOperation>();
+				operationsByTarget.put(operation.getTarget(), targetOperations);
+			}
+			targetOperations.add(operation);
+		}
+		for (Map.Entry<ItemID, List<ChangingOperation>> entry : operationsByTarget.entrySet()) {
+			CRDT target = this.getObject(entry.getKey());
+			if (target == null)
+				throw new RuntimeException("applyStateDelta: unknown target object " + entry.getKey());
+			target.applyDelta(entry.getValue());
+			target.dispatchBatch();
+		}
+
+		this.peerMatrix.fastForward(delta.getOriginPeerId(), delta.getClocks());
+		this.versionVector.merge(delta.getVersion());
+		for (long maxTs : delta.getVersion().entries().values())
+			updateLogicalTs(maxTs);
+		// The delta may have filled the gap before held messages
+		for (PeerID originPeerId : new ArrayList<PeerID>(this.recvBuf.heldPeerIds()))
+			releaseHeldMessages(originPeerId);
+		while (this.applyOperationsIfReady())
+			;
+		publishGauges();
+	}
+
 	public CRDT getCRDT() {
 		return crdt;
 	}
 
+	/**
+	 * Returns the tracker for the cursor positions of this peer and the peers it exchanges cursor messages with.
+	 */
+	public CursorTracker getCursors() {
+		return cursors;
+	}
+
 	public PeerMatrix getPeerMatrix() {
 		return peerMatrix;
 	}
@@ -1,7 +1,10 @@
 package org.trvedata.crdt;
 
-public class PeerID implements Comparable<PeerID> {
-	
+import java.io.Serializable;
+
+public class PeerID implements Comparable<PeerID>, Serializable {
+	private static final long serialVersionUID = 1L;
+
 	final String peerID;
 
 	public PeerID(String peerID) {
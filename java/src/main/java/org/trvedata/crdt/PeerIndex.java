@@ -1,6 +1,10 @@
 package org.trvedata.crdt;
 
-public class PeerIndex {
+import java.io.Serializable;
+
+public class PeerIndex implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	private final long idx;
 	
 	public PeerIndex(long idx) {
@@ -1,8 +1,9 @@
 package org.trvedata.crdt;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.trvedata.crdt.operation.LocalClockUpdate;
@@ -144,7 +145,7 @@ public class PeerMatrix {
 		PeerVClockList vclocks = getPeerVClockList(this.peerIdToIndex(originPeerId));
 		PeerVClockEntry entry = vclocks.getClockEntry(subjectPeerIndex);
 		if (entry != null) {
-			if (subjectPeerId != null && subjectPeerId != entry.getPeerId())
+			if (subjectPeerId != null && !subjectPeerId.equals(entry.getPeerId()))
 				throw new RuntimeException("peerIndexMapping: Contradictory peer index assignment: " + subjectPeerId + " != " + entry.getPeerId());
 			return entry;
 		} else if (subjectPeerIndex.getIdx() != vclocks.size()) {
@@ -225,6 +226,69 @@ public class PeerMatrix {
 		this.localClockUpdate.recordUpdate(originPeerId, originIndex, msgCounter);
 	}
 
+	/**
+	 * Returns a copy of the matrix: for every known peer, its vector clock as far as this peer knows it, i.e. the
+	 * entries in the order of the indexes that peer has assigned. The entry for the local peer is its own vector
+	 * clock. Used to let another peer skip the messages that this peer has processed (see {@link #fastForward}).
+	 */
+	public Map<PeerID, List<PeerVClockEntry>> exportClocks() {
+		Map<PeerID, List<PeerVClockEntry>> clocks = new HashMap<PeerID, List<PeerVClockEntry>>();
+		for (Map.Entry<PeerID, PeerIndex> peer : this.indexByPeerId.entrySet()) {
+			PeerVClockList vclocks = getPeerVClockList(peer.getValue());
+			List<PeerVClockEntry> entries = new ArrayList<PeerVClockEntry>(vclocks.size());
+			for (int i = 0; i < vclocks.size(); i++) {
+				PeerVClockEntry entry = vclocks.getClockEntry(new PeerIndex(i));
+				entries.add(new PeerVClockEntry(entry.getPeerId(), entry.getPeerIndex(), entry.getMsgCount()));
+			}
+			clocks.put(peer.getKey(), entries);
+		}
+		return clocks;
+	}
+
+	/*
+	 * Moves the local vector clock forward to include all messages that originPeerId has processed, according to the
+	 * matrix it exported with exportClocks(), as if they had been processed here. For every peer whose messages are
+	 * skipped, originPeerId's knowledge of that peer's vector clock and index assignments is adopted as well, since
+	 * the clock updates in the skipped messages are needed to interpret that peer's later messages.
+	 */
+	protected void fastForward(PeerID originPeerId, Map<PeerID, List<PeerVClockEntry>> clocks) {
+		List<PeerVClockEntry> originClock = clocks.get(originPeerId);
+		if (originClock == null)
+			throw new IllegalArgumentException("fastForward: no vector clock for " + originPeerId);
+		for (PeerVClockEntry processed : originClock) {
+			PeerID peerId = processed.getPeerId();
+			if (peerId.equals(ownPeerId()) || processed.getMsgCount() <= processedMsgCount(peerId))
+				continue;
+			PeerIndex peerIndex = peerIdToIndex(peerId);
+			List<PeerVClockEntry> peerClock = clocks.get(peerId);
+			if (peerClock != null) {
+				for (PeerVClockEntry entry : peerClock) {
+					PeerVClockEntry localEntry = peerIndexMapping(peerId, entry.getPeerId(), entry.getPeerIndex());
+					if (localEntry.getMsgCount() < entry.getMsgCount())
+						localEntry.setMsgCount(entry.getMsgCount());
+				}
+			}
+			getOwnPeerVClockList().getClockEntry(peerIndex).setMsgCount(processed.getMsgCount());
+			this.localClockUpdate.recordUpdate(peerId, peerIndex, processed.getMsgCount());
+		}
+	}
+
+	/**
+	 * Number of peers known to this peer, including itself.
+	 */
+	public int peerCount() {
+		return this.indexByPeerId.size();
+	}
+
+	/**
+	 * Returns the number of messages from the given peer that have been processed locally, i.e. that peer's entry in
+	 * our own vector clock. Unlike most methods here, this does not assign an index to a previously unknown peer.
+	 */
+	public long processedMsgCount(PeerID peerId) {
+		PeerIndex peerIndex = this.indexByPeerId.get(peerId);
+		return peerIndex == null ? 0 : getOwnPeerVClockList().getClockEntry(peerIndex).getMsgCount();
+	}
+
 	/**
 	 * Returns <code>true</code> if operations originating on the given peer ID are ready to be delivered to the
 	 * application, and false if they need to be buffered. Operations are causally ready if all operations they may
@@ -233,33 +297,41 @@ public class PeerMatrix {
 	 * peer are received in the same order as they were sent.
 	 */
 	public boolean isCausallyReady(PeerID remotePeerId) {
-		Map<PeerID, Long> localVclock = new HashMap<PeerID, Long>();
-		for (PeerVClockEntry entry : getOwnPeerVClockList()) {
-			localVclock.put(entry.getPeerId(), entry.getMsgCount());
-		}
-
-		Map<PeerID, Long> remoteVclock = new HashMap<PeerID, Long>();
-		for (PeerVClockEntry entry : getPeerVClockList(this.peerIdToIndex(remotePeerId))) {
-			remoteVclock.put(entry.getPeerId(), entry.getMsgCount());
-		}
-
-		HashSet<PeerID> allPeerIds = new HashSet<PeerID>(localVclock.keySet());
-		allPeerIds.addAll(remoteVclock.keySet());
-		for (PeerID peerId : allPeerIds) {
-			Long local = localVclock.get(peerId);
-			Long remote = remoteVclock.get(peerId);
-			if ((!peerId.equals(remotePeerId)) && (local == null ? 0L : local) < (remote == null ? 0L : remote))
+		// Peers that the remote peer doesn't know about count as 0 in its vector clock, which is always satisfied, so
+		// it is enough to look at the entries of the remote vector clock.
+		PeerVClockList localVClocks = getOwnPeerVClockList();
+		for (PeerVClockEntry remoteEntry : getPeerVClockList(this.peerIdToIndex(remotePeerId))) {
+			if (remoteEntry.getMsgCount() == 0 || remoteEntry.getPeerId().equals(remotePeerId))
+				continue;
+			PeerIndex localIndex = this.indexByPeerId.get(remoteEntry.getPeerId());
+			if (localIndex == null || localVClocks.getClockEntry(localIndex).getMsgCount() < remoteEntry.getMsgCount())
 				return false;
 		}
 		return true;
 	}
 
+	/**
+	 * Returns the messages that operations from the given peer are waiting for: for every peer on which they depend
+	 * beyond what has been processed locally, the message count that needs to be reached. The result is empty if the
+	 * peer's operations are causally ready.
+	 */
+	public Map<PeerID, Long> missingDependencies(PeerID remotePeerId) {
+		Map<PeerID, Long> missing = new HashMap<PeerID, Long>();
+		for (PeerVClockEntry remoteEntry : getPeerVClockList(this.peerIdToIndex(remotePeerId))) {
+			if (remoteEntry.getPeerId().equals(remotePeerId))
+				continue;
+			if (processedMsgCount(remoteEntry.getPeerId()) < remoteEntry.getMsgCount())
+				missing.put(remoteEntry.getPeerId(), remoteEntry.getMsgCount());
+		}
+		return missing;
+	}
+
 	/*
 	 * Resets the tracking of messages received from other peers. This is done after a clock update has been broadcast
 	 * to other peers, so that we only transmit a diff of changes to the clock since the last clock update.
 	 */
 	protected void resetClockUpdate() {
-		this.localClockUpdate = new LocalClockUpdate();
+		this.localClockUpdate.clear();
 	}
 
 	public LocalClockUpdate getLocalClockUpdate() {
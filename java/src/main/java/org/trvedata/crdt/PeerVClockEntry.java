@@ -1,10 +1,14 @@
 package org.trvedata.crdt;
 
+import java.io.Serializable;
+
 /**
  * One entry in a vector clock. The peerId is the hex string representing a peer; the peerIndex is the number we have
  * locally assigned to that peer; and msgCount is the number of messages we have received from that peer.
  */
-public class PeerVClockEntry {
+public class PeerVClockEntry implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	private PeerID peerId;
 	private PeerIndex peerIndex;
 	private long msgCount;
@@ -0,0 +1,47 @@
+package org.trvedata.crdt;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for {@link Peer#processMessage(Message)}. Like all events of this library it is disabled
+ * unless a recording enables it, e.g. with the <code>trvesync.jfc</code> profile.
+ */
+@Name("org.trvedata.crdt.ProcessMessage")
+@Label("Process Message")
+@Category("trvesync")
+@Description("A message received from another peer, including the operations it made causally ready")
+@Enabled(false)
+@StackTrace(false)
+class ProcessMessageEvent extends Event {
+	@Label("Origin Peer")
+	String originPeerId;
+
+	@Label("Message Counter")
+	long msgCounter;
+
+	@Label("Operations")
+	int operationCount;
+
+	@Label("Message Size")
+	@Description("Estimated encoded size of the message")
+	@DataAmount
+	long messageBytes;
+
+	@Label("Operations Applied")
+	@Description("Operations applied while processing the message, including earlier buffered ones")
+	long opsApplied;
+
+	@Label("Operations Buffered")
+	@Description("Operations still waiting for causal dependencies afterwards")
+	long opsBuffered;
+
+	@Label("Duplicate")
+	boolean duplicate;
+}
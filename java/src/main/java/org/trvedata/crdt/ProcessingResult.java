@@ -0,0 +1,44 @@
+package org.trvedata.crdt;
+
+/**
+ * Outcome of handing a batch of messages to {@link Peer#processMessages(Iterable)}.
+ */
+public class ProcessingResult {
+	private final long operationsApplied;
+	private final long operationsBuffered;
+	private final long messagesHeld;
+
+	public ProcessingResult(long operationsApplied, long operationsBuffered, long messagesHeld) {
+		this.operationsApplied = operationsApplied;
+		this.operationsBuffered = operationsBuffered;
+		this.messagesHeld = messagesHeld;
+	}
+
+	/**
+	 * Number of operations from the batch (or from earlier messages that it unblocked) that were applied to the CRDT.
+	 */
+	public long getOperationsApplied() {
+		return operationsApplied;
+	}
+
+	/**
+	 * Number of operations that remain buffered after the batch, waiting for causal dependencies.
+	 */
+	public long getOperationsBuffered() {
+		return operationsBuffered;
+	}
+
+	/**
+	 * Number of messages that remain held after the batch, because an earlier message from the same peer is missing.
+	 * Their operations are not counted in {@link #getOperationsBuffered()}.
+	 */
+	public long getMessagesHeld() {
+		return messagesHeld;
+	}
+
+	@Override
+	public String toString() {
+		return "ProcessingResult [operationsApplied=" + operationsApplied + ", operationsBuffered=" + operationsBuffered
+				+ ", messagesHeld=" + messagesHeld + "]";
+	}
+}
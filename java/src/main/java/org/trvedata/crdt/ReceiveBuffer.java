@@ -0,0 +1,474 @@
+package org.trvedata.crdt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trvedata.crdt.operation.Operation;
+import org.trvedata.crdt.operation.OperationList;
+import org.trvedata.crdt.operation.OperationSize;
+
+/**
+ * Holds operations received from other peers until they are causally ready, in one FIFO queue per origin peer. It
+ * also holds messages that arrived ahead of an earlier message from the same peer, until the peer has added the
+ * earlier message to its queue.
+ *
+ * The memory used by the buffer can be bounded: whenever the (estimated) size of the operations held in memory
+ * exceeds the limit, held messages and then the largest queues are written to files in the spill directory, and read
+ * back in when they are needed. Spilled operations are written with Java serialization, so the values they carry must be
+ * {@link java.io.Serializable} if a limit is set. A spill file is deleted as soon as it has been read back; files
+ * left behind by a process that exits with operations still spilled are not reused, and may be removed from the
+ * spill directory.
+ */
+public class ReceiveBuffer {
+	private static final Logger log = LoggerFactory.getLogger(ReceiveBuffer.class);
+
+	/** Assumed in-memory overhead of one buffered operation, on top of its encoded size. */
+	private static final int OPERATION_OVERHEAD_BYTES = 32;
+
+	/*
+	 * A run of consecutive operations of one peer's queue, or some of its held messages, stored in a file. The count
+	 * is the number of operations.
+	 */
+	private static class Segment {
+		final File file;
+		final int count;
+		final long bytes;
+
+		Segment(File file, int count, long bytes) {
+			this.file = file;
+			this.count = count;
+			this.bytes = bytes;
+		}
+	}
+
+	/*
+	 * The queue for one peer consists of the operations in head, followed by those in the spilled segments, followed
+	 * by those in tail. As long as nothing is spilled, tail is empty.
+	 */
+	private class PeerQueue {
+		final PeerID peerId;
+		final ArrayDeque<Operation> head = new ArrayDeque<Operation>();
+		final ArrayDeque<Segment> spilled = new ArrayDeque<Segment>();
+		final ArrayDeque<Operation> tail = new ArrayDeque<Operation>();
+		long memoryBytes = 0;
+		int size = 0;
+		long nonEmptySinceMillis;
+
+		PeerQueue(PeerID peerId) {
+			this.peerId = peerId;
+		}
+
+		void add(Operation operation) {
+			if (size == 0)
+				nonEmptySinceMillis = System.currentTimeMillis();
+			if (spilled.isEmpty())
+				head.addLast(operation);
+			else
+				tail.addLast(operation);
+			long bytes = sizeOf(operation);
+			memoryBytes += bytes;
+			bufferedBytes += bytes;
+			size++;
+		}
+
+		Operation poll() {
+			if (head.isEmpty() && !spilled.isEmpty()) {
+				reload(this);
+				if (spilled.isEmpty()) {
+					head.addAll(tail);
+					tail.clear();
+				}
+			}
+			Operation operation = head.pollFirst();
+			if (operation != null) {
+				long bytes = sizeOf(operation);
+				memoryBytes -= bytes;
+				bufferedBytes -= bytes;
+				size--;
+			}
+			return operation;
+		}
+	}
+
+	/*
+	 * The messages held for one peer, by message counter. A message is either in memory, or in a spilled segment
+	 * together with the other messages of the peer that were in memory when it was spilled.
+	 */
+	private class HeldMessages {
+		final PeerID peerId;
+		final TreeMap<Long, Segment> segmentsByCounter = new TreeMap<Long, Segment>();
+		final Map<Long, Message> inMemory = new HashMap<Long, Message>();
+		long memoryBytes = 0;
+
+		HeldMessages(PeerID peerId) {
+			this.peerId = peerId;
+		}
+	}
+
+	private final Map<PeerID, PeerQueue> queues = new HashMap<PeerID, PeerQueue>();
+	private final Map<PeerID, HeldMessages> held = new HashMap<PeerID, HeldMessages>();
+	private int heldMessageCount = 0;
+	private long memoryLimitBytes = Long.MAX_VALUE;
+	private File spillDirectory;
+	private long bufferedBytes = 0;
+	private long spilledBytes = 0;
+	private int spilledSegments = 0;
+
+	/**
+	 * Limits the memory used by buffered operations to roughly limitBytes; operations beyond that are spilled to
+	 * files in spillDirectory (or the default temporary directory if <code>null</code>). The values of all operations
+	 * buffered from then on must be serializable.
+	 */
+	public void setMemoryLimit(long limitBytes, File spillDirectory) {
+		if (limitBytes < 0)
+			throw new IllegalArgumentException("limitBytes must be >= 0: " + limitBytes);
+		this.memoryLimitBytes = limitBytes;
+		this.spillDirectory = spillDirectory;
+	}
+
+	public long getMemoryLimit() {
+		return memoryLimitBytes;
+	}
+
+	public void add(PeerID peerId, Operation operation) {
+		PeerQueue queue = this.queues.get(peerId);
+		if (queue == null) {
+			queue = new PeerQueue(peerId);
+			this.queues.put(peerId, queue);
+		}
+		queue.add(operation);
+	}
+
+	/**
+	 * Removes and returns the next operation from the given peer, or <code>null</code> if there is none.
+	 */
+	public Operation poll(PeerID peerId) {
+		PeerQueue queue = this.queues.get(peerId);
+		return queue == null ? null : queue.poll();
+	}
+
+	public boolean isEmpty(PeerID peerId) {
+		PeerQueue queue = this.queues.get(peerId);
+		return queue == null || queue.size == 0;
+	}
+
+	/**
+	 * Returns the peers for which operations have been buffered at some point (their queues may be empty now).
+	 */
+	public Collection<PeerID> peerIds() {
+		return this.queues.keySet();
+	}
+
+	/**
+	 * Number of operations buffered for the given peer, in memory or spilled.
+	 */
+	public int size(PeerID peerId) {
+		PeerQueue queue = this.queues.get(peerId);
+		return queue == null ? 0 : queue.size;
+	}
+
+	/**
+	 * Holds a message that cannot be added to its peer's queue yet, because an earlier message from the same peer
+	 * is missing. Its size counts towards the memory limit.
+	 */
+	public void hold(Message message) {
+		HeldMessages peerHeld = this.held.get(message.getOriginPeerId());
+		if (peerHeld == null) {
+			peerHeld = new HeldMessages(message.getOriginPeerId());
+			this.held.put(message.getOriginPeerId(), peerHeld);
+		}
+		long bytes = sizeOf(message);
+		peerHeld.segmentsByCounter.put(message.getMsgCounter(), null);
+		peerHeld.inMemory.put(message.getMsgCounter(), message);
+		peerHeld.memoryBytes += bytes;
+		this.bufferedBytes += bytes;
+		this.heldMessageCount++;
+	}
+
+	public boolean isHeld(PeerID peerId, long msgCounter) {
+		HeldMessages peerHeld = this.held.get(peerId);
+		return peerHeld != null && peerHeld.segmentsByCounter.containsKey(msgCounter);
+	}
+
+	/**
+	 * Returns the lowest counter of the messages held for the given peer, or -1 if there are none.
+	 */
+	public long firstHeldCounter(PeerID peerId) {
+		HeldMessages peerHeld = this.held.get(peerId);
+		return peerHeld == null ? -1 : peerHeld.segmentsByCounter.firstKey();
+	}
+
+	/**
+	 * Removes and returns the held message from the given peer with the given counter, reading it back in if it has
+	 * been spilled, or returns <code>null</code> if there is no such message.
+	 */
+	public Message releaseHeld(PeerID peerId, long msgCounter) {
+		HeldMessages peerHeld = this.held.get(peerId);
+		if (peerHeld == null || !peerHeld.segmentsByCounter.containsKey(msgCounter))
+			return null;
+		Segment segment = peerHeld.segmentsByCounter.get(msgCounter);
+		if (segment != null)
+			reloadHeld(peerHeld, segment);
+		Message message = peerHeld.inMemory.remove(msgCounter);
+		peerHeld.segmentsByCounter.remove(msgCounter);
+		long bytes = sizeOf(message);
+		peerHeld.memoryBytes -= bytes;
+		this.bufferedBytes -= bytes;
+		this.heldMessageCount--;
+		if (peerHeld.segmentsByCounter.isEmpty())
+			this.held.remove(peerId);
+		return message;
+	}
+
+	/**
+	 * Returns the peers for which messages are held.
+	 */
+	public Collection<PeerID> heldPeerIds() {
+		return this.held.keySet();
+	}
+
+	/**
+	 * Number of messages held, in memory or spilled.
+	 */
+	public int heldMessageCount() {
+		return heldMessageCount;
+	}
+
+	/**
+	 * Estimated size of the operations held in memory, including those of held messages.
+	 */
+	public long bufferedBytes() {
+		return bufferedBytes;
+	}
+
+	/**
+	 * Estimated size of the operations currently spilled to files.
+	 */
+	public long spilledBytes() {
+		return spilledBytes;
+	}
+
+	public int spilledSegmentCount() {
+		return spilledSegments;
+	}
+
+	/**
+	 * Returns the peer whose queue has been non-empty for the longest time, or <code>null</code> if all queues are
+	 * empty. Since ready operations are applied as soon as they arrive, this is the peer that has been blocked on a
+	 * causal dependency for the longest time.
+	 */
+	public PeerID oldestBlockedPeer() {
+		PeerQueue oldest = null;
+		for (PeerQueue queue : this.queues.values())
+			if (queue.size > 0 && (oldest == null || queue.nonEmptySinceMillis < oldest.nonEmptySinceMillis))
+				oldest = queue;
+		return oldest == null ? null : oldest.peerId;
+	}
+
+	/**
+	 * Returns the wall-clock time since which the given peer's queue has been non-empty, or -1 if it is empty.
+	 */
+	public long nonEmptySinceMillis(PeerID peerId) {
+		PeerQueue queue = this.queues.get(peerId);
+		return queue == null || queue.size == 0 ? -1 : queue.nonEmptySinceMillis;
+	}
+
+	/**
+	 * Spills held messages and then queues to files, largest first, until the memory used is below the limit. Held
+	 * messages go first, since they cannot be used before the messages missing ahead of them arrive. The peer calls
+	 * this after adding each message, so that a large batch of messages cannot exceed the limit before it is
+	 * checked, and again after applying operations, which may have read spilled operations back in. Spilling the
+	 * queue of a peer that is causally ready is allowed, but costs reading the queue back in straight away.
+	 */
+	public void spillIfOverLimit() {
+		if (this.bufferedBytes <= this.memoryLimitBytes)
+			return;
+		List<HeldMessages> heldCandidates = new ArrayList<HeldMessages>();
+		for (HeldMessages peerHeld : this.held.values())
+			if (peerHeld.memoryBytes > 0)
+				heldCandidates.add(peerHeld);
+		while (this.bufferedBytes > this.memoryLimitBytes && !heldCandidates.isEmpty()) {
+			HeldMessages largest = heldCandidates.get(0);
+			for (HeldMessages peerHeld : heldCandidates)
+				if (peerHeld.memoryBytes > largest.memoryBytes)
+					largest = peerHeld;
+			heldCandidates.remove(largest);
+			spillHeld(largest);
+		}
+		List<PeerQueue> candidates = new ArrayList<PeerQueue>();
+		for (PeerQueue queue : this.queues.values())
+			if (queue.memoryBytes > 0)
+				candidates.add(queue);
+		while (this.bufferedBytes > this.memoryLimitBytes && !candidates.isEmpty()) {
+			PeerQueue largest = candidates.get(0);
+			for (PeerQueue queue : candidates)
+				if (queue.memoryBytes > largest.memoryBytes)
+					largest = queue;
+			candidates.remove(largest);
+			spill(largest);
+		}
+	}
+
+	private void spill(PeerQueue queue) {
+		ArrayDeque<Operation> operations = queue.spilled.isEmpty() ? queue.head : queue.tail;
+		if (operations.isEmpty())
+			return;
+		long bytes = 0;
+		for (Operation operation : operations)
+			bytes += sizeOf(operation);
+		File file = writeSegment(queue.peerId, new ArrayList<Object>(operations), operations.size());
+		log.debug("Spilled {} operations ({} bytes) from {} to {}", operations.size(), bytes, queue.peerId, file);
+		queue.spilled.addLast(new Segment(file, operations.size(), bytes));
+		operations.clear();
+		queue.memoryBytes -= bytes;
+		this.bufferedBytes -= bytes;
+		this.spilledBytes += bytes;
+		this.spilledSegments++;
+	}
+
+	private void reload(PeerQueue queue) {
+		Segment segment = queue.spilled.pollFirst();
+		for (Object operation : readSegment(queue.peerId, segment))
+			queue.head.addLast((Operation) operation);
+		queue.memoryBytes += segment.bytes;
+		this.bufferedBytes += segment.bytes;
+		this.spilledBytes -= segment.bytes;
+		this.spilledSegments--;
+	}
+
+	// Each message is written as its counter followed by a list of its operations
+	private void spillHeld(HeldMessages peerHeld) {
+		List<Object> objects = new ArrayList<Object>(2 * peerHeld.inMemory.size());
+		int operationCount = 0;
+		for (Message message : peerHeld.inMemory.values()) {
+			objects.add(message.getMsgCounter());
+			objects.add(new ArrayList<Operation>(message.getOperations()));
+			operationCount += message.getOperations().size();
+		}
+		long bytes = peerHeld.memoryBytes;
+		File file = writeSegment(peerHeld.peerId, objects, operationCount);
+		log.debug("Spilled {} held messages ({} bytes) from {} to {}", peerHeld.inMemory.size(), bytes, peerHeld.peerId, file);
+		Segment segment = new Segment(file, operationCount, bytes);
+		for (Long msgCounter : peerHeld.inMemory.keySet())
+			peerHeld.segmentsByCounter.put(msgCounter, segment);
+		peerHeld.inMemory.clear();
+		peerHeld.memoryBytes = 0;
+		this.bufferedBytes -= bytes;
+		this.spilledBytes += bytes;
+		this.spilledSegments++;
+	}
+
+	private void reloadHeld(HeldMessages peerHeld, Segment segment) {
+		List<Object> objects = readSegment(peerHeld.peerId, segment);
+		for (int i = 0; i < objects.size(); i += 2) {
+			long msgCounter = (Long) objects.get(i);
+			@SuppressWarnings("unchecked")
+			List<Operation> operations = (List<Operation>) objects.get(i + 1);
+			Message message = new Message(peerHeld.peerId, msgCounter,
+					OperationList.create(new ArrayDeque<Operation>(operations)));
+			peerHeld.inMemory.put(msgCounter, message);
+			peerHeld.segmentsByCounter.put(msgCounter, null);
+		}
+		peerHeld.memoryBytes += segment.bytes;
+		this.bufferedBytes += segment.bytes;
+		this.spilledBytes -= segment.bytes;
+		this.spilledSegments--;
+	}
+
+	private File writeSegment(PeerID peerId, List<Object> objects, int operationCount) {
+		final StorageIOEvent event = new StorageIOEvent();
+		event.begin();
+		File file = null;
+		try {
+			file = File.createTempFile("recvbuf-", ".spill", this.spillDirectory);
+			ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				out.writeInt(objects.size());
+				for (Object object : objects)
+					out.writeObject(object);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			if (file != null && !file.delete())
+				log.warn("Could not delete spill file {}", file);
+			throw new RuntimeException("Failed to spill buffered operations for " + peerId, e);
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.kind = "recvbuf-spill";
+			event.path = file.getPath();
+			event.operationCount = operationCount;
+			event.bytes = file.length();
+			event.commit();
+		}
+		return file;
+	}
+
+	private List<Object> readSegment(PeerID peerId, Segment segment) {
+		final StorageIOEvent event = new StorageIOEvent();
+		event.begin();
+		List<Object> objects;
+		try {
+			ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(segment.file)));
+			try {
+				int count = in.readInt();
+				objects = new ArrayList<Object>(count);
+				for (int i = 0; i < count; i++)
+					objects.add(in.readObject());
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to reload buffered operations for " + peerId, e);
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException("Failed to reload buffered operations for " + peerId, e);
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.kind = "recvbuf-reload";
+			event.path = segment.file.getPath();
+			event.operationCount = segment.count;
+			event.bytes = segment.file.length();
+			event.commit();
+		}
+		if (!segment.file.delete())
+			log.warn("Could not delete spill file {}", segment.file);
+		return objects;
+	}
+
+	private static long sizeOf(Operation operation) {
+		return OperationSize.estimate(operation) + OPERATION_OVERHEAD_BYTES;
+	}
+
+	private static long sizeOf(Message message) {
+		long bytes = 0;
+		for (Operation operation : message.getOperations())
+			bytes += sizeOf(operation);
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sizes = new StringBuilder();
+		for (PeerQueue queue : this.queues.values())
+			sizes.append(sizes.length() == 0 ? "" : ", ").append(queue.peerId).append('=').append(queue.size);
+		return "ReceiveBuffer [sizes={" + sizes + "}, heldMessages=" + heldMessageCount + ", bufferedBytes=" + bufferedBytes
+				+ ", spilledBytes=" + spilledBytes + "]";
+	}
+}
@@ -5,6 +5,7 @@ import java.util.List;
 import org.trvedata.crdt.operation.ClockUpdate;
 
 public class RemoteClockUpdate implements ClockUpdate {
+	private static final long serialVersionUID = 1L;
 
 	private List<PeerVClockEntry> entries;
 	private long nextTimestamp;
@@ -0,0 +1,52 @@
+package org.trvedata.crdt;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+import org.trvedata.crdt.operation.ChangingOperation;
+
+/**
+ * The part of a peer's state that another peer is missing, computed by {@link Peer#makeStateDelta(VersionVector)}
+ * and applied with {@link Peer#applyStateDelta(StateDelta)}. It consists of operations that recreate the missing
+ * items and deletions of all CRDT objects (each tagged with its target object), the sender's version vector, and
+ * the sender's vector clock matrix (see {@link PeerMatrix#exportClocks()}), so that the receiver can skip the
+ * messages whose effects the delta contains.
+ */
+public class StateDelta implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final PeerID originPeerId;
+	private final VersionVector version;
+	private final Map<PeerID, List<PeerVClockEntry>> clocks;
+	private final List<ChangingOperation> operations;
+
+	public StateDelta(PeerID originPeerId, VersionVector version, Map<PeerID, List<PeerVClockEntry>> clocks,
+			List<ChangingOperation> operations) {
+		this.originPeerId = originPeerId;
+		this.version = version;
+		this.clocks = clocks;
+		this.operations = operations;
+	}
+
+	public PeerID getOriginPeerId() {
+		return originPeerId;
+	}
+
+	public VersionVector getVersion() {
+		return version;
+	}
+
+	public Map<PeerID, List<PeerVClockEntry>> getClocks() {
+		return clocks;
+	}
+
+	public List<ChangingOperation> getOperations() {
+		return operations;
+	}
+
+	@Override
+	public String toString() {
+		return "StateDelta [originPeerId=" + originPeerId + ", version=" + version + ", operations=" + operations.size() + "]";
+	}
+}
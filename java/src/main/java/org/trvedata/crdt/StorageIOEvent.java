@@ -0,0 +1,35 @@
+package org.trvedata.crdt;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for reading or writing operations to disk, e.g. when the receive buffer spills.
+ */
+@Name("org.trvedata.crdt.StorageIO")
+@Label("Storage I/O")
+@Category("trvesync")
+@Description("Operations written to or read from a file")
+@Enabled(false)
+@StackTrace(false)
+class StorageIOEvent extends Event {
+	@Label("Kind")
+	@Description("What was read or written, e.g. recvbuf-spill or recvbuf-reload")
+	String kind;
+
+	@Label("Path")
+	String path;
+
+	@Label("Operations")
+	int operationCount;
+
+	@Label("Size")
+	@DataAmount
+	long bytes;
+}
@@ -0,0 +1,86 @@
+package org.trvedata.crdt;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Summarises which operations a peer has seen, as the highest logical timestamp of any operation generated by each
+ * peer. Since each peer's operations are delivered in order and its timestamps only increase, a peer that has seen
+ * an operation with timestamp t from peer p has also seen all of p's operations with smaller timestamps. So the
+ * vector tells for any item or deletion ID whether the peer has it.
+ *
+ * Unlike the message counts kept by {@link PeerMatrix}, these timestamps can be compared with the IDs stored in the
+ * data structures, which is what a state delta needs (see {@link Peer#makeStateDelta(VersionVector)}).
+ */
+public class VersionVector implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final HashMap<PeerID, Long> maxTimestamps;
+
+	public VersionVector() {
+		this.maxTimestamps = new HashMap<PeerID, Long>();
+	}
+
+	public VersionVector(VersionVector other) {
+		this.maxTimestamps = new HashMap<PeerID, Long>(other.maxTimestamps);
+	}
+
+	/**
+	 * Returns the highest timestamp seen from the given peer, or 0 if none.
+	 */
+	public long get(PeerID peerId) {
+		Long maxTs = this.maxTimestamps.get(peerId);
+		return maxTs == null ? 0 : maxTs;
+	}
+
+	/**
+	 * Returns true if an operation with the given ID has been seen.
+	 */
+	public boolean contains(ItemID id) {
+		return id.getLogicalTs() <= get(id.getPeerId());
+	}
+
+	/**
+	 * Records that an operation with the given timestamp from the given peer has been seen.
+	 */
+	public void update(PeerID peerId, long logicalTs) {
+		if (logicalTs > get(peerId))
+			this.maxTimestamps.put(peerId, logicalTs);
+	}
+
+	/**
+	 * Updates this vector to include everything seen by the other one.
+	 */
+	public void merge(VersionVector other) {
+		for (Map.Entry<PeerID, Long> entry : other.maxTimestamps.entrySet())
+			update(entry.getKey(), entry.getValue());
+	}
+
+	public Map<PeerID, Long> entries() {
+		return Collections.unmodifiableMap(this.maxTimestamps);
+	}
+
+	@Override
+	public int hashCode() {
+		return maxTimestamps.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		VersionVector other = (VersionVector) obj;
+		return maxTimestamps.equals(other.maxTimestamps);
+	}
+
+	@Override
+	public String toString() {
+		return "VersionVector " + maxTimestamps;
+	}
+}
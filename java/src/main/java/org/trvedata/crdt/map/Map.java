@@ -0,0 +1,299 @@
+package org.trvedata.crdt.map;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.Map.Entry;
+
+import org.trvedata.crdt.CRDT;
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.VersionVector;
+import org.trvedata.crdt.metrics.Metrics;
+import org.trvedata.crdt.metrics.SettableGauge;
+import org.trvedata.crdt.operation.ChangingOperation;
+
+/**
+ * A CRDT that maintains a mapping from keys to values, following the Ruby implementation (map.rb). Adding a key is a
+ * PutOp, whose ID identifies the key from then on: later writes and removals ({@link WriteOp}, {@link RemoveOp}) refer
+ * to that ID rather than repeating the key. If several peers add the same key concurrently, their puts are merged
+ * into one entry, which all of their IDs identify. Each value is a last-writer-wins register: of several concurrent
+ * writes to the same key, the one with the greatest operation ID wins. Removing a key is a write too, which leaves a
+ * tombstone behind so that it can win against older concurrent writes. Tombstones can be discarded with
+ * {@link #collectTombstones(ItemID)} once all peers have seen the removal.
+ */
+public class Map<K, V> extends CRDT {
+	private static class Item<K, V> {
+		final K key;
+		final ItemID putId;
+		// IDs of concurrent puts of the same key that were merged into this item, or null if there are none
+		List<ItemID> mergedPutIds;
+		ItemID updateTs;
+		V value;
+		boolean removed;
+
+		public Item(K key, ItemID putId, V value) {
+			this.key = key;
+			this.putId = putId;
+			this.updateTs = putId;
+			this.value = value;
+		}
+	}
+
+	private final HashMap<K, Item<K, V>> itemsByKey;
+	private final HashMap<ItemID, Item<K, V>> itemsById;
+	// Removed items, by the ID of the removal
+	private final TreeMap<ItemID, Item<K, V>> tombstones = new TreeMap<ItemID, Item<K, V>>();
+	private int size = 0;
+	// Set by publishGauges() on the peer's thread, since the gauges may be read from another thread
+	private final SettableGauge sizeGauge = new SettableGauge(), tombstonesGauge = new SettableGauge();
+
+	public Map() {
+		this.itemsByKey = new HashMap<K, Item<K, V>>();
+		this.itemsById = new HashMap<ItemID, Item<K, V>>();
+	}
+
+	/**
+	 * Creates an empty map with room for expectedKeys keys (including tombstones) before the index is resized.
+	 */
+	public Map(int expectedKeys) {
+		int capacity = (int) Math.min(Integer.MAX_VALUE, expectedKeys * 4L / 3 + 1);
+		this.itemsByKey = new HashMap<K, Item<K, V>>(capacity);
+		this.itemsById = new HashMap<ItemID, Item<K, V>>(capacity);
+	}
+
+	/**
+	 * Returns the value for the given key, or <code>null</code> if the key is not present.
+	 */
+	public V get(K key) {
+		Item<K, V> item = this.itemsByKey.get(key);
+		return item == null ? null : item.value;
+	}
+
+	public boolean containsKey(K key) {
+		Item<K, V> item = this.itemsByKey.get(key);
+		return item != null && !item.removed;
+	}
+
+	/**
+	 * Returns the number of keys present in the map, not counting tombstones.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of tombstones left by removed keys.
+	 */
+	public int tombstoneCount() {
+		return this.tombstones.size();
+	}
+
+	@Override
+	protected void registerMetrics(Metrics metrics, String prefix) {
+		metrics.gauge(prefix + ".size", this.sizeGauge);
+		metrics.gauge(prefix + ".tombstones", this.tombstonesGauge);
+	}
+
+	@Override
+	protected void publishGauges() {
+		this.sizeGauge.set(this.size);
+		this.tombstonesGauge.set(tombstoneCount());
+	}
+
+	/**
+	 * Returns the operations for every key whose latest write (or removal), or any of whose puts, a peer with the
+	 * given version has not seen. The puts it has not seen are sent first, including the concurrent puts merged into
+	 * the key's item, so that later operations can refer to the item by any of their IDs.
+	 */
+	@Override
+	public List<ChangingOperation> delta(VersionVector remoteVersion) {
+		List<ChangingOperation> operations = new ArrayList<ChangingOperation>();
+		for (Item<K, V> item : this.itemsByKey.values()) {
+			addDeltaPut(operations, remoteVersion, item, item.putId);
+			if (item.mergedPutIds != null) {
+				for (ItemID putId : item.mergedPutIds)
+					addDeltaPut(operations, remoteVersion, item, putId);
+			}
+			if (remoteVersion.contains(item.updateTs) || this.itemsById.get(item.updateTs) == item)
+				continue;
+			addDeltaOperation(operations, item.removed ? new RemoveOp(item.updateTs, item.putId)
+					: new WriteOp<V>(item.updateTs, item.putId, item.value));
+		}
+		return operations;
+	}
+
+	/*
+	 * Adds a put that the remote peer has not seen. Only the latest operation on the item carries its value: the
+	 * value of an older put has been overwritten, and is replaced by the latest operation, which has a greater ID
+	 * and is sent after it.
+	 */
+	private void addDeltaPut(List<ChangingOperation> operations, VersionVector remoteVersion, Item<K, V> item,
+			ItemID putId) {
+		if (!remoteVersion.contains(putId))
+			addDeltaOperation(operations, new PutOp<K, V>(putId, item.key, putId.equals(item.updateTs) ? item.value : null));
+	}
+
+	private void addDeltaOperation(List<ChangingOperation> operations, ChangingOperation operation) {
+		operation.setTarget(this.getObjectId());
+		operations.add(operation);
+	}
+
+	/**
+	 * Sets the given key to the given value (local operation). A key that is present is written by ID; a key that is
+	 * absent, or has been removed, is put anew.
+	 */
+	public Map<K, V> put(K key, V value) {
+		Item<K, V> item = this.itemsByKey.get(key);
+		if (item != null && !item.removed) {
+			WriteOp<V> op = new WriteOp<V>(this.peer.nextId(), item.putId, value);
+			this.write(item, op.getOperationID(), value, false);
+			this.sendOperation(op);
+		} else {
+			PutOp<K, V> op = new PutOp<K, V>(this.peer.nextId(), key, value);
+			this.put(key, op.getOperationID(), value);
+			this.sendOperation(op);
+		}
+		return this;
+	}
+
+	/**
+	 * Puts all the given keys (local operation). This is sent as a single operation, however many entries there are;
+	 * the entries are given consecutive IDs.
+	 */
+	public Map<K, V> putAll(java.util.Map<? extends K, ? extends V> entries) {
+		if (entries.isEmpty())
+			return this;
+		ItemID firstId = this.peer.nextId();
+		for (int i = 1; i < entries.size(); i++)
+			this.peer.nextId();
+		PutAllOp<K, V> op = new PutAllOp<K, V>(firstId, new LinkedHashMap<K, V>(entries));
+		applyPutAll(op);
+		this.sendOperation(op);
+		return this;
+	}
+
+	/**
+	 * Removes the given key from the map (local operation). Does nothing if the key is not present.
+	 */
+	public Map<K, V> remove(K key) {
+		if (!containsKey(key))
+			return this;
+		Item<K, V> item = this.itemsByKey.get(key);
+		RemoveOp op = new RemoveOp(this.peer.nextId(), item.putId);
+		this.write(item, op.getOperationID(), null, true);
+		this.sendOperation(op);
+		return this;
+	}
+
+	/*
+	 * Applies a remote operation to a local copy of the data structure. The operation must be causally ready, as per
+	 * the data structure's vector clock.
+	 */
+	public void applyOperation(ChangingOperation operation) {
+		if (operation instanceof PutOp) {
+			@SuppressWarnings("unchecked")
+			PutOp<K, V> putOp = (PutOp<K, V>) operation;
+			this.put(putOp.getKey(), putOp.getOperationID(), putOp.getValue());
+		} else if (operation instanceof PutAllOp) {
+			@SuppressWarnings("unchecked")
+			PutAllOp<K, V> putAllOp = (PutAllOp<K, V>) operation;
+			applyPutAll(putAllOp);
+		} else if (operation instanceof WriteOp) {
+			@SuppressWarnings("unchecked")
+			WriteOp<V> writeOp = (WriteOp<V>) operation;
+			this.write(itemById(writeOp.getItemId()), writeOp.getOperationID(), writeOp.getValue(), false);
+		} else if (operation instanceof RemoveOp) {
+			RemoveOp removeOp = (RemoveOp) operation;
+			this.write(itemById(removeOp.getItemId()), removeOp.getOperationID(), null, true);
+		} else {
+			throw new RuntimeException("applyOperation: Invalid operation: " + operation);
+		}
+		this.onOperation(operation);
+	}
+
+	private void applyPutAll(PutAllOp<K, V> op) {
+		int i = 0;
+		for (Entry<K, V> entry : op.getEntries().entrySet())
+			this.put(entry.getKey(), op.getEntryId(i++), entry.getValue());
+	}
+
+	private Item<K, V> itemById(ItemID putId) {
+		Item<K, V> item = this.itemsById.get(putId);
+		if (item == null)
+			throw new RuntimeException("Write to unknown map item with id " + putId);
+		return item;
+	}
+
+	/*
+	 * Adds a key with the given put ID. If the key is already present (from a concurrent put, or an earlier one that
+	 * has since been removed), the put is merged into its item as a write.
+	 */
+	private void put(K key, ItemID putId, V value) {
+		Item<K, V> item = this.itemsByKey.get(key);
+		if (item == null) {
+			item = new Item<K, V>(key, putId, value);
+			this.itemsByKey.put(key, item);
+			this.itemsById.put(putId, item);
+			size++;
+		} else if (!this.itemsById.containsKey(putId)) {
+			if (item.mergedPutIds == null)
+				item.mergedPutIds = new ArrayList<ItemID>(1);
+			item.mergedPutIds.add(putId);
+			this.itemsById.put(putId, item);
+			this.write(item, putId, value, false);
+		}
+	}
+
+	/*
+	 * Writes the register of the given item, unless it has already been written by an operation with a greater ID.
+	 */
+	private void write(Item<K, V> item, ItemID updateTs, V value, boolean removed) {
+		if (updateTs.compareTo(item.updateTs) <= 0)
+			return;
+		if (item.removed)
+			this.tombstones.remove(item.updateTs);
+		if (removed)
+			this.tombstones.put(updateTs, item);
+		if (item.removed != removed)
+			size += removed ? -1 : 1;
+		item.updateTs = updateTs;
+		item.value = value;
+		item.removed = removed;
+	}
+
+	/**
+	 * Discards the tombstones of removals whose ID is lower than stableTs, and returns how many were discarded. This
+	 * takes time proportional to the number discarded. The caller must make sure that every peer has seen every
+	 * operation with an ID lower than stableTs, and that no operations generated before seeing those are still in
+	 * flight: otherwise an older concurrent write that arrives later would bring the key back, or refer to an item
+	 * that no longer exists.
+	 */
+	public int collectTombstones(ItemID stableTs) {
+		SortedMap<ItemID, Item<K, V>> collectable = this.tombstones.headMap(stableTs);
+		int collected = collectable.size();
+		for (Item<K, V> item : collectable.values()) {
+			this.itemsByKey.remove(item.key);
+			this.itemsById.remove(item.putId);
+			if (item.mergedPutIds != null) {
+				for (ItemID putId : item.mergedPutIds)
+					this.itemsById.remove(putId);
+			}
+		}
+		collectable.clear();
+		return collected;
+	}
+
+	/**
+	 * Returns a copy of the current contents of the map, without tombstones.
+	 */
+	public java.util.Map<K, V> toMap() {
+		HashMap<K, V> map = new HashMap<K, V>(size * 4 / 3 + 1);
+		for (Item<K, V> item : this.itemsByKey.values())
+			if (!item.removed)
+				map.put(item.key, item.value);
+		return map;
+	}
+}
@@ -0,0 +1,19 @@
+package org.trvedata.crdt.map;
+
+import org.trvedata.crdt.Peer;
+
+public class MapPeer<K, V> extends Peer {
+
+	public MapPeer() {
+		this(null);
+	}
+
+	public MapPeer(String peerId) {
+		super(peerId, new Map<K, V>());
+	}
+
+	@SuppressWarnings("unchecked")
+	public Map<K, V> getMap() {
+		return (Map<K, V>) getCRDT();
+	}
+}
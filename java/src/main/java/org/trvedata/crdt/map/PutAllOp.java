@@ -0,0 +1,70 @@
+package org.trvedata.crdt.map;
+
+import java.util.Map.Entry;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.operation.ChangingOperation;
+import org.trvedata.crdt.operation.OperationSize;
+
+/**
+ * Operation recording that many keys were put at once. The entries have consecutive IDs, starting with the operation
+ * ID, in the iteration order of the entries; applying it is equivalent to applying one PutOp per entry with its ID.
+ */
+public class PutAllOp<K, V> extends ChangingOperation {
+	private static final long serialVersionUID = 1L;
+
+	private java.util.Map<K, V> entries;
+
+	public PutAllOp(ItemID operationID, java.util.Map<K, V> entries) {
+		super(operationID);
+		this.entries = entries;
+	}
+
+	public long logicalTs() {
+		return getOperationID().getLogicalTs() + entries.size() - 1;
+	}
+
+	/**
+	 * Returns the ID of the i-th entry, counting from 0 in iteration order.
+	 */
+	public ItemID getEntryId(int i) {
+		return new ItemID(getOperationID().getLogicalTs() + i, getOperationID().getPeerId());
+	}
+
+	public java.util.Map<K, V> getEntries() {
+		return entries;
+	}
+
+	@Override
+	public int estimatedSize() {
+		int size = OperationSize.ITEM_ID_BYTES;
+		for (Entry<K, V> entry : entries.entrySet())
+			size += OperationSize.estimateValue(entry.getKey()) + OperationSize.estimateValue(entry.getValue());
+		return size;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + entries.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PutAllOp other = (PutAllOp) obj;
+		return entries.equals(other.entries);
+	}
+
+	@Override
+	public String toString() {
+		return "PutAllOp [operationID=" + getOperationID() + ", entries=" + entries + "]";
+	}
+}
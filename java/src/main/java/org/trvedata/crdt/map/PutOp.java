@@ -0,0 +1,76 @@
+package org.trvedata.crdt.map;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.operation.ChangingOperation;
+import org.trvedata.crdt.operation.OperationSize;
+
+/**
+ * Operation recording that a key was added to a map, with its first value. Later writes to the key refer to it by the
+ * ID of this operation (see {@link WriteOp} and {@link RemoveOp}). If several peers add the same key concurrently,
+ * their puts are merged into one entry, and the write with the greatest ID wins.
+ */
+public class PutOp<K, V> extends ChangingOperation {
+	private static final long serialVersionUID = 1L;
+
+	private K key;
+	private V value;
+
+	public PutOp(ItemID operationID, K key, V value) {
+		super(operationID);
+		this.key = key;
+		this.value = value;
+	}
+
+	public long logicalTs() {
+		return getOperationID().getLogicalTs();
+	}
+
+	public K getKey() {
+		return key;
+	}
+
+	public V getValue() {
+		return value;
+	}
+
+	@Override
+	public int estimatedSize() {
+		return OperationSize.ITEM_ID_BYTES + OperationSize.estimateValue(key) + OperationSize.estimateValue(value);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + ((key == null) ? 0 : key.hashCode());
+		result = prime * result + ((value == null) ? 0 : value.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PutOp other = (PutOp) obj;
+		if (key == null) {
+			if (other.key != null)
+				return false;
+		} else if (!key.equals(other.key))
+			return false;
+		if (value == null) {
+			if (other.value != null)
+				return false;
+		} else if (!value.equals(other.value))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "PutOp [operationID=" + getOperationID() + ", key=" + key + ", value=" + value + "]";
+	}
+}
@@ -0,0 +1,67 @@
+package org.trvedata.crdt.map;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.operation.ChangingOperation;
+import org.trvedata.crdt.operation.OperationSize;
+
+/**
+ * Operation recording that a key was removed from a map. Like a {@link WriteOp}, it identifies the key by the ID of
+ * the PutOp that created it. The removal competes with concurrent writes to the same key like any other write:
+ * whichever operation has the greatest ID wins.
+ */
+public class RemoveOp extends ChangingOperation {
+	private static final long serialVersionUID = 1L;
+
+	private ItemID itemId;
+
+	public RemoveOp(ItemID operationID, ItemID itemId) {
+		super(operationID);
+		this.itemId = itemId;
+	}
+
+	public long logicalTs() {
+		return getOperationID().getLogicalTs();
+	}
+
+	/**
+	 * Returns the ID of the PutOp that created the key.
+	 */
+	public ItemID getItemId() {
+		return itemId;
+	}
+
+	@Override
+	public int estimatedSize() {
+		return 2 * OperationSize.ITEM_ID_BYTES;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + ((itemId == null) ? 0 : itemId.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		RemoveOp other = (RemoveOp) obj;
+		if (itemId == null) {
+			if (other.itemId != null)
+				return false;
+		} else if (!itemId.equals(other.itemId))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "RemoveOp [operationID=" + getOperationID() + ", itemId=" + itemId + "]";
+	}
+}
@@ -0,0 +1,79 @@
+package org.trvedata.crdt.map;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.operation.ChangingOperation;
+import org.trvedata.crdt.operation.OperationSize;
+
+/**
+ * Operation recording that a new value was written to an existing key of a map. The key is identified by the ID of
+ * the PutOp that created it, so the key itself does not need to be sent again. Concurrent writes are resolved by the
+ * operation ID: the write with the greatest ID wins.
+ */
+public class WriteOp<V> extends ChangingOperation {
+	private static final long serialVersionUID = 1L;
+
+	private ItemID itemId;
+	private V value;
+
+	public WriteOp(ItemID operationID, ItemID itemId, V value) {
+		super(operationID);
+		this.itemId = itemId;
+		this.value = value;
+	}
+
+	public long logicalTs() {
+		return getOperationID().getLogicalTs();
+	}
+
+	/**
+	 * Returns the ID of the PutOp that created the key.
+	 */
+	public ItemID getItemId() {
+		return itemId;
+	}
+
+	public V getValue() {
+		return value;
+	}
+
+	@Override
+	public int estimatedSize() {
+		return 2 * OperationSize.ITEM_ID_BYTES + OperationSize.estimateValue(value);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + ((itemId == null) ? 0 : itemId.hashCode());
+		result = prime * result + ((value == null) ? 0 : value.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		WriteOp other = (WriteOp) obj;
+		if (itemId == null) {
+			if (other.itemId != null)
+				return false;
+		} else if (!itemId.equals(other.itemId))
+			return false;
+		if (value == null) {
+			if (other.value != null)
+				return false;
+		} else if (!value.equals(other.value))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "WriteOp [operationID=" + getOperationID() + ", itemId=" + itemId + ", value=" + value + "]";
+	}
+}
@@ -0,0 +1,23 @@
+package org.trvedata.crdt.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count. Increments are striped across cells (see {@link LongAdder}), so they stay cheap
+ * even when many threads update the same counter.
+ */
+public class Counter {
+	private final LongAdder count = new LongAdder();
+
+	public void increment() {
+		count.increment();
+	}
+
+	public void add(long delta) {
+		count.add(delta);
+	}
+
+	public long get() {
+		return count.sum();
+	}
+}
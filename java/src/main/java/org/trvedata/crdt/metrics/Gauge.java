@@ -0,0 +1,8 @@
+package org.trvedata.crdt.metrics;
+
+/**
+ * A value that is computed when metrics are reported, e.g. the current size of a data structure.
+ */
+public interface Gauge {
+	long value();
+}
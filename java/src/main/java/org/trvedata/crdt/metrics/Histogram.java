@@ -0,0 +1,36 @@
+package org.trvedata.crdt.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative values (typically latencies), recorded into power-of-two buckets: bucket 0 holds the
+ * value 0, and bucket i holds values in [2^(i-1), 2^i). Recording a value costs a couple of striped increments, and
+ * percentiles are accurate to within a factor of two.
+ */
+public class Histogram {
+	private static final int BUCKETS = 64;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+
+	public Histogram() {
+		for (int i = 0; i < BUCKETS; i++)
+			buckets[i] = new LongAdder();
+	}
+
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+		count.increment();
+		sum.add(value);
+	}
+
+	public HistogramSnapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] = buckets[i].sum();
+		return new HistogramSnapshot(counts, count.sum(), sum.sum());
+	}
+}
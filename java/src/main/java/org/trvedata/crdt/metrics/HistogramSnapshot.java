@@ -0,0 +1,53 @@
+package org.trvedata.crdt.metrics;
+
+/**
+ * The state of a {@link Histogram} at one point in time.
+ */
+public class HistogramSnapshot {
+	private final long[] bucketCounts;
+	private final long count;
+	private final long sum;
+
+	HistogramSnapshot(long[] bucketCounts, long count, long sum) {
+		this.bucketCounts = bucketCounts;
+		this.count = count;
+		this.sum = sum;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getSum() {
+		return sum;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Returns an upper bound for the given percentile (between 0 and 100): the upper end of the bucket containing it.
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		for (long bucketCount : bucketCounts)
+			total += bucketCount;
+		if (total == 0)
+			return 0;
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < bucketCounts.length; i++) {
+			seen += bucketCounts[i];
+			if (seen >= rank && bucketCounts[i] > 0)
+				return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+		}
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public String toString() {
+		return "HistogramSnapshot [count=" + count + ", mean=" + getMean() + ", p50=" + getPercentile(50) + ", p99="
+				+ getPercentile(99) + "]";
+	}
+}
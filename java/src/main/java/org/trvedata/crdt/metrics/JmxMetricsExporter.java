@@ -0,0 +1,115 @@
+package org.trvedata.crdt.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes a {@link Metrics} registry as a JMX MBean, with one read-only attribute per counter and gauge, and
+ * attributes <code>name.count</code>, <code>name.mean</code>, <code>name.p50</code>, <code>name.p99</code> and
+ * <code>name.max</code> per histogram. Values are read from the registry whenever JMX asks for them; reading a single
+ * attribute only reads the metric it belongs to.
+ */
+public class JmxMetricsExporter implements DynamicMBean {
+	private final Metrics metrics;
+
+	public JmxMetricsExporter(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Registers the metrics with the given MBean server under the given name, e.g.
+	 * <code>org.trvedata.crdt:type=Peer,name=...</code>.
+	 */
+	public static JmxMetricsExporter register(Metrics metrics, MBeanServer server, ObjectName name) throws JMException {
+		JmxMetricsExporter exporter = new JmxMetricsExporter(metrics);
+		server.registerMBean(exporter, name);
+		return exporter;
+	}
+
+	private static final String[] HISTOGRAM_ATTRIBUTES = { "count", "mean", "p50", "p99", "max" };
+
+	private static Object histogramAttribute(HistogramSnapshot histogram, String attribute) {
+		if (attribute.equals("count"))
+			return histogram.getCount();
+		else if (attribute.equals("mean"))
+			return histogram.getMean();
+		else if (attribute.equals("p50"))
+			return histogram.getPercentile(50);
+		else if (attribute.equals("p99"))
+			return histogram.getPercentile(99);
+		else if (attribute.equals("max"))
+			return histogram.getPercentile(100);
+		return null;
+	}
+
+	private static Map<String, Object> attributes(MetricsSnapshot snapshot) {
+		Map<String, Object> attributes = new TreeMap<String, Object>();
+		attributes.putAll(snapshot.getCounters());
+		attributes.putAll(snapshot.getGauges());
+		for (Map.Entry<String, HistogramSnapshot> entry : snapshot.getHistograms().entrySet())
+			for (String attribute : HISTOGRAM_ATTRIBUTES)
+				attributes.put(entry.getKey() + "." + attribute, histogramAttribute(entry.getValue(), attribute));
+		return attributes;
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		Object value = metrics.value(attribute);
+		int dot = attribute.lastIndexOf('.');
+		if (value == null && dot > 0) {
+			Histogram histogram = metrics.findHistogram(attribute.substring(0, dot));
+			if (histogram != null)
+				value = histogramAttribute(histogram.snapshot(), attribute.substring(dot + 1));
+		}
+		if (value == null)
+			throw new AttributeNotFoundException("No such metric: " + attribute);
+		return value;
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] names) {
+		Map<String, Object> attributes = attributes(metrics.snapshot());
+		AttributeList list = new AttributeList();
+		for (String name : names)
+			if (attributes.containsKey(name))
+				list.add(new Attribute(name, attributes.get(name)));
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) {
+		throw new UnsupportedOperationException("No operations on metrics: " + actionName);
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> infos = new ArrayList<MBeanAttributeInfo>();
+		for (Map.Entry<String, Object> entry : attributes(metrics.snapshot()).entrySet())
+			infos.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(), entry.getKey(),
+					true, false, false));
+		return new MBeanInfo(getClass().getName(), "trvesync CRDT metrics",
+				infos.toArray(new MBeanAttributeInfo[infos.size()]), null, null, null);
+	}
+}
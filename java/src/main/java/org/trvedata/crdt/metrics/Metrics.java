@@ -0,0 +1,87 @@
+package org.trvedata.crdt.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of named counters, gauges and histograms. Metrics are created on first use and live as long as the
+ * registry; components look them up once and keep a reference, so that updating a metric on a hot path does not
+ * involve a map lookup. A snapshot of all metrics can be handed to any {@link MetricsSink}.
+ *
+ * Metric names are dot-separated, e.g. <code>peer.messages.received</code>.
+ */
+public class Metrics {
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+	public Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			Counter newCounter = new Counter();
+			counter = counters.putIfAbsent(name, newCounter);
+			if (counter == null)
+				counter = newCounter;
+		}
+		return counter;
+	}
+
+	public Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			Histogram newHistogram = new Histogram();
+			histogram = histograms.putIfAbsent(name, newHistogram);
+			if (histogram == null)
+				histogram = newHistogram;
+		}
+		return histogram;
+	}
+
+	/**
+	 * Registers a gauge under the given name, replacing any gauge previously registered under that name.
+	 */
+	public void gauge(String name, Gauge gauge) {
+		gauges.put(name, gauge);
+	}
+
+	public void removeGauge(String name) {
+		gauges.remove(name);
+	}
+
+	/*
+	 * Returns the current value of the counter or gauge with the given name, or null if there is none.
+	 */
+	Long value(String name) {
+		Counter counter = counters.get(name);
+		if (counter != null)
+			return counter.get();
+		Gauge gauge = gauges.get(name);
+		return gauge == null ? null : gauge.value();
+	}
+
+	/*
+	 * Returns the histogram with the given name, or null if there is none (unlike histogram(), which creates it).
+	 */
+	Histogram findHistogram(String name) {
+		return histograms.get(name);
+	}
+
+	public MetricsSnapshot snapshot() {
+		Map<String, Long> counterValues = new TreeMap<String, Long>();
+		for (Map.Entry<String, Counter> entry : counters.entrySet())
+			counterValues.put(entry.getKey(), entry.getValue().get());
+		Map<String, Long> gaugeValues = new TreeMap<String, Long>();
+		for (Map.Entry<String, Gauge> entry : gauges.entrySet())
+			gaugeValues.put(entry.getKey(), entry.getValue().value());
+		Map<String, HistogramSnapshot> histogramValues = new TreeMap<String, HistogramSnapshot>();
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet())
+			histogramValues.put(entry.getKey(), entry.getValue().snapshot());
+		return new MetricsSnapshot(System.currentTimeMillis(), counterValues, gaugeValues, histogramValues);
+	}
+
+	public void report(MetricsSink sink) {
+		sink.report(snapshot());
+	}
+}
@@ -0,0 +1,8 @@
+package org.trvedata.crdt.metrics;
+
+/**
+ * Destination for reported metrics, e.g. a log, a monitoring system or JMX.
+ */
+public interface MetricsSink {
+	void report(MetricsSnapshot snapshot);
+}
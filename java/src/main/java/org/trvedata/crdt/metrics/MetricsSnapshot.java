@@ -0,0 +1,42 @@
+package org.trvedata.crdt.metrics;
+
+import java.util.Map;
+
+/**
+ * The values of all metrics of a {@link Metrics} registry at one point in time, keyed by metric name.
+ */
+public class MetricsSnapshot {
+	private final long timestampMillis;
+	private final Map<String, Long> counters;
+	private final Map<String, Long> gauges;
+	private final Map<String, HistogramSnapshot> histograms;
+
+	public MetricsSnapshot(long timestampMillis, Map<String, Long> counters, Map<String, Long> gauges,
+			Map<String, HistogramSnapshot> histograms) {
+		this.timestampMillis = timestampMillis;
+		this.counters = counters;
+		this.gauges = gauges;
+		this.histograms = histograms;
+	}
+
+	public long getTimestampMillis() {
+		return timestampMillis;
+	}
+
+	public Map<String, Long> getCounters() {
+		return counters;
+	}
+
+	public Map<String, Long> getGauges() {
+		return gauges;
+	}
+
+	public Map<String, HistogramSnapshot> getHistograms() {
+		return histograms;
+	}
+
+	@Override
+	public String toString() {
+		return "MetricsSnapshot [counters=" + counters + ", gauges=" + gauges + ", histograms=" + histograms + "]";
+	}
+}
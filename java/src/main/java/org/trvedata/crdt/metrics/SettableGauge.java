@@ -0,0 +1,19 @@
+package org.trvedata.crdt.metrics;
+
+/**
+ * A gauge whose value is set by the thread that owns the measured state, rather than computed when it is read. This
+ * allows metrics of data structures that are not thread-safe to be reported from another thread, e.g. by JMX, at the
+ * cost of the value only being as fresh as the last call to {@link #set(long)}.
+ */
+public class SettableGauge implements Gauge {
+	private volatile long value;
+
+	public void set(long value) {
+		this.value = value;
+	}
+
+	@Override
+	public long value() {
+		return value;
+	}
+}
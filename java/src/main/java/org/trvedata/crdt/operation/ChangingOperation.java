@@ -3,7 +3,10 @@ package org.trvedata.crdt.operation;
 import org.trvedata.crdt.ItemID;
 
 public abstract class ChangingOperation implements Operation {
+	private static final long serialVersionUID = 1L;
+
 	private ItemID operationID;
+	private ItemID target;
 	
 	public ChangingOperation(ItemID operationID) {
 		this.operationID = operationID;
@@ -19,11 +22,31 @@ public abstract class ChangingOperation implements Operation {
 		this.operationID = operationID;
 	}
 
+	/**
+	 * Returns the ID of the object (within a peer's document) that this operation modifies, or <code>null</code> if
+	 * it modifies the peer's root object.
+	 */
+	public ItemID getTarget() {
+		return target;
+	}
+
+	public void setTarget(ItemID target) {
+		this.target = target;
+	}
+
+	/**
+	 * Approximate encoded size of this operation in bytes (see {@link OperationSize}).
+	 */
+	public int estimatedSize() {
+		return OperationSize.ITEM_ID_BYTES;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((operationID == null) ? 0 : operationID.hashCode());
+		result = prime * result + ((target == null) ? 0 : target.hashCode());
 		return result;
 	}
 
@@ -41,6 +64,11 @@ public abstract class ChangingOperation implements Operation {
 				return false;
 		} else if (!operationID.equals(other.operationID))
 			return false;
+		if (target == null) {
+			if (other.target != null)
+				return false;
+		} else if (!target.equals(other.target))
+			return false;
 		return true;
 	}
 }
@@ -1,8 +1,6 @@
 package org.trvedata.crdt.operation;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 
@@ -16,39 +14,64 @@ import org.trvedata.crdt.PeerVClockEntry;
  * received from other peers). This is used to track the causal dependencies between operations.
  */
 public class LocalClockUpdate implements ClockUpdate {
+	private static final long serialVersionUID = 1L;
+
 	private HashMap<PeerID, PeerVClockEntry> updateByPeerId = new HashMap<PeerID, PeerVClockEntry>();
+	// The same entries as updateByPeerId, kept in order of ascending peer index as they are added, so that entries()
+	// does not need to sort. Peer indexes are assigned sequentially, so new entries are usually appended at the end.
+	private ArrayList<PeerVClockEntry> sortedEntries = new ArrayList<PeerVClockEntry>();
 
 	public LocalClockUpdate() {
 	}
 
 	public void addPeer(PeerID peerId, PeerIndex peerIndex) {
-		this.updateByPeerId.put(peerId, new PeerVClockEntry(peerId, peerIndex, 0));
+		PeerVClockEntry entry = new PeerVClockEntry(peerId, peerIndex, 0);
+		PeerVClockEntry previous = this.updateByPeerId.put(peerId, entry);
+		if (previous != null)
+			this.sortedEntries.remove(previous);
+		insertSorted(entry);
 	}
 
 	public void recordUpdate(PeerID peerId, PeerIndex peerIndex, long msgCount) {
-		if (!this.updateByPeerId.containsKey(peerId))
-			this.updateByPeerId.put(peerId, new PeerVClockEntry(null, peerIndex, 0));
-		this.updateByPeerId.get(peerId).setMsgCount(msgCount);
+		PeerVClockEntry entry = this.updateByPeerId.get(peerId);
+		if (entry == null) {
+			entry = new PeerVClockEntry(null, peerIndex, 0);
+			this.updateByPeerId.put(peerId, entry);
+			insertSorted(entry);
+		}
+		entry.setMsgCount(msgCount);
+	}
+
+	private void insertSorted(PeerVClockEntry entry) {
+		int pos = this.sortedEntries.size();
+		while (pos > 0 && this.sortedEntries.get(pos - 1).getPeerIndex().compareTo(entry.getPeerIndex()) > 0)
+			pos--;
+		this.sortedEntries.add(pos, entry);
 	}
 
 	public boolean isEmpty() {
 		return this.updateByPeerId.isEmpty();
 	}
 
+	/**
+	 * Forgets all recorded updates, after they have been broadcast.
+	 */
+	public void clear() {
+		this.updateByPeerId.clear();
+		this.sortedEntries.clear();
+	}
+
+	/**
+	 * Returns the recorded updates in order of ascending peer index. The list is a copy, so it remains valid after
+	 * {@link #clear()}.
+	 */
 	@Override
 	public List<PeerVClockEntry> entries() {
-		List<PeerVClockEntry> res = new ArrayList<PeerVClockEntry>(this.updateByPeerId.values());
-		Collections.sort(res, new Comparator<PeerVClockEntry>() {
-			@Override
-			public int compare(PeerVClockEntry o1, PeerVClockEntry o2) {
-				return o1.getPeerIndex().compareTo(o2.getPeerIndex());
-			}
-		});
-		return res;
+		return new ArrayList<PeerVClockEntry>(this.sortedEntries);
 	}
 
 	@Override
 	public String toString() {
 		return "LocalClockUpdate [updateByPeerId=" + updateByPeerId + "]";
 	}
-}
\ No newline at end of file
+}
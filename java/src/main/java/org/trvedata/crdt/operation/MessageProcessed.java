@@ -1,18 +1,31 @@
 package org.trvedata.crdt.operation;
 
 public class MessageProcessed implements Operation {
+	private static final long serialVersionUID = 1L;
+
 	private long msgCounter;
+	// System.nanoTime() when the message was received; used to measure how long it waited for causal dependencies.
+	private long receivedNanos;
 
 	public MessageProcessed(long msgCounter) {
+		this(msgCounter, System.nanoTime());
+	}
+
+	public MessageProcessed(long msgCounter, long receivedNanos) {
 		this.msgCounter = msgCounter;
+		this.receivedNanos = receivedNanos;
 	}
 
 	public long getMsgCounter() {
 		return msgCounter;
 	}
 
+	public long getReceivedNanos() {
+		return receivedNanos;
+	}
+
 	@Override
 	public String toString() {
 		return "MessageProcessed [msgCount=" + msgCounter + "]";
 	}
-}
\ No newline at end of file
+}
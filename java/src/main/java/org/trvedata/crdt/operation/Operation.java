@@ -1,4 +1,10 @@
 package org.trvedata.crdt.operation;
 
-public interface Operation {
+import java.io.Serializable;
+
+/**
+ * Marker for anything that can be sent in a message. Operations are serializable so that buffered operations can be
+ * written to local storage.
+ */
+public interface Operation extends Serializable {
 }
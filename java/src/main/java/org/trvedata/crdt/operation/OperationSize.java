@@ -0,0 +1,44 @@
+package org.trvedata.crdt.operation;
+
+import org.trvedata.crdt.PeerVClockEntry;
+
+/**
+ * Rough estimate of the number of bytes an operation occupies once it is encoded in a message. The real size depends
+ * on the schema and on any compression applied by the transport, but the estimate is good enough to decide when a
+ * batch of buffered operations has grown large enough to be sent.
+ */
+public final class OperationSize {
+	/** Encoded size of an ItemID: a varint logical timestamp and a varint peer index. */
+	public static final int ITEM_ID_BYTES = 6;
+	/** Encoded size of a globally unique PeerID. */
+	public static final int PEER_ID_BYTES = 32;
+	/** Size assumed for values whose encoding we know nothing about. */
+	public static final int UNKNOWN_VALUE_BYTES = 16;
+
+	private OperationSize() {
+	}
+
+	public static int estimate(Operation operation) {
+		if (operation instanceof ChangingOperation)
+			return ((ChangingOperation) operation).estimatedSize();
+		if (operation instanceof ClockUpdate) {
+			int size = ITEM_ID_BYTES;
+			for (PeerVClockEntry entry : ((ClockUpdate) operation).entries())
+				size += (entry.getPeerId() == null ? 0 : PEER_ID_BYTES) + ITEM_ID_BYTES;
+			return size;
+		}
+		return 0;
+	}
+
+	public static int estimateValue(Object value) {
+		if (value == null)
+			return 1;
+		if (value instanceof CharSequence)
+			return 1 + ((CharSequence) value).length();
+		if (value instanceof Character)
+			return 2;
+		if (value instanceof Number || value instanceof Boolean)
+			return 8;
+		return UNKNOWN_VALUE_BYTES;
+	}
+}
@@ -0,0 +1,27 @@
+package org.trvedata.crdt.orderedlist;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for {@link OrderedList#applyOperation(org.trvedata.crdt.operation.ChangingOperation)}.
+ */
+@Name("org.trvedata.crdt.orderedlist.ApplyOperation")
+@Label("Apply List Operation")
+@Category("trvesync")
+@Enabled(false)
+@StackTrace(false)
+class ApplyOperationEvent extends Event {
+	@Label("Operation Type")
+	String operationType;
+
+	@Label("Object ID")
+	String objectId;
+
+	@Label("List Size")
+	int listSize;
+}
@@ -2,8 +2,11 @@ package org.trvedata.crdt.orderedlist;
 
 import org.trvedata.crdt.ItemID;
 import org.trvedata.crdt.operation.ChangingOperation;
+import org.trvedata.crdt.operation.OperationSize;
 
 public class DeleteOp extends ChangingOperation {
+	private static final long serialVersionUID = 1L;
+
 	private ItemID deleteTs;
 
 	public DeleteOp(ItemID deleteId, ItemID deleteTs) {
@@ -23,6 +26,11 @@ public class DeleteOp extends ChangingOperation {
 		return deleteTs;
 	}
 
+	@Override
+	public int estimatedSize() {
+		return 2 * OperationSize.ITEM_ID_BYTES;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
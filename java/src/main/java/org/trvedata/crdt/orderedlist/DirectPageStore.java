@@ -0,0 +1,44 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps pages in direct byte buffers, allocated as they are first used.
+ */
+class DirectPageStore implements PageStore {
+	private final int pageBytes;
+	private final List<ByteBuffer> pages = new ArrayList<ByteBuffer>();
+
+	DirectPageStore(int pageBytes) {
+		this.pageBytes = pageBytes;
+	}
+
+	@Override
+	public int pageBytes() {
+		return pageBytes;
+	}
+
+	@Override
+	public ByteBuffer page(int index) {
+		while (index >= pages.size())
+			pages.add(ByteBuffer.allocateDirect(pageBytes));
+		return pages.get(index);
+	}
+
+	@Override
+	public ByteBuffer writablePage(int index) {
+		return page(index);
+	}
+
+	@Override
+	public void clear() {
+		pages.clear();
+	}
+
+	@Override
+	public long bytes() {
+		return (long) pages.size() * pageBytes;
+	}
+}
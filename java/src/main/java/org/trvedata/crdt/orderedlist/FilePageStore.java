@@ -0,0 +1,132 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Keeps pages in a file, reading them into the buffers of a {@link PageCache} as they are used and writing them back
+ * when they are evicted. The file is truncated when the store is opened, as its contents are only meaningful to the
+ * list that wrote them.
+ */
+class FilePageStore implements PageStore {
+	private final File path;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final int pageBytes;
+	private final byte[] zeros;
+	private final PageCache cache;
+	private final int storeId;
+	private int pageCount = 0;
+	private PageCache.Frame last;
+
+	FilePageStore(File path, int pageBytes, PageCache cache) {
+		this.path = path;
+		this.pageBytes = pageBytes;
+		this.zeros = new byte[pageBytes];
+		this.cache = cache;
+		try {
+			this.file = new RandomAccessFile(path, "rw");
+			this.file.setLength(0);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not open page file " + path, e);
+		}
+		this.channel = file.getChannel();
+		this.storeId = cache.register(this);
+	}
+
+	@Override
+	public int pageBytes() {
+		return pageBytes;
+	}
+
+	@Override
+	public ByteBuffer page(int index) {
+		return frame(index).buffer;
+	}
+
+	@Override
+	public ByteBuffer writablePage(int index) {
+		PageCache.Frame frame = frame(index);
+		frame.dirty = true;
+		return frame.buffer;
+	}
+
+	private PageCache.Frame frame(int index) {
+		if (last != null && last.index == index)
+			return last;
+		PageCache.Frame frame = cache.get(storeId, index);
+		if (frame == null) {
+			frame = cache.allocate(storeId, index);
+			read(frame);
+		}
+		last = frame;
+		return frame;
+	}
+
+	// Pages beyond the end of the file have not been written yet, and read as zeros
+	private void read(PageCache.Frame frame) {
+		ByteBuffer buffer = frame.buffer;
+		buffer.clear();
+		long position = (long) frame.index * pageBytes;
+		try {
+			while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read page " + frame.index + " of " + path, e);
+		}
+		buffer.put(zeros, 0, buffer.remaining());
+		pageCount = Math.max(pageCount, frame.index + 1);
+	}
+
+	/**
+	 * Called by the cache before it reuses a frame holding one of this store's pages.
+	 */
+	void evict(PageCache.Frame frame) {
+		if (frame == last)
+			last = null;
+		if (!frame.dirty)
+			return;
+		ByteBuffer buffer = frame.buffer.duplicate();
+		buffer.clear();
+		long position = (long) frame.index * pageBytes;
+		try {
+			while (buffer.hasRemaining())
+				channel.write(buffer, position + buffer.position());
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write page " + frame.index + " of " + path, e);
+		}
+	}
+
+	@Override
+	public void clear() {
+		cache.release(storeId);
+		last = null;
+		pageCount = 0;
+		try {
+			channel.truncate(0);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not clear page file " + path, e);
+		}
+	}
+
+	@Override
+	public long bytes() {
+		return (long) pageCount * pageBytes;
+	}
+
+	/**
+	 * Closes and deletes the file.
+	 */
+	void close() {
+		cache.release(storeId);
+		last = null;
+		try {
+			file.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not close page file " + path, e);
+		}
+		path.delete();
+	}
+}
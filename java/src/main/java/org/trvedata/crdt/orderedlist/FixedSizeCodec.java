@@ -0,0 +1,52 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes list values as a fixed number of bytes, so that they can be stored in the records of an
+ * {@link OffHeapOrderedList} rather than as objects on the Java heap.
+ */
+public interface FixedSizeCodec<T> {
+	/**
+	 * Number of bytes per value.
+	 */
+	int size();
+
+	void write(ByteBuffer buffer, int offset, T value);
+
+	T read(ByteBuffer buffer, int offset);
+
+	public static final FixedSizeCodec<Character> CHARACTER = new FixedSizeCodec<Character>() {
+		@Override
+		public int size() {
+			return 2;
+		}
+
+		@Override
+		public void write(ByteBuffer buffer, int offset, Character value) {
+			buffer.putChar(offset, value);
+		}
+
+		@Override
+		public Character read(ByteBuffer buffer, int offset) {
+			return buffer.getChar(offset);
+		}
+	};
+
+	public static final FixedSizeCodec<Long> LONG = new FixedSizeCodec<Long>() {
+		@Override
+		public int size() {
+			return 8;
+		}
+
+		@Override
+		public void write(ByteBuffer buffer, int offset, Long value) {
+			buffer.putLong(offset, value);
+		}
+
+		@Override
+		public Long read(ByteBuffer buffer, int offset) {
+			return buffer.getLong(offset);
+		}
+	};
+}
@@ -2,19 +2,33 @@ package org.trvedata.crdt.orderedlist;
 
 import org.trvedata.crdt.ItemID;
 import org.trvedata.crdt.operation.ChangingOperation;
+import org.trvedata.crdt.operation.OperationSize;
 
 public class InsertOp<T> extends ChangingOperation {
+	private static final long serialVersionUID = 1L;
+
 	private ItemID referenceId;
 	private T value;
+	private ItemID deleteTs;
 
 	public InsertOp(ItemID referenceId, ItemID newId, T value) {
+		this(referenceId, newId, value, null);
+	}
+
+	/**
+	 * Creates an insertion of an item that is already deleted (with timestamp deleteTs) by the time it is sent, as it
+	 * still needs to be sent if other operations reference it. The value is kept for reads of earlier versions, but
+	 * may be <code>null</code> if the sender no longer has it.
+	 */
+	public InsertOp(ItemID referenceId, ItemID newId, T value, ItemID deleteTs) {
 		super(newId);
 		this.referenceId = referenceId;
 		this.value = value;
+		this.deleteTs = deleteTs;
 	}
 
 	public long logicalTs() {
-		return this.getInsertId().getLogicalTs();
+		return this.deleteTs != null ? this.deleteTs.getLogicalTs() : this.getInsertId().getLogicalTs();
 	}
 
 	public ItemID getReferenceId() {
@@ -33,12 +47,25 @@ public class InsertOp<T> extends ChangingOperation {
 		return this.value;
 	}
 
+	/**
+	 * Returns the timestamp of the deletion of the inserted item, or <code>null</code> if the item is inserted live.
+	 */
+	public ItemID getDeleteTs() {
+		return deleteTs;
+	}
+
+	@Override
+	public int estimatedSize() {
+		return (deleteTs == null ? 2 : 3) * OperationSize.ITEM_ID_BYTES + OperationSize.estimateValue(value);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = super.hashCode();
 		result = prime * result + ((referenceId == null) ? 0 : referenceId.hashCode());
 		result = prime * result + ((value == null) ? 0 : value.hashCode());
+		result = prime * result + ((deleteTs == null) ? 0 : deleteTs.hashCode());
 		return result;
 	}
 
@@ -61,11 +88,17 @@ public class InsertOp<T> extends ChangingOperation {
 				return false;
 		} else if (!value.equals(other.value))
 			return false;
+		if (deleteTs == null) {
+			if (other.deleteTs != null)
+				return false;
+		} else if (!deleteTs.equals(other.deleteTs))
+			return false;
 		return true;
 	}
 
 	@Override
 	public String toString() {
-		return "InsertOp [referenceId=" + referenceId + ", insertId=" + getInsertId() + ", value=" + value + "]";
+		return "InsertOp [referenceId=" + referenceId + ", insertId=" + getInsertId() + ", value=" + value
+				+ (deleteTs == null ? "" : ", deleteTs=" + deleteTs) + "]";
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.operation.ChangingOperation;
+import org.trvedata.crdt.operation.OperationSize;
+
+/**
+ * Insertion of a run of consecutive items, as produced by typing. The items have IDs with consecutive logical
+ * timestamps starting at the operation ID, and each item is inserted to the right of the previous one (the first one
+ * to the right of referenceId). Applying the run is equivalent to applying one InsertOp per item, in order.
+ */
+public class InsertRunOp<T> extends ChangingOperation {
+	private static final long serialVersionUID = 1L;
+
+	private ItemID referenceId;
+	private List<T> values;
+
+	public InsertRunOp(ItemID referenceId, ItemID firstId, List<T> values) {
+		super(firstId);
+		if (values.isEmpty())
+			throw new IllegalArgumentException("InsertRunOp needs at least one value");
+		this.referenceId = referenceId;
+		this.values = values;
+	}
+
+	public long logicalTs() {
+		return getOperationID().getLogicalTs() + values.size() - 1;
+	}
+
+	public ItemID getReferenceId() {
+		return referenceId;
+	}
+
+	public ItemID getFirstId() {
+		return getOperationID();
+	}
+
+	/**
+	 * Returns the ID of the item at the given position in the run.
+	 */
+	public ItemID getInsertId(int i) {
+		return new ItemID(getOperationID().getLogicalTs() + i, getOperationID().getPeerId());
+	}
+
+	public List<T> getValues() {
+		return values;
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * Splits the run back into one InsertOp per item.
+	 */
+	public List<InsertOp<T>> toInsertOps() {
+		List<InsertOp<T>> ops = new ArrayList<InsertOp<T>>(values.size());
+		ItemID prevId = referenceId;
+		for (int i = 0; i < values.size(); i++) {
+			ItemID insertId = getInsertId(i);
+			ops.add(new InsertOp<T>(prevId, insertId, values.get(i)));
+			prevId = insertId;
+		}
+		return ops;
+	}
+
+	@Override
+	public int estimatedSize() {
+		int size = 2 * OperationSize.ITEM_ID_BYTES;
+		for (T value : values)
+			size += OperationSize.estimateValue(value);
+		return size;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + ((referenceId == null) ? 0 : referenceId.hashCode());
+		result = prime * result + values.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		InsertRunOp other = (InsertRunOp) obj;
+		if (referenceId == null) {
+			if (other.referenceId != null)
+				return false;
+		} else if (!referenceId.equals(other.referenceId))
+			return false;
+		return values.equals(other.values);
+	}
+
+	@Override
+	public String toString() {
+		return "InsertRunOp [referenceId=" + referenceId + ", firstId=" + getFirstId() + ", values=" + values + "]";
+	}
+}
@@ -0,0 +1,18 @@
+package org.trvedata.crdt.orderedlist;
+
+import org.trvedata.crdt.orderedlist.OrderedList.Item;
+
+/**
+ * Notified by an {@link OrderedList} whenever an item becomes visible or is deleted, whether by a local edit or a
+ * remote operation, after the list has been updated. Used to maintain secondary indexes over the visible content.
+ */
+interface ItemObserver<T> {
+	void itemInserted(Item<T> item);
+
+	void itemDeleted(Item<T> item);
+
+	/**
+	 * Called after the list has been filled from a snapshot, instead of once per item.
+	 */
+	void itemsLoaded();
+}
@@ -0,0 +1,73 @@
+package org.trvedata.crdt.orderedlist;
+
+import org.trvedata.crdt.ItemID;
+
+/**
+ * A range of items in an {@link OrderedList}, from the item startId to the item endId inclusive. Unlike a pair of
+ * indexes, it keeps referring to the same content while other parts of the list are edited, locally or
+ * concurrently by other peers. Its indexes are only looked up when needed.
+ */
+public class ItemRange {
+	private final ItemID startId;
+	private final ItemID endId;
+
+	public ItemRange(ItemID startId, ItemID endId) {
+		if (startId == null || endId == null)
+			throw new IllegalArgumentException("startId and endId must not be null");
+		this.startId = startId;
+		this.endId = endId;
+	}
+
+	public ItemID getStartId() {
+		return startId;
+	}
+
+	public ItemID getEndId() {
+		return endId;
+	}
+
+	/**
+	 * Returns the current index of the start of the range in the given list (see
+	 * {@link OrderedList#indexOfId(ItemID)}).
+	 */
+	public int startIndex(OrderedList<?> list) {
+		return list.indexOfId(startId);
+	}
+
+	/**
+	 * Returns the current index just after the end of the range in the given list, or -1 if the end is unknown.
+	 */
+	public int endIndex(OrderedList<?> list) {
+		OrderedList.Item<?> end = list.itemById(endId);
+		if (end == null)
+			return -1;
+		int index = list.indexOfId(endId);
+		return end.deleteTs == null ? index + 1 : index;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + startId.hashCode();
+		result = prime * result + endId.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		ItemRange other = (ItemRange) obj;
+		return startId.equals(other.startId) && endId.equals(other.endId);
+	}
+
+	@Override
+	public String toString() {
+		return "ItemRange [startId=" + startId + ", endId=" + endId + "]";
+	}
+}
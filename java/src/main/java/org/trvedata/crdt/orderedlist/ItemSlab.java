@@ -0,0 +1,247 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.PeerID;
+
+/**
+ * Off-heap storage for the items of an {@link OffHeapOrderedList}. Each item is a fixed-size record, addressed by its
+ * slot number, in the pages of a {@link PageStore}: its insertion timestamp and peer, its deletion timestamp and peer
+ * (0 and -1 if it has not been deleted), the slots of the previous and next item (-1 if none), its links and count
+ * in the {@link SlabTree} that indexes the items by position, and its value. Peers
+ * are stored as indexes into a table of PeerIDs, the only per-peer objects on the heap. Items are found by ID through
+ * an open-addressing hash table of slot numbers, kept in the pages of a second store. By default both stores are
+ * direct byte buffers.
+ */
+class ItemSlab<T> {
+	static final int NONE = -1;
+	private static final int CHUNK_RECORDS = 1 << 16, TABLE_PAGE_BYTES = 1 << 16;
+	private static final int INSERT_TS = 0, DELETE_TS = 8, INSERT_PEER = 16, DELETE_PEER = 20, PREV = 24, NEXT = 28,
+			LEFT = 32, RIGHT = 36, PARENT = 40, VISIBLE = 44, VALUE = 48;
+
+	private final FixedSizeCodec<T> codec;
+	private final int recordSize;
+	private final PageStore records, table;
+	private final int recordsPerPage, entriesPerPage;
+	private int count = 0;
+	private int tableMask;
+	private final List<PeerID> peers = new ArrayList<PeerID>();
+	private final HashMap<PeerID, Integer> peerIndexes = new HashMap<PeerID, Integer>();
+
+	ItemSlab(FixedSizeCodec<T> codec) {
+		this(codec, new DirectPageStore(CHUNK_RECORDS * recordSize(codec)), new DirectPageStore(TABLE_PAGE_BYTES));
+	}
+
+	ItemSlab(FixedSizeCodec<T> codec, PageStore records, PageStore table) {
+		this.codec = codec;
+		this.recordSize = recordSize(codec);
+		this.records = records;
+		this.table = table;
+		this.recordsPerPage = records.pageBytes() / recordSize;
+		this.entriesPerPage = table.pageBytes() / 4;
+		if (recordsPerPage == 0 || entriesPerPage == 0)
+			throw new IllegalArgumentException("Pages of " + records.pageBytes() + " and " + table.pageBytes()
+					+ " bytes cannot hold records of " + recordSize + " bytes");
+		allocateTable(1 << 10);
+	}
+
+	private static int recordSize(FixedSizeCodec<?> codec) {
+		return (VALUE + codec.size() + 7) & ~7;
+	}
+
+	/**
+	 * Number of records, including tombstones.
+	 */
+	int count() {
+		return count;
+	}
+
+	/**
+	 * Bytes of storage allocated to records and the hash table.
+	 */
+	long offHeapBytes() {
+		return records.bytes() + table.bytes();
+	}
+
+	int add(ItemID insertId, T value, int prev, int next) {
+		int slot = count++;
+		ByteBuffer chunk = writableChunk(slot);
+		int offset = offset(slot);
+		chunk.putLong(offset + INSERT_TS, insertId.getLogicalTs());
+		chunk.putInt(offset + INSERT_PEER, peerIndex(insertId.getPeerId()));
+		chunk.putLong(offset + DELETE_TS, 0);
+		chunk.putInt(offset + DELETE_PEER, NONE);
+		chunk.putInt(offset + PREV, prev);
+		chunk.putInt(offset + NEXT, next);
+		chunk.putInt(offset + LEFT, NONE);
+		chunk.putInt(offset + RIGHT, NONE);
+		chunk.putInt(offset + PARENT, NONE);
+		chunk.putInt(offset + VISIBLE, 1);
+		if (value != null) // tombstones inserted by coalesced operations have no value
+			codec.write(chunk, offset + VALUE, value);
+		if (2 * count > tableMask + 1)
+			allocateTable(2 * (tableMask + 1));
+		else
+			index(slot);
+		return slot;
+	}
+
+	/**
+	 * Returns the slot of the item with the given ID, or NONE if there is no such item.
+	 */
+	int find(ItemID id) {
+		Integer peer = peerIndexes.get(id.getPeerId());
+		if (peer == null)
+			return NONE;
+		long ts = id.getLogicalTs();
+		for (int i = hash(ts, peer) & tableMask;; i = (i + 1) & tableMask) {
+			int entry = entry(i);
+			if (entry == 0)
+				return NONE;
+			int slot = entry - 1;
+			if (insertTs(slot) == ts && insertPeer(slot) == peer)
+				return slot;
+		}
+	}
+
+	long insertTs(int slot) {
+		return chunk(slot).getLong(offset(slot) + INSERT_TS);
+	}
+
+	int insertPeer(int slot) {
+		return chunk(slot).getInt(offset(slot) + INSERT_PEER);
+	}
+
+	ItemID insertId(int slot) {
+		return new ItemID(insertTs(slot), peers.get(insertPeer(slot)));
+	}
+
+	boolean isDeleted(int slot) {
+		return chunk(slot).getInt(offset(slot) + DELETE_PEER) != NONE;
+	}
+
+	ItemID deleteTs(int slot) {
+		int peer = chunk(slot).getInt(offset(slot) + DELETE_PEER);
+		return peer == NONE ? null : new ItemID(chunk(slot).getLong(offset(slot) + DELETE_TS), peers.get(peer));
+	}
+
+	void setDeleteTs(int slot, ItemID deleteTs) {
+		writableChunk(slot).putLong(offset(slot) + DELETE_TS, deleteTs.getLogicalTs());
+		writableChunk(slot).putInt(offset(slot) + DELETE_PEER, peerIndex(deleteTs.getPeerId()));
+	}
+
+	int prev(int slot) {
+		return chunk(slot).getInt(offset(slot) + PREV);
+	}
+
+	void setPrev(int slot, int prev) {
+		writableChunk(slot).putInt(offset(slot) + PREV, prev);
+	}
+
+	int next(int slot) {
+		return chunk(slot).getInt(offset(slot) + NEXT);
+	}
+
+	void setNext(int slot, int next) {
+		writableChunk(slot).putInt(offset(slot) + NEXT, next);
+	}
+
+	int left(int slot) {
+		return chunk(slot).getInt(offset(slot) + LEFT);
+	}
+
+	void setLeft(int slot, int left) {
+		writableChunk(slot).putInt(offset(slot) + LEFT, left);
+	}
+
+	int right(int slot) {
+		return chunk(slot).getInt(offset(slot) + RIGHT);
+	}
+
+	void setRight(int slot, int right) {
+		writableChunk(slot).putInt(offset(slot) + RIGHT, right);
+	}
+
+	int parent(int slot) {
+		return chunk(slot).getInt(offset(slot) + PARENT);
+	}
+
+	void setParent(int slot, int parent) {
+		writableChunk(slot).putInt(offset(slot) + PARENT, parent);
+	}
+
+	/**
+	 * Number of non-deleted items in the tree rooted at the given slot.
+	 */
+	int visible(int slot) {
+		return slot == NONE ? 0 : chunk(slot).getInt(offset(slot) + VISIBLE);
+	}
+
+	void setVisible(int slot, int visible) {
+		writableChunk(slot).putInt(offset(slot) + VISIBLE, visible);
+	}
+
+	T value(int slot) {
+		return codec.read(chunk(slot), offset(slot) + VALUE);
+	}
+
+	/**
+	 * Compares the ID of the item in the given slot with another ID, in the order of {@link ItemID#compareTo(ItemID)}.
+	 */
+	int compareId(int slot, ItemID id) {
+		long ts = insertTs(slot);
+		if (ts != id.getLogicalTs())
+			return ts < id.getLogicalTs() ? -1 : 1;
+		return peers.get(insertPeer(slot)).compareTo(id.getPeerId());
+	}
+
+	private ByteBuffer chunk(int slot) {
+		return records.page(slot / recordsPerPage);
+	}
+
+	private ByteBuffer writableChunk(int slot) {
+		return records.writablePage(slot / recordsPerPage);
+	}
+
+	private int offset(int slot) {
+		return (slot % recordsPerPage) * recordSize;
+	}
+
+	private int peerIndex(PeerID peerId) {
+		Integer index = peerIndexes.get(peerId);
+		if (index == null) {
+			index = peers.size();
+			peers.add(peerId);
+			peerIndexes.put(peerId, index);
+		}
+		return index;
+	}
+
+	private static int hash(long ts, int peer) {
+		long h = (ts * 31 + peer) * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	// Replaces the hash table by one with the given number of entries (a power of two), keeping it at most half full
+	private void allocateTable(int entries) {
+		table.clear();
+		tableMask = entries - 1;
+		for (int slot = 0; slot < count; slot++)
+			index(slot);
+	}
+
+	private void index(int slot) {
+		int i = hash(insertTs(slot), insertPeer(slot)) & tableMask;
+		while (entry(i) != 0)
+			i = (i + 1) & tableMask;
+		table.writablePage(i / entriesPerPage).putInt(4 * (i % entriesPerPage), slot + 1);
+	}
+
+	private int entry(int i) {
+		return table.page(i / entriesPerPage).getInt(4 * (i % entriesPerPage));
+	}
+}
@@ -0,0 +1,435 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.orderedlist.OrderedList.Item;
+
+/**
+ * Balanced index over the items of an {@link OrderedList}, in list order, including tombstones. It is a treap
+ * (a binary search tree by position, heap-ordered by random priorities) whose nodes are the items themselves, linked
+ * through parent pointers so that an item's position can be found from the item. Each node summarises its subtree:
+ * the number of non-deleted items, and of line separators among them, for O(log n) conversion between indexes,
+ * lines and items, and bounds on the timestamps of the subtree's insertions and deletions, which let version reads
+ * and diffs skip whole subtrees.
+ */
+class ItemTree<T> {
+	private final Random random = new Random();
+	private Item<T> root;
+	// Items equal to this value are counted as line separators, if not null
+	private T lineSeparator = null;
+
+	Item<T> getRoot() {
+		return root;
+	}
+
+	int nextPriority() {
+		return random.nextInt();
+	}
+
+	/**
+	 * Starts counting the non-deleted items equal to the given value in the summaries, which takes linear time once.
+	 */
+	void setLineSeparator(T lineSeparator) {
+		this.lineSeparator = lineSeparator;
+		if (root != null)
+			summariseSubtree(root);
+	}
+
+	/**
+	 * Adds an item to the index directly after the item left, or at the start if left is <code>null</code>.
+	 */
+	void insertAfter(Item<T> left, Item<T> item) {
+		item.left = item.right = item.parent = null;
+		summarise(item);
+		if (root == null) {
+			root = item;
+			return;
+		}
+		Item<T> parent;
+		if (left == null) {
+			parent = leftmost(root);
+			parent.left = item;
+		} else if (left.right == null) {
+			parent = left;
+			parent.right = item;
+		} else {
+			parent = leftmost(left.right);
+			parent.left = item;
+		}
+		item.parent = parent;
+		updatePath(parent);
+		while (item.parent != null && item.priority > item.parent.priority)
+			rotateUp(item);
+	}
+
+	/**
+	 * Removes an item from the index.
+	 */
+	void remove(Item<T> item) {
+		while (item.left != null || item.right != null) {
+			Item<T> child;
+			if (item.left == null)
+				child = item.right;
+			else if (item.right == null)
+				child = item.left;
+			else
+				child = item.left.priority > item.right.priority ? item.left : item.right;
+			rotateUp(child);
+		}
+		Item<T> parent = item.parent;
+		if (parent == null)
+			root = null;
+		else if (parent.left == item)
+			parent.left = null;
+		else
+			parent.right = null;
+		item.parent = null;
+		updatePath(parent);
+	}
+
+	/**
+	 * Brings the summaries up to date after an item's deletion state has changed.
+	 */
+	void updated(Item<T> item) {
+		updatePath(item);
+	}
+
+	/**
+	 * Rebuilds the index from the items in list order, given as a chain of next pointers starting at head, in
+	 * linear time.
+	 */
+	void build(Item<T> head) {
+		ArrayDeque<Item<T>> spine = new ArrayDeque<Item<T>>();
+		for (Item<T> item = head; item != null; item = item.next) {
+			item.parent = item.left = item.right = null;
+			Item<T> last = null;
+			while (!spine.isEmpty() && spine.peek().priority < item.priority)
+				last = spine.pop();
+			item.left = last;
+			if (last != null)
+				last.parent = item;
+			if (!spine.isEmpty()) {
+				spine.peek().right = item;
+				item.parent = spine.peek();
+			}
+			spine.push(item);
+		}
+		root = spine.peekLast();
+		if (root != null)
+			summariseSubtree(root);
+	}
+
+	/**
+	 * Returns the non-deleted item with the given index, or <code>null</code> if the index is out of range.
+	 */
+	Item<T> byVisibleIndex(int index) {
+		Item<T> node = root;
+		while (node != null) {
+			int leftVisible = visible(node.left);
+			if (index < leftVisible) {
+				node = node.left;
+				continue;
+			}
+			index -= leftVisible;
+			if (node.deleteTs == null) {
+				if (index == 0)
+					return node;
+				index--;
+			}
+			node = node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the non-deleted line separator with the given index among all separators, or <code>null</code> if the
+	 * index is out of range.
+	 */
+	Item<T> bySeparatorIndex(int index) {
+		Item<T> node = root;
+		while (node != null) {
+			int leftSeparators = separators(node.left);
+			if (index < leftSeparators) {
+				node = node.left;
+				continue;
+			}
+			index -= leftSeparators;
+			if (isSeparator(node)) {
+				if (index == 0)
+					return node;
+				index--;
+			}
+			node = node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of line separators among the first index non-deleted items.
+	 */
+	int separatorsBefore(int index) {
+		int count = 0;
+		Item<T> node = root;
+		while (node != null) {
+			int leftVisible = visible(node.left);
+			if (index < leftVisible) {
+				node = node.left;
+				continue;
+			}
+			index -= leftVisible;
+			count += separators(node.left);
+			if (node.deleteTs == null) {
+				if (index == 0)
+					return count;
+				index--;
+				if (isSeparator(node))
+					count++;
+			}
+			node = node.right;
+		}
+		return count;
+	}
+
+	int separatorCount() {
+		return separators(root);
+	}
+
+	/**
+	 * Returns the next non-deleted item after the given one in list order, skipping runs of tombstones a subtree at
+	 * a time, or <code>null</code> if there is none.
+	 */
+	Item<T> nextVisible(Item<T> node) {
+		if (visible(node.right) > 0)
+			return firstVisible(node.right);
+		for (; node.parent != null; node = node.parent) {
+			if (node == node.parent.left) {
+				if (node.parent.deleteTs == null)
+					return node.parent;
+				if (visible(node.parent.right) > 0)
+					return firstVisible(node.parent.right);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the previous non-deleted item before the given one in list order, or <code>null</code> if there is
+	 * none. See {@link #nextVisible(Item)}.
+	 */
+	Item<T> prevVisible(Item<T> node) {
+		if (visible(node.left) > 0)
+			return lastVisible(node.left);
+		for (; node.parent != null; node = node.parent) {
+			if (node == node.parent.right) {
+				if (node.parent.deleteTs == null)
+					return node.parent;
+				if (visible(node.parent.left) > 0)
+					return lastVisible(node.parent.left);
+			}
+		}
+		return null;
+	}
+
+	private static <T> Item<T> lastVisible(Item<T> node) {
+		while (true) {
+			if (visible(node.right) > 0)
+				node = node.right;
+			else if (node.deleteTs == null)
+				return node;
+			else
+				node = node.left;
+		}
+	}
+
+	private static <T> Item<T> firstVisible(Item<T> node) {
+		while (true) {
+			if (visible(node.left) > 0)
+				node = node.left;
+			else if (node.deleteTs == null)
+				return node;
+			else
+				node = node.right;
+		}
+	}
+
+	/**
+	 * Returns the number of non-deleted items before the given item.
+	 */
+	int visibleRank(Item<T> item) {
+		int rank = visible(item.left);
+		for (Item<T> node = item; node.parent != null; node = node.parent) {
+			if (node == node.parent.right)
+				rank += visible(node.parent.left) + (node.parent.deleteTs == null ? 1 : 0);
+		}
+		return rank;
+	}
+
+	/**
+	 * Iterates over the items that are visible in the given version, skipping every subtree that cannot contain such
+	 * an item.
+	 */
+	Iterator<Item<T>> itemsAt(final Version version) {
+		return new Iterator<Item<T>>() {
+			final ArrayDeque<Item<T>> stack = new ArrayDeque<Item<T>>();
+			Item<T> nextItem;
+
+			{
+				pushLeft(root);
+				advance();
+			}
+
+			private void pushLeft(Item<T> node) {
+				while (node != null && version.mayContain(node)) {
+					stack.push(node);
+					node = node.left;
+				}
+			}
+
+			private void advance() {
+				nextItem = null;
+				while (nextItem == null && !stack.isEmpty()) {
+					Item<T> node = stack.pop();
+					pushLeft(node.right);
+					if (version.isVisible(node))
+						nextItem = node;
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return nextItem != null;
+			}
+
+			@Override
+			public Item<T> next() {
+				if (nextItem == null)
+					throw new NoSuchElementException();
+				Item<T> item = nextItem;
+				advance();
+				return item;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Appends to delta the changes between two versions within the subtree rooted at node. Every insertion and
+	 * deletion with a timestamp below stableTs is known to be in both versions, so a subtree whose changes are all
+	 * older than that looks the same in both versions as it does now, and is retained as a whole.
+	 */
+	void diff(Item<T> node, Version from, Version to, long stableTs, ListDelta<T> delta) {
+		if (node == null)
+			return;
+		if (node.maxChangeTs < stableTs) {
+			delta.retain(node.visible);
+			return;
+		}
+		if (!from.mayContain(node) && !to.mayContain(node))
+			return;
+		diff(node.left, from, to, stableTs, delta);
+		boolean inFrom = from.isVisible(node), inTo = to.isVisible(node);
+		if (inFrom && inTo)
+			delta.retain(1);
+		else if (inFrom)
+			delta.delete(1);
+		else if (inTo)
+			delta.insert(node.value);
+		diff(node.right, from, to, stableTs, delta);
+	}
+
+	private static <T> Item<T> leftmost(Item<T> node) {
+		while (node.left != null)
+			node = node.left;
+		return node;
+	}
+
+	private void rotateUp(Item<T> node) {
+		Item<T> parent = node.parent, grandparent = parent.parent;
+		if (node == parent.left) {
+			parent.left = node.right;
+			if (node.right != null)
+				node.right.parent = parent;
+			node.right = parent;
+		} else {
+			parent.right = node.left;
+			if (node.left != null)
+				node.left.parent = parent;
+			node.left = parent;
+		}
+		parent.parent = node;
+		node.parent = grandparent;
+		if (grandparent == null)
+			root = node;
+		else if (grandparent.left == parent)
+			grandparent.left = node;
+		else
+			grandparent.right = node;
+		summarise(parent);
+		summarise(node);
+	}
+
+	private void updatePath(Item<T> node) {
+		for (; node != null; node = node.parent)
+			summarise(node);
+	}
+
+	private void summariseSubtree(Item<T> node) {
+		if (node.left != null)
+			summariseSubtree(node.left);
+		if (node.right != null)
+			summariseSubtree(node.right);
+		summarise(node);
+	}
+
+	private void summarise(Item<T> node) {
+		int visible = node.deleteTs == null ? 1 : 0;
+		int separators = isSeparator(node) ? 1 : 0;
+		long minInsertTs = node.insertId.getLogicalTs();
+		// The latest of the items' earliest deletions (see Version.mayContain), and the latest of all their changes
+		long maxDeleteTs = node.deleteTs == null ? Long.MAX_VALUE : node.deleteTs.getLogicalTs();
+		long maxChangeTs = node.deleteTs == null ? minInsertTs : Math.max(minInsertTs, maxDeleteTs);
+		if (node.laterDeleteTs != null) {
+			for (ItemID deleteTs : node.laterDeleteTs)
+				maxChangeTs = Math.max(maxChangeTs, deleteTs.getLogicalTs());
+		}
+		if (node.left != null) {
+			visible += node.left.visible;
+			separators += node.left.separators;
+			minInsertTs = Math.min(minInsertTs, node.left.minInsertTs);
+			maxDeleteTs = Math.max(maxDeleteTs, node.left.maxDeleteTs);
+			maxChangeTs = Math.max(maxChangeTs, node.left.maxChangeTs);
+		}
+		if (node.right != null) {
+			visible += node.right.visible;
+			separators += node.right.separators;
+			minInsertTs = Math.min(minInsertTs, node.right.minInsertTs);
+			maxDeleteTs = Math.max(maxDeleteTs, node.right.maxDeleteTs);
+			maxChangeTs = Math.max(maxChangeTs, node.right.maxChangeTs);
+		}
+		node.visible = visible;
+		node.separators = separators;
+		node.minInsertTs = minInsertTs;
+		node.maxDeleteTs = maxDeleteTs;
+		node.maxChangeTs = maxChangeTs;
+	}
+
+	private boolean isSeparator(Item<T> node) {
+		return lineSeparator != null && node.deleteTs == null && lineSeparator.equals(node.value);
+	}
+
+	private static <T> int visible(Item<T> node) {
+		return node == null ? 0 : node.visible;
+	}
+
+	private static <T> int separators(Item<T> node) {
+		return node == null ? 0 : node.separators;
+	}
+}
@@ -0,0 +1,40 @@
+package org.trvedata.crdt.orderedlist;
+
+import org.trvedata.crdt.VersionVector;
+
+/**
+ * An event of a {@link ListChangeFeed}: the changes to the visible content of a list between two versions, as a
+ * {@link ListDelta} by index. The first event for a new subscriber goes from the version it subscribed from (empty,
+ * unless it is resuming), and each further event goes from the previous event's toVersion.
+ */
+public class ListChange<T> {
+	private final VersionVector fromVersion;
+	private final VersionVector toVersion;
+	private final ListDelta<T> delta;
+
+	public ListChange(VersionVector fromVersion, VersionVector toVersion, ListDelta<T> delta) {
+		this.fromVersion = fromVersion;
+		this.toVersion = toVersion;
+		this.delta = delta;
+	}
+
+	public VersionVector getFromVersion() {
+		return fromVersion;
+	}
+
+	/**
+	 * The version of the list after this change, from which a subscriber can resume.
+	 */
+	public VersionVector getToVersion() {
+		return toVersion;
+	}
+
+	public ListDelta<T> getDelta() {
+		return delta;
+	}
+
+	@Override
+	public String toString() {
+		return "ListChange [fromVersion=" + fromVersion + ", toVersion=" + toVersion + ", delta=" + delta + "]";
+	}
+}
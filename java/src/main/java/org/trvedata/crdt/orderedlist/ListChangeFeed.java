@@ -0,0 +1,131 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import org.trvedata.crdt.CRDTBatchListener;
+import org.trvedata.crdt.VersionVector;
+import org.trvedata.crdt.operation.Operation;
+
+/**
+ * Publishes the changes to an {@link OrderedList} as a stream of {@link ListChange}s. Instead of queueing an event
+ * per operation, each subscription only remembers the version it was last sent: whenever it has demand and the list
+ * has changed since, it receives a single diff from that version to the current one. A subscriber that falls behind
+ * therefore costs no memory, and catches up with one event however much has changed. A subscriber can also resume
+ * from a version it was sent before, e.g. after a restart, or start from the empty version to receive the whole
+ * content first.
+ *
+ * The list is not thread-safe, so everything that touches it runs on the given executor, which must be the one that
+ * the list's peer runs on (e.g. a single-threaded executor). Changes from remote messages are published as soon as
+ * the message has been applied; local edits are published on the next call to {@link #publish()}.
+ *
+ * Since subscribers may have been sent items that the list's peer has not sent yet, the list no longer discards
+ * items that are inserted and deleted within the same message when coalescing; they are sent as tombstones instead,
+ * so that the diff can still show their deletion.
+ */
+public class ListChangeFeed<T> implements Flow.Publisher<ListChange<T>> {
+	private final OrderedList<T> list;
+	private final Executor executor;
+	private final List<FeedSubscription> subscriptions = new ArrayList<FeedSubscription>();
+
+	public ListChangeFeed(OrderedList<T> list, Executor documentExecutor) {
+		this.list = list;
+		this.executor = documentExecutor;
+		list.setDiscardUnsentItems(false);
+		list.addBatchListener(new CRDTBatchListener() {
+			@Override
+			public void onOperations(Object source, List<Operation> operations) {
+				publish();
+			}
+		});
+	}
+
+	/**
+	 * Sends the changes since their last event to all subscribers that have outstanding demand. Must be called on
+	 * the document executor.
+	 */
+	public void publish() {
+		for (FeedSubscription subscription : new ArrayList<FeedSubscription>(this.subscriptions))
+			subscription.deliver();
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super ListChange<T>> subscriber) {
+		subscribe(subscriber, new VersionVector());
+	}
+
+	/**
+	 * Subscribes to the changes since the given version. The first event brings a subscriber that has seen that
+	 * version up to date.
+	 */
+	public void subscribe(final Flow.Subscriber<? super ListChange<T>> subscriber, VersionVector fromVersion) {
+		final FeedSubscription subscription = new FeedSubscription(subscriber, new VersionVector(fromVersion));
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				subscriptions.add(subscription);
+				subscriber.onSubscribe(subscription);
+			}
+		});
+	}
+
+	private class FeedSubscription implements Flow.Subscription {
+		private final Flow.Subscriber<? super ListChange<T>> subscriber;
+		private VersionVector version;
+		private long demand = 0;
+		private boolean cancelled = false;
+
+		FeedSubscription(Flow.Subscriber<? super ListChange<T>> subscriber, VersionVector version) {
+			this.subscriber = subscriber;
+			this.version = version;
+		}
+
+		@Override
+		public void request(final long n) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					if (cancelled)
+						return;
+					if (n <= 0) {
+						cancelled = true;
+						subscriptions.remove(FeedSubscription.this);
+						subscriber.onError(new IllegalArgumentException("request: n must be > 0: " + n));
+						return;
+					}
+					demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+					deliver();
+				}
+			});
+		}
+
+		@Override
+		public void cancel() {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					cancelled = true;
+					subscriptions.remove(FeedSubscription.this);
+				}
+			});
+		}
+
+		void deliver() {
+			if (cancelled || demand == 0)
+				return;
+			VersionVector current = list.contentVersion();
+			if (current.equals(version))
+				return;
+			ListDelta<T> delta = list.diff(version, current);
+			VersionVector previous = version;
+			version = current;
+			if (delta.isEmpty())
+				return;
+			if (demand != Long.MAX_VALUE)
+				demand--;
+			subscriber.onNext(new ListChange<T>(previous, current, delta));
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A change to a list in terms of indexes rather than item IDs: a sequence of runs that, going through the old list
+ * from the start, retain a number of items, insert new values, or delete a number of items. Items after the last run
+ * are retained. Consecutive runs of the same kind are merged as they are added.
+ */
+public class ListDelta<T> implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public enum Kind {
+		RETAIN, INSERT, DELETE
+	}
+
+	public static class Run<T> implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final Kind kind;
+		private int length;
+		private final List<T> values;
+
+		private Run(Kind kind, int length, List<T> values) {
+			this.kind = kind;
+			this.length = length;
+			this.values = values;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * Number of items retained, inserted or deleted.
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * The inserted values, or <code>null</code> unless this is an insertion.
+		 */
+		public List<T> getValues() {
+			return values == null ? null : Collections.unmodifiableList(values);
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((kind == null) ? 0 : kind.hashCode());
+			result = prime * result + length;
+			result = prime * result + ((values == null) ? 0 : values.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Run<?> other = (Run<?>) obj;
+			if (kind != other.kind)
+				return false;
+			if (length != other.length)
+				return false;
+			if (values == null) {
+				if (other.values != null)
+					return false;
+			} else if (!values.equals(other.values))
+				return false;
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return kind == Kind.INSERT ? kind + " " + values : kind + " " + length;
+		}
+	}
+
+	private final ArrayList<Run<T>> runs = new ArrayList<Run<T>>();
+
+	public ListDelta<T> retain(int count) {
+		return addRun(Kind.RETAIN, count, null);
+	}
+
+	public ListDelta<T> insert(T value) {
+		return addRun(Kind.INSERT, 1, value);
+	}
+
+	public ListDelta<T> delete(int count) {
+		return addRun(Kind.DELETE, count, null);
+	}
+
+	private ListDelta<T> addRun(Kind kind, int length, T value) {
+		if (length <= 0)
+			return this;
+		Run<T> last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+		if (last == null || last.kind != kind) {
+			last = new Run<T>(kind, 0, kind == Kind.INSERT ? new ArrayList<T>() : null);
+			runs.add(last);
+		}
+		last.length += length;
+		if (kind == Kind.INSERT)
+			last.values.add(value);
+		return this;
+	}
+
+	/**
+	 * Removes a final retain run, which has no effect.
+	 */
+	public ListDelta<T> trim() {
+		if (!runs.isEmpty() && runs.get(runs.size() - 1).kind == Kind.RETAIN)
+			runs.remove(runs.size() - 1);
+		return this;
+	}
+
+	public List<Run<T>> getRuns() {
+		return Collections.unmodifiableList(runs);
+	}
+
+	/**
+	 * Returns true if the delta makes no change.
+	 */
+	public boolean isEmpty() {
+		for (Run<T> run : runs) {
+			if (run.kind != Kind.RETAIN)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a copy of the given list with this delta applied.
+	 */
+	public List<T> applyTo(List<T> list) {
+		List<T> result = new ArrayList<T>(list.size());
+		int index = 0;
+		for (Run<T> run : runs) {
+			switch (run.kind) {
+			case RETAIN:
+				if (index + run.length > list.size())
+					throw new IllegalArgumentException("applyTo: delta retains beyond end of list");
+				result.addAll(list.subList(index, index + run.length));
+				index += run.length;
+				break;
+			case INSERT:
+				result.addAll(run.values);
+				break;
+			case DELETE:
+				if (index + run.length > list.size())
+					throw new IllegalArgumentException("applyTo: delta deletes beyond end of list");
+				index += run.length;
+				break;
+			}
+		}
+		result.addAll(list.subList(index, list.size()));
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return runs.toString();
+	}
+}
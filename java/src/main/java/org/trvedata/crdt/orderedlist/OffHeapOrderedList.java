@@ -0,0 +1,278 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.trvedata.crdt.CRDT;
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.VersionVector;
+import org.trvedata.crdt.operation.ChangingOperation;
+
+/**
+ * A list with the same semantics and operations as {@link OrderedList}, so that peers using either can edit the same
+ * document, but which keeps its items off the Java heap: IDs, links, deletion timestamps and values live in
+ * fixed-size records in direct byte buffers (see {@link ItemSlab}), and values are encoded with a
+ * {@link FixedSizeCodec}. The number of heap objects, and so the cost of garbage collection, does not grow with the
+ * size of the list. The direct memory it may use is limited by the JVM option -XX:MaxDirectMemorySize.
+ *
+ * It supports the core editing operations only: lookups by ID take constant time, and lookups by index O(log n)
+ * time through a {@link SlabTree} kept in the same records, which counts non-deleted items but has none of the other
+ * summaries of OrderedList's item tree. See {@link PagedOrderedList} for a variant that keeps its items in a file.
+ */
+public class OffHeapOrderedList<T> extends CRDT implements Iterable<T> {
+	private static final int NONE = ItemSlab.NONE;
+
+	private final ItemSlab<T> slab;
+	private final SlabTree<T> tree;
+	private int head = NONE, tail = NONE;
+	private int size = 0;
+
+	public OffHeapOrderedList(FixedSizeCodec<T> codec) {
+		this(new ItemSlab<T>(codec));
+	}
+
+	OffHeapOrderedList(ItemSlab<T> slab) {
+		this.slab = slab;
+		this.tree = new SlabTree<T>(slab);
+	}
+
+	/**
+	 * Inserts a new item with the given value at the given index (local operation).
+	 */
+	public OffHeapOrderedList<T> insert(int index, T value) {
+		ItemID leftId = null;
+		if (index >= this.size) {
+			// Appending, the common case when typing at the end, needs no lookup
+			leftId = this.tail == NONE ? null : this.slab.insertId(this.tail);
+		} else if (index > 0) {
+			int right = slotByIndex(index);
+			leftId = this.slab.insertId(this.slab.prev(right));
+		}
+		int slot = insertAfterId(leftId, this.peer.nextId(), value);
+		sendInsert(slot, value);
+		return this;
+	}
+
+	/**
+	 * Inserts a new item before the item identified by cursorId, or at the end of the list if cursorId is
+	 * <code>null</code> (local operation).
+	 */
+	public ItemID insertBeforeId(ItemID cursorId, T value) {
+		ItemID leftId;
+		if (cursorId == null) {
+			leftId = this.tail == NONE ? null : this.slab.insertId(this.tail);
+		} else {
+			int right = this.slab.find(cursorId);
+			if (right == NONE)
+				throw new RuntimeException("insertBeforeId: unknown cursorId: " + cursorId);
+			int left = this.slab.prev(right);
+			leftId = left == NONE ? null : this.slab.insertId(left);
+		}
+		int slot = insertAfterId(leftId, this.peer.nextId(), value);
+		sendInsert(slot, value);
+		return this.slab.insertId(slot);
+	}
+
+	/**
+	 * Deletes the item at the given index in the list (local operation).
+	 */
+	public OffHeapOrderedList<T> remove(int index) {
+		int slot = slotByIndex(index);
+		if (slot == NONE)
+			throw new RuntimeException("remove: unknown item with index " + index);
+		ItemID deleteTs = this.peer.nextId();
+		markDeleted(slot, deleteTs);
+		this.sendOperation(new DeleteOp(this.slab.insertId(slot), deleteTs));
+		return this;
+	}
+
+	private void sendInsert(int slot, T value) {
+		int left = this.slab.prev(slot);
+		this.sendOperation(new InsertOp<T>(left == NONE ? null : this.slab.insertId(left), this.slab.insertId(slot), value));
+	}
+
+	@Override
+	public void applyOperation(ChangingOperation operation) {
+		if (operation instanceof InsertOp) {
+			@SuppressWarnings("unchecked")
+			InsertOp<T> insertOp = (InsertOp<T>) operation;
+			int slot = insertAfterId(insertOp.getReferenceId(), insertOp.getInsertId(), insertOp.getValue());
+			if (insertOp.getDeleteTs() != null)
+				markDeleted(slot, insertOp.getDeleteTs());
+		} else if (operation instanceof InsertRunOp) {
+			@SuppressWarnings("unchecked")
+			InsertRunOp<T> runOp = (InsertRunOp<T>) operation;
+			ItemID leftId = runOp.getReferenceId();
+			for (int i = 0; i < runOp.size(); i++) {
+				insertAfterId(leftId, runOp.getInsertId(i), runOp.getValues().get(i));
+				leftId = runOp.getInsertId(i);
+			}
+		} else if (operation instanceof DeleteOp) {
+			DeleteOp deleteOp = (DeleteOp) operation;
+			int slot = this.slab.find(deleteOp.getDeleteId());
+			if (slot == NONE)
+				throw new RuntimeException("applyOperation: unknown item with id " + deleteOp.getDeleteId());
+			markDeleted(slot, deleteOp.getDeleteTs());
+		} else {
+			throw new RuntimeException("applyOperation: Invalid operation: " + operation);
+		}
+		this.onOperation(operation);
+	}
+
+	/**
+	 * Returns the insertions and deletions that a peer with the given version has not seen, in list order, in the
+	 * same form as {@link OrderedList#delta(VersionVector)}.
+	 */
+	@Override
+	public List<ChangingOperation> delta(VersionVector remoteVersion) {
+		List<ChangingOperation> operations = new ArrayList<ChangingOperation>();
+		for (int slot = this.head; slot != NONE; slot = this.slab.next(slot)) {
+			ItemID insertId = this.slab.insertId(slot);
+			ItemID deleteTs = this.slab.deleteTs(slot);
+			ChangingOperation operation = null;
+			if (!remoteVersion.contains(insertId)) {
+				int prev = this.slab.prev(slot);
+				// Tombstones may have been stored without a value, and their value is never read
+				T value = deleteTs == null ? this.slab.value(slot) : null;
+				operation = new InsertOp<T>(prev == NONE ? null : this.slab.insertId(prev), insertId, value, deleteTs);
+			} else if (deleteTs != null && !remoteVersion.contains(deleteTs)) {
+				operation = new DeleteOp(insertId, deleteTs);
+			}
+			if (operation != null) {
+				operation.setTarget(this.getObjectId());
+				operations.add(operation);
+			}
+		}
+		return operations;
+	}
+
+	/**
+	 * Applies a delta from another peer, skipping the insertions of items that are already in the list (other than
+	 * to delete them, if they are tombstones on the other peer).
+	 */
+	@Override
+	public void applyDelta(List<ChangingOperation> operations) {
+		for (ChangingOperation operation : operations) {
+			if (operation instanceof InsertOp) {
+				InsertOp<?> insertOp = (InsertOp<?>) operation;
+				int slot = this.slab.find(insertOp.getInsertId());
+				if (slot != NONE) {
+					if (insertOp.getDeleteTs() != null && !this.slab.isDeleted(slot))
+						applyOperation(new DeleteOp(insertOp.getInsertId(), insertOp.getDeleteTs()));
+					continue;
+				}
+			}
+			applyOperation(operation);
+		}
+	}
+
+	/*
+	 * Inserts a new item to the right of the item identified by leftId (or at the head if null), skipping items with
+	 * greater IDs, as in OrderedList.insertAfterId. Returns the new item's slot.
+	 */
+	private int insertAfterId(ItemID leftId, ItemID insertId, T value) {
+		int left = NONE;
+		if (leftId != null) {
+			left = this.slab.find(leftId);
+			if (left == NONE)
+				throw new RuntimeException("insertAfterId: unknown item with id " + leftId);
+		} else if (this.head != NONE && this.slab.compareId(this.head, insertId) > 0) {
+			left = this.head;
+		}
+		while (left != NONE && this.slab.next(left) != NONE && this.slab.compareId(this.slab.next(left), insertId) > 0)
+			left = this.slab.next(left);
+
+		int right = left != NONE ? this.slab.next(left) : this.head;
+		int slot = this.slab.add(insertId, value, left, right);
+		this.size++;
+		if (left != NONE)
+			this.slab.setNext(left, slot);
+		else
+			this.head = slot;
+		if (right != NONE)
+			this.slab.setPrev(right, slot);
+		else
+			this.tail = slot;
+		this.tree.insertAfter(left, slot);
+		return slot;
+	}
+
+	/*
+	 * Like OrderedList, keeps the smallest ID of concurrent deletions of an item, so that the stored deletion does
+	 * not depend on the order in which they arrived. The list has no versioned reads, so the others are not kept.
+	 */
+	private void markDeleted(int slot, ItemID deleteTs) {
+		boolean wasDeleted = this.slab.isDeleted(slot);
+		if (wasDeleted && this.slab.deleteTs(slot).compareTo(deleteTs) <= 0)
+			return;
+		this.slab.setDeleteTs(slot, deleteTs);
+		if (!wasDeleted) {
+			this.size--;
+			this.tree.deleted(slot);
+		}
+	}
+
+	private int slotByIndex(int index) {
+		if (index < 0)
+			throw new IllegalArgumentException("Index must be >= 0: " + index);
+		return this.tree.byVisibleIndex(index);
+	}
+
+	/**
+	 * Number of items in the list, not counting tombstones.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of deleted items that are still kept as tombstones.
+	 */
+	public int tombstoneCount() {
+		return this.slab.count() - size;
+	}
+
+	/**
+	 * Bytes of storage used by the list's items and ID index.
+	 */
+	public long offHeapBytes() {
+		return this.slab.offHeapBytes();
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			int curr = head;
+
+			@Override
+			public boolean hasNext() {
+				while (curr != NONE && slab.isDeleted(curr))
+					curr = slab.next(curr);
+				return curr != NONE;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				T value = slab.value(curr);
+				curr = slab.next(curr);
+				return value;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	public List<T> toList() {
+		List<T> list = new ArrayList<T>(this.size);
+		for (T value : this)
+			list.add(value);
+		return list;
+	}
+}
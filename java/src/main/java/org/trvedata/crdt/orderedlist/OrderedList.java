@@ -1,24 +1,45 @@
 package org.trvedata.crdt.orderedlist;
 
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.trvedata.crdt.CRDT;
-import org.trvedata.crdt.CRDTEventListener;
 import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.PeerID;
+import org.trvedata.crdt.VersionVector;
+import org.trvedata.crdt.metrics.Histogram;
+import org.trvedata.crdt.metrics.Metrics;
+import org.trvedata.crdt.metrics.SettableGauge;
 import org.trvedata.crdt.operation.ChangingOperation;
 import org.trvedata.crdt.operation.Operation;
 
 public class OrderedList<T> extends CRDT implements Iterable<T> {
-	private static class Item<T> {
+	static class Item<T> {
+		// deleteTs is the smallest of the IDs of the operations that deleted this item, so that it does not depend on
+		// the order in which concurrent deletions arrived; any others are in laterDeleteTs (null if there are none)
 		ItemID insertId, deleteTs;
+		ItemID[] laterDeleteTs;
 		T value;
 		Item<T> prev, next;
 
+		// Position in the ItemTree, and summary of the subtree rooted at this item
+		Item<T> parent, left, right;
+		int priority, visible, separators;
+		long minInsertTs, maxDeleteTs, maxChangeTs;
+
 		public Item(ItemID insertId, ItemID deleteTs, T value, Item<T> previous, Item<T> next) {
 			this.insertId = insertId;
 			this.deleteTs = deleteTs;
@@ -29,12 +50,19 @@ public class OrderedList<T> extends CRDT implements Iterable<T> {
 	}
 
 	private HashMap<ItemID, Item<T>> itemsById;
+	private final ItemTree<T> tree = new ItemTree<T>();
+	private final VersionVector contents = new VersionVector();
 	private Item<T> head = null, tail = null;
-	private Set<CRDTEventListener> eventListeners;
+	private int size = 0;
+	private Histogram itemByIndexNanos;
+	// Set by publishGauges() on the peer's thread, since the gauges may be read from another thread
+	private final SettableGauge sizeGauge = new SettableGauge(), tombstonesGauge = new SettableGauge();
+	private boolean discardUnsentItems = true;
+	private boolean lineIndexEnabled = false;
+	private final List<ItemObserver<T>> itemObservers = new ArrayList<ItemObserver<T>>();
 
 	public OrderedList() {
 		this.itemsById = new HashMap<ItemID, Item<T>>();
-		this.eventListeners = new HashSet<CRDTEventListener>();
 	}
 
 	public OrderedList<T> insert(int index, T value) {
@@ -46,7 +74,7 @@ public class OrderedList<T> extends CRDT implements Iterable<T> {
 
 		Item<T> item = this.insertAfterId(leftId, this.peer.nextId(), value);
 		InsertOp<T> op = new InsertOp<T>(item.prev == null ? null : item.prev.insertId, item.insertId, item.value);
-		this.peer.sendOperation(op);
+		this.sendOperation(op);
 		return this;
 	}
 
@@ -66,7 +94,7 @@ public class OrderedList<T> extends CRDT implements Iterable<T> {
 		}
 
 		final Item<T> item = this.insertAfterId(leftId, this.peer.nextId(), value);
-		this.peer.sendOperation(new InsertOp<T>(item.prev == null ? null : item.prev.insertId, item.insertId, item.value));
+		this.sendOperation(new InsertOp<T>(item.prev == null ? null : item.prev.insertId, item.insertId, item.value));
 		return item.insertId;
 	}
 
@@ -78,12 +106,26 @@ public class OrderedList<T> extends CRDT implements Iterable<T> {
 		if (item == null)
 			throw new RuntimeException("remove: unknown item with index " + index);
 
-		item.deleteTs = this.peer.nextId();
-		item.value = null;
-		this.peer.sendOperation(new DeleteOp(item.insertId, item.deleteTs));
+		markDeleted(item, this.peer.nextId());
+		this.sendOperation(new DeleteOp(item.insertId, item.deleteTs));
 		return this;
 	}
 
+	/**
+	 * Deletes the item with the given ID (local operation), unless it has already been deleted. Returns true if the
+	 * item was deleted by this call.
+	 */
+	public boolean removeId(ItemID id) {
+		Item<T> item = this.itemsById.get(id);
+		if (item == null)
+			throw new RuntimeException("removeId: unknown item with id " + id);
+		if (item.deleteTs != null)
+			return false;
+		markDeleted(item, this.peer.nextId());
+		this.sendOperation(new DeleteOp(item.insertId, item.deleteTs));
+		return true;
+	}
+
 	/**
 	 * Deletes numItems items from the list (local operation). The items to be deleted are to the left of the item
 	 * identified by cursorId (not including the item identified by cursorId itself). If cursorId is <code>null</code>, deletes
@@ -103,9 +145,8 @@ public class OrderedList<T> extends CRDT implements Iterable<T> {
 
 		while (item != null && (numItems > 0 || item.deleteTs != null)) {
 			if (item.deleteTs == null) {
-				item.deleteTs = this.peer.nextId();
-				item.value = null;
-				this.peer.sendOperation(new DeleteOp(item.insertId, item.deleteTs));
+				markDeleted(item, this.peer.nextId());
+				this.sendOperation(new DeleteOp(item.insertId, item.deleteTs));
 				numItems--;
 			}
 			item = item.prev;
@@ -124,9 +165,8 @@ public class OrderedList<T> extends CRDT implements Iterable<T> {
 
 		while (item != null && (numItems > 0 || item.deleteTs != null)) {
 			if (item.deleteTs == null) {
-				item.deleteTs = this.peer.nextId();
-				item.value = null;
-				this.peer.sendOperation(new DeleteOp(item.insertId, item.deleteTs));
+				markDeleted(item, this.peer.nextId());
+				this.sendOperation(new DeleteOp(item.insertId, item.deleteTs));
 				numItems--;
 			}
 			item = item.next;
@@ -140,28 +180,194 @@ public class OrderedList<T> extends CRDT implements Iterable<T> {
 	 * the data structure's vector clock.
 	 */
 	public void applyOperation(ChangingOperation operation) {
+		final ApplyOperationEvent event = new ApplyOperationEvent();
+		event.begin();
 		if (operation instanceof InsertOp) {
 			@SuppressWarnings("unchecked")
 			InsertOp<T> insertOp = (InsertOp<T>) operation;
-			this.insertAfterId(insertOp.getReferenceId(), insertOp.getInsertId(), insertOp.getValue());
+			this.insertItem(insertOp.getReferenceId(), insertOp.getInsertId(), insertOp.getValue(), insertOp.getDeleteTs());
+		} else if (operation instanceof InsertRunOp) {
+			@SuppressWarnings("unchecked")
+			InsertRunOp<T> runOp = (InsertRunOp<T>) operation;
+			ItemID leftId = runOp.getReferenceId();
+			for (int i = 0; i < runOp.size(); i++)
+				leftId = this.insertAfterId(leftId, runOp.getInsertId(i), runOp.getValues().get(i)).insertId;
 		} else if (operation instanceof DeleteOp) {
 			DeleteOp deleteOp = (DeleteOp) operation;
 			Item<T> item = this.itemsById.get(deleteOp.getDeleteId());
 			if (item == null)
 				throw new RuntimeException("applyOperation: unknown item with id " + deleteOp.getDeleteId());
-			item.deleteTs = deleteOp.getDeleteTs();
-			item.value = null;
+			markDeleted(item, deleteOp.getDeleteTs());
 		} else {
 			throw new RuntimeException("applyOperation: Invalid operation: " + operation);
 		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.operationType = operation.getClass().getSimpleName();
+			event.objectId = this.getObjectId() == null ? null : this.getObjectId().toString();
+			event.listSize = this.size;
+			event.commit();
+		}
 		this.onOperation(operation);
 	}
 
+	/**
+	 * Fills an empty list from a snapshot, i.e. its items (including tombstones) in list order, as returned by
+	 * {@link #snapshot()}. Unlike applying insertions one by one, this takes a single pass without looking up
+	 * neighbours, and sizes the ID index for expectedSize items up front, so loading is bounded by the speed of the
+	 * iterator. The list must belong to a peer, whose logical clock is advanced past all loaded timestamps.
+	 */
+	public void load(Iterator<SnapshotItem<T>> items, int expectedSize) {
+		if (this.peer == null)
+			throw new IllegalStateException("load: list must belong to a peer");
+		if (!this.itemsById.isEmpty())
+			throw new IllegalStateException("load: list is not empty");
+		// Build the list in locals, so that the list is left unchanged if the snapshot turns out to be invalid
+		HashMap<ItemID, Item<T>> loadedById = new HashMap<ItemID, Item<T>>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+		VersionVector loadedContents = new VersionVector();
+		long maxTs = 0;
+		int loadedSize = 0;
+		Item<T> first = null, prev = null;
+		while (items.hasNext()) {
+			SnapshotItem<T> snapshotItem = items.next();
+			Item<T> item = new Item<T>(snapshotItem.getInsertId(), snapshotItem.getDeleteTs(), snapshotItem.getValue(), prev, null);
+			if (loadedById.put(item.insertId, item) != null)
+				throw new IllegalArgumentException("load: duplicate item with id " + item.insertId);
+			item.priority = this.tree.nextPriority();
+			loadedContents.update(item.insertId.getPeerId(), item.insertId.getLogicalTs());
+			if (prev == null)
+				first = item;
+			else
+				prev.next = item;
+			prev = item;
+			maxTs = Math.max(maxTs, item.insertId.getLogicalTs());
+			if (item.deleteTs == null) {
+				loadedSize++;
+			} else {
+				maxTs = Math.max(maxTs, item.deleteTs.getLogicalTs());
+				loadedContents.update(item.deleteTs.getPeerId(), item.deleteTs.getLogicalTs());
+			}
+		}
+		this.itemsById = loadedById;
+		this.contents.merge(loadedContents);
+		this.head = first;
+		this.tail = prev;
+		this.size = loadedSize;
+		this.tree.build(this.head);
+		this.peer.updateLogicalTs(maxTs);
+		for (ItemObserver<T> observer : this.itemObservers)
+			observer.itemsLoaded();
+	}
+
+	/**
+	 * Returns all items of the list in order, including tombstones, in the form accepted by
+	 * {@link #load(Iterator, int)}. The list must not be modified while iterating.
+	 */
+	public Iterable<SnapshotItem<T>> snapshot() {
+		return new Iterable<SnapshotItem<T>>() {
+			@Override
+			public Iterator<SnapshotItem<T>> iterator() {
+				return new Iterator<SnapshotItem<T>>() {
+					Item<T> curr = head;
+
+					@Override
+					public boolean hasNext() {
+						return curr != null;
+					}
+
+					@Override
+					public SnapshotItem<T> next() {
+						if (curr == null)
+							throw new NoSuchElementException();
+						SnapshotItem<T> item = new SnapshotItem<T>(curr.insertId, curr.deleteTs, curr.value);
+						curr = curr.next;
+						return item;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Returns the operations that a peer with the given version is missing: an insertion for every item it has not
+	 * seen (of a tombstone, if the item has been deleted), and a deletion for every item it has but has not seen
+	 * deleted. Insertions are in list order and refer to the preceding item in this list, including tombstones, which
+	 * the remote peer either has already or receives earlier in the delta. Since all items between an item's original
+	 * reference and its predecessor have greater IDs, inserting after the predecessor gives the same order.
+	 */
+	@Override
+	public List<ChangingOperation> delta(VersionVector remoteVersion) {
+		List<ChangingOperation> operations = new ArrayList<ChangingOperation>();
+		for (Item<T> item = this.head; item != null; item = item.next) {
+			if (!remoteVersion.contains(item.insertId))
+				addDeltaOperation(operations, new InsertOp<T>(item.prev == null ? null : item.prev.insertId, item.insertId, item.value, item.deleteTs));
+			else if (item.deleteTs != null && !remoteVersion.contains(item.deleteTs))
+				addDeltaOperation(operations, new DeleteOp(item.insertId, item.deleteTs));
+			if (item.laterDeleteTs != null) {
+				for (ItemID deleteTs : item.laterDeleteTs)
+					if (!remoteVersion.contains(deleteTs))
+						addDeltaOperation(operations, new DeleteOp(item.insertId, deleteTs));
+			}
+		}
+		return operations;
+	}
+
+	private void addDeltaOperation(List<ChangingOperation> operations, ChangingOperation operation) {
+		operation.setTarget(this.getObjectId());
+		operations.add(operation);
+	}
+
+	/**
+	 * Applies a delta from another peer, skipping the insertions of items that are already in the list (other than
+	 * to delete them, if they are tombstones on the other peer) and deletions that have already been applied.
+	 */
+	@Override
+	public void applyDelta(List<ChangingOperation> operations) {
+		for (ChangingOperation operation : operations) {
+			if (operation instanceof InsertOp) {
+				@SuppressWarnings("unchecked")
+				InsertOp<T> insertOp = (InsertOp<T>) operation;
+				Item<T> item = this.itemsById.get(insertOp.getInsertId());
+				if (item != null) {
+					if (insertOp.getDeleteTs() != null && !hasDeleteTs(item, insertOp.getDeleteTs()))
+						applyOperation(new DeleteOp(insertOp.getInsertId(), insertOp.getDeleteTs()));
+					continue;
+				}
+			} else if (operation instanceof DeleteOp) {
+				DeleteOp deleteOp = (DeleteOp) operation;
+				Item<T> item = this.itemsById.get(deleteOp.getDeleteId());
+				if (item != null && hasDeleteTs(item, deleteOp.getDeleteTs()))
+					continue;
+			}
+			applyOperation(operation);
+		}
+	}
+
+	/**
+	 * Number of items in the list, including tombstones.
+	 */
+	public int itemCount() {
+		return this.itemsById.size();
+	}
+
 	/**
 	 * Inserts a new list item to the right of the item identified by leftId. If leftId is <code>null</code>, inserts a new list item
 	 * at the head. The new item has ID insertId and the given value. Returns the newly inserted item.
 	 */
 	public Item<T> insertAfterId(ItemID leftId, ItemID insertId, T value) {
+		return insertItem(leftId, insertId, value, null);
+	}
+
+	/*
+	 * Inserts an item as insertAfterId does, which is a tombstone if deleteTs is not null. A tombstone never becomes
+	 * visible, so item observers are not notified of it.
+	 */
+	private Item<T> insertItem(ItemID leftId, ItemID insertId, T value, ItemID deleteTs) {
 		Item<T> leftItem = null;
 		if (leftId != null) {
 			leftItem = this.itemsById.get(leftId);
@@ -176,7 +382,10 @@ public class OrderedList<T> extends CRDT implements Iterable<T> {
 
 		Item<T> rightItem = leftItem != null ? leftItem.next : this.head;
 		Item<T> item = new Item<T>(insertId, null, value, leftItem, rightItem);
+		item.priority = this.tree.nextPriority();
 		this.itemsById.put(insertId, item);
+		this.contents.update(insertId.getPeerId(), insertId.getLogicalTs());
+		this.size++;
 		if (leftItem != null)
 			leftItem.next = item;
 		if (rightItem != null)
@@ -185,37 +394,485 @@ public class OrderedList<T> extends CRDT implements Iterable<T> {
 			this.head = item;
 		if (rightItem == null)
 			this.tail = item;
+		this.tree.insertAfter(leftItem, item);
+		if (deleteTs != null) {
+			addDeletion(item, deleteTs);
+			return item;
+		}
+		for (ItemObserver<T> observer : this.itemObservers)
+			observer.itemInserted(item);
 		return item;
 	}
 
+	/*
+	 * Turns an item into a tombstone. Items may be deleted concurrently by several peers, so the item may already be
+	 * a tombstone, in which case the deletion is added to the ones it has (see Item). All of them are kept, since a
+	 * version may contain any subset of them. Tombstones keep their value, so that earlier versions of the list can
+	 * still be read (see valuesAt).
+	 */
+	private void markDeleted(Item<T> item, ItemID deleteTs) {
+		if (addDeletion(item, deleteTs)) {
+			for (ItemObserver<T> observer : this.itemObservers)
+				observer.itemDeleted(item);
+		}
+	}
+
+	/*
+	 * Does the work of markDeleted without notifying observers, and returns whether the item was visible before.
+	 */
+	private boolean addDeletion(Item<T> item, ItemID deleteTs) {
+		boolean wasVisible = item.deleteTs == null;
+		if (wasVisible) {
+			this.size--;
+			item.deleteTs = deleteTs;
+		} else if (hasDeleteTs(item, deleteTs)) {
+			return false;
+		} else {
+			ItemID later = deleteTs;
+			if (deleteTs.compareTo(item.deleteTs) < 0) {
+				later = item.deleteTs;
+				item.deleteTs = deleteTs;
+			}
+			if (item.laterDeleteTs == null) {
+				item.laterDeleteTs = new ItemID[] { later };
+			} else {
+				item.laterDeleteTs = Arrays.copyOf(item.laterDeleteTs, item.laterDeleteTs.length + 1);
+				item.laterDeleteTs[item.laterDeleteTs.length - 1] = later;
+			}
+		}
+		this.contents.update(deleteTs.getPeerId(), deleteTs.getLogicalTs());
+		this.tree.updated(item);
+		return wasVisible;
+	}
+
+	static boolean hasDeleteTs(Item<?> item, ItemID deleteTs) {
+		if (item.deleteTs == null)
+			return false;
+		if (item.deleteTs.equals(deleteTs))
+			return true;
+		if (item.laterDeleteTs != null) {
+			for (ItemID later : item.laterDeleteTs)
+				if (later.equals(deleteTs))
+					return true;
+		}
+		return false;
+	}
+
+	/*
+	 * Removes an item from the list altogether, rather than leaving a tombstone. This is only safe for a deleted
+	 * item that no other peer knows about and that no operation references, i.e. one whose insertion is elided
+	 * from the send buffer by coalesce().
+	 */
+	private void discardItem(Item<T> item) {
+		if (item.prev != null)
+			item.prev.next = item.next;
+		else
+			this.head = item.next;
+		if (item.next != null)
+			item.next.prev = item.prev;
+		else
+			this.tail = item.prev;
+		this.itemsById.remove(item.insertId);
+		this.tree.remove(item);
+	}
+
+	/*
+	 * Whether coalesce() may discard items that were inserted and deleted before being sent. Turned off when
+	 * something other than peers has seen the items, e.g. the thin clients of a ThinClientHost.
+	 */
+	void setDiscardUnsentItems(boolean discardUnsentItems) {
+		this.discardUnsentItems = discardUnsentItems;
+	}
+
+	/**
+	 * Coalesces locally generated operations before they are sent. An item that is inserted and deleted within the
+	 * same batch is not sent at all if no other operation references it (it is then removed locally as well, as if it
+	 * had never existed), and is otherwise sent as a single insertion of a tombstone. The tombstone keeps its value,
+	 * so that receivers can read versions in which the item was still present (see valuesAt). Consecutive
+	 * insertions of adjacent items are merged into an {@link InsertRunOp}.
+	 */
+	@Override
+	public Deque<Operation> coalesce(Deque<Operation> operations) {
+		List<Operation> ops = new ArrayList<Operation>(operations);
+		HashMap<ItemID, Integer> deletePosById = new HashMap<ItemID, Integer>();
+		HashMap<ItemID, Integer> referenceCount = new HashMap<ItemID, Integer>();
+		for (int i = 0; i < ops.size(); i++) {
+			if (!isOwnOperation(ops.get(i))) {
+				continue;
+			} else if (ops.get(i) instanceof InsertOp || ops.get(i) instanceof InsertRunOp) {
+				// Runs are left in the buffer by an earlier call, when a message took only part of it
+				ItemID referenceId = ops.get(i) instanceof InsertOp ? ((InsertOp<?>) ops.get(i)).getReferenceId()
+						: ((InsertRunOp<?>) ops.get(i)).getReferenceId();
+				if (referenceId != null)
+					incrementCount(referenceCount, referenceId, 1);
+			} else if (ops.get(i) instanceof DeleteOp) {
+				deletePosById.put(((DeleteOp) ops.get(i)).getDeleteId(), i);
+			}
+		}
+
+		// Fold deletions into the insertions of the same items. Insertions only reference earlier insertions, so
+		// going backwards means that a word that was typed and deleted again disappears completely: eliding the last
+		// character drops the only reference to the one before it.
+		for (int i = ops.size() - 1; i >= 0; i--) {
+			if (!(ops.get(i) instanceof InsertOp) || !isOwnOperation(ops.get(i)))
+				continue;
+			@SuppressWarnings("unchecked")
+			InsertOp<T> insertOp = (InsertOp<T>) ops.get(i);
+			Integer deletePos = deletePosById.get(insertOp.getInsertId());
+			if (deletePos == null)
+				continue;
+			DeleteOp deleteOp = (DeleteOp) ops.get(deletePos);
+			ops.set(deletePos, null);
+			if (this.discardUnsentItems && !referenceCount.containsKey(insertOp.getInsertId())) {
+				ops.set(i, null);
+				if (insertOp.getReferenceId() != null)
+					incrementCount(referenceCount, insertOp.getReferenceId(), -1);
+				Item<T> item = this.itemsById.get(insertOp.getInsertId());
+				if (item != null)
+					this.discardItem(item);
+			} else {
+				InsertOp<T> tombstoneOp = new InsertOp<T>(insertOp.getReferenceId(), insertOp.getInsertId(),
+						insertOp.getValue(), deleteOp.getDeleteTs());
+				tombstoneOp.setTarget(this.getObjectId());
+				ops.set(i, tombstoneOp);
+			}
+		}
+
+		Deque<Operation> result = new ArrayDeque<Operation>(ops.size());
+		ItemID runRefId = null, runFirstId = null, runLastId = null;
+		List<T> runValues = null;
+		for (Operation op : ops) {
+			if (op == null)
+				continue;
+			if (op instanceof InsertOp && ((InsertOp<?>) op).getDeleteTs() == null && isOwnOperation(op)) {
+				@SuppressWarnings("unchecked")
+				InsertOp<T> insertOp = (InsertOp<T>) op;
+				ItemID insertId = insertOp.getInsertId();
+				if (runValues != null && insertOp.getReferenceId() != null && runLastId.equals(insertOp.getReferenceId())
+						&& insertId.getLogicalTs() == runLastId.getLogicalTs() + 1
+						&& insertId.getPeerId().equals(runLastId.getPeerId())) {
+					runValues.add(insertOp.getValue());
+					runLastId = insertId;
+					continue;
+				}
+				addRun(result, runRefId, runFirstId, runValues);
+				runRefId = insertOp.getReferenceId();
+				runFirstId = runLastId = insertId;
+				runValues = new ArrayList<T>();
+				runValues.add(insertOp.getValue());
+				continue;
+			}
+			addRun(result, runRefId, runFirstId, runValues);
+			runValues = null;
+			result.addLast(op);
+		}
+		addRun(result, runRefId, runFirstId, runValues);
+		return result;
+	}
+
+	private void addRun(Deque<Operation> result, ItemID referenceId, ItemID firstId, List<T> values) {
+		if (values == null)
+			return;
+		ChangingOperation op;
+		if (values.size() == 1)
+			op = new InsertOp<T>(referenceId, firstId, values.get(0));
+		else
+			op = new InsertRunOp<T>(referenceId, firstId, values);
+		op.setTarget(this.getObjectId());
+		result.addLast(op);
+	}
+
+	private static void incrementCount(HashMap<ItemID, Integer> counts, ItemID id, int delta) {
+		Integer count = counts.get(id);
+		int newCount = (count == null ? 0 : count) + delta;
+		if (newCount == 0)
+			counts.remove(id);
+		else
+			counts.put(id, newCount);
+	}
+
 	/**
 	 * Fetches the item with the given index in the list, skipping tombstones. Returns <code>null</code> if the index is
 	 * out of range.
 	 */
-	public Item<T> itemByIndex(int index) { // FIXME: O(n) complexity.
+	public Item<T> itemByIndex(int index) {
+		if (this.itemByIndexNanos == null)
+			return findItemByIndex(index);
+		final long startNanos = System.nanoTime();
+		Item<T> item = findItemByIndex(index);
+		this.itemByIndexNanos.record(System.nanoTime() - startNanos);
+		return item;
+	}
+
+	private Item<T> findItemByIndex(int index) {
 		if (index < 0)
 			throw new IllegalArgumentException("Index must be >= 0: " + index);
-		Item<T> item = this.head;
-		int dist = index;
-		while (item != null && (item.deleteTs != null || dist > 0)) {
-			if (item.deleteTs == null)
-				dist--;
-			item = item.next;
+		return this.tree.byVisibleIndex(index);
+	}
+
+	/**
+	 * Number of items in the list, not counting tombstones.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of deleted items that are still kept as tombstones.
+	 */
+	public int tombstoneCount() {
+		return this.itemsById.size() - size;
+	}
+
+	@Override
+	protected void registerMetrics(Metrics metrics, String prefix) {
+		metrics.gauge(prefix + ".size", this.sizeGauge);
+		metrics.gauge(prefix + ".tombstones", this.tombstonesGauge);
+		this.itemByIndexNanos = metrics.histogram(prefix + ".itemByIndex.nanos");
+	}
+
+	@Override
+	protected void publishGauges() {
+		this.sizeGauge.set(this.size);
+		this.tombstonesGauge.set(tombstoneCount());
+	}
+
+	/**
+	 * Returns the index of the item with the given ID, or of the next non-deleted item if it has been deleted. An ID
+	 * of <code>null</code> stands for the end of the list, and resolves to the list size. Returns -1 if the ID is
+	 * unknown, e.g. a cursor position referring to an item that has not arrived yet.
+	 */
+	public int indexOfId(ItemID id) {
+		if (id == null)
+			return this.size;
+		Item<T> target = this.itemsById.get(id);
+		if (target == null)
+			return -1;
+		return this.tree.visibleRank(target);
+	}
+
+	/**
+	 * Maintains a line index from now on, treating the non-deleted items equal to lineSeparator (e.g. '\n') as the
+	 * ends of lines. It is kept up to date as items are inserted and deleted, locally or remotely, and makes the
+	 * conversions between offsets (indexes) and lines take O(log n) time. Enabling it takes one pass over the list.
+	 */
+	public void enableLineIndex(T lineSeparator) {
+		if (lineSeparator == null)
+			throw new IllegalArgumentException("lineSeparator must not be null");
+		this.tree.setLineSeparator(lineSeparator);
+		this.lineIndexEnabled = true;
+	}
+
+	/**
+	 * Number of lines, i.e. one more than the number of line separators.
+	 */
+	public int lineCount() {
+		checkLineIndex();
+		return this.tree.separatorCount() + 1;
+	}
+
+	/**
+	 * Returns the offset of the first item of the given line (counting from 0).
+	 */
+	public int lineStartOffset(int line) {
+		checkLineIndex();
+		if (line < 0 || line >= lineCount())
+			throw new IllegalArgumentException("lineStartOffset: no line " + line);
+		if (line == 0)
+			return 0;
+		return this.tree.visibleRank(this.tree.bySeparatorIndex(line - 1)) + 1;
+	}
+
+	/**
+	 * Returns the line (counting from 0) that contains the item at the given offset. An offset equal to the size of
+	 * the list is on the last line.
+	 */
+	public int lineOfOffset(int offset) {
+		checkLineIndex();
+		if (offset < 0 || offset > this.size)
+			throw new IllegalArgumentException("lineOfOffset: offset out of range: " + offset);
+		return this.tree.separatorsBefore(offset);
+	}
+
+	/**
+	 * Returns the column (counting from 0) of the item at the given offset within its line.
+	 */
+	public int columnOfOffset(int offset) {
+		return offset - lineStartOffset(lineOfOffset(offset));
+	}
+
+	/**
+	 * Returns the values of the items with offsets from fromOffset (inclusive) to toOffset (exclusive). It takes
+	 * O(log n) time to find the first item, and tombstones between the items are skipped a subtree at a time. The
+	 * list must not be modified while iterating.
+	 */
+	public Iterable<T> valuesInRange(final int fromOffset, final int toOffset) {
+		if (fromOffset < 0 || toOffset > this.size || fromOffset > toOffset)
+			throw new IllegalArgumentException("valuesInRange: invalid range " + fromOffset + " to " + toOffset);
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return new Iterator<T>() {
+					Item<T> curr = fromOffset < toOffset ? tree.byVisibleIndex(fromOffset) : null;
+					int remaining = toOffset - fromOffset;
+
+					@Override
+					public boolean hasNext() {
+						return remaining > 0;
+					}
+
+					@Override
+					public T next() {
+						if (remaining == 0)
+							throw new NoSuchElementException();
+						T value = curr.value;
+						if (--remaining > 0)
+							curr = tree.nextVisible(curr);
+						return value;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Returns the values on lines fromLine (inclusive) to toLine (exclusive), including their line separators, e.g.
+	 * to render a viewport. See {@link #valuesInRange(int, int)}.
+	 */
+	public Iterable<T> valuesInLines(int fromLine, int toLine) {
+		int toOffset = toLine >= lineCount() ? this.size : lineStartOffset(toLine);
+		return valuesInRange(lineStartOffset(fromLine), toOffset);
+	}
+
+	void addItemObserver(ItemObserver<T> observer) {
+		this.itemObservers.add(observer);
+	}
+
+	void removeItemObserver(ItemObserver<T> observer) {
+		this.itemObservers.remove(observer);
+	}
+
+	Item<T> itemById(ItemID id) {
+		return this.itemsById.get(id);
+	}
+
+	Item<T> firstVisibleItem() {
+		return this.size == 0 ? null : this.tree.byVisibleIndex(0);
+	}
+
+	ItemTree<T> getTree() {
+		return this.tree;
+	}
+
+	private void checkLineIndex() {
+		if (!this.lineIndexEnabled)
+			throw new IllegalStateException("Line index is not enabled");
+	}
+
+	/**
+	 * Returns the values of the list as it was in the given version, i.e. the items whose insertion the version
+	 * contains but whose deletion it does not. Items outside the version are skipped a subtree of the index at a
+	 * time, so reading an old version of a large list visits little more than the items that are in it. The version
+	 * should be a causally consistent state, such as one returned by {@link org.trvedata.crdt.Peer#getVersionVector()}.
+	 * The list must not be modified while iterating.
+	 */
+	public Iterable<T> valuesAt(VersionVector version) {
+		return valuesAt(Version.of(version, this.contents.entries().keySet()));
+	}
+
+	/**
+	 * Returns the values of the list as it was when no operation had a logical timestamp greater than maxTs. See
+	 * {@link #valuesAt(VersionVector)}.
+	 */
+	public Iterable<T> valuesAt(long maxTs) {
+		return valuesAt(Version.ofLamport(maxTs));
+	}
+
+	/**
+	 * Returns the changes that turn the list as it was in version from into the list as it was in version to, as
+	 * runs of retained, inserted and deleted items by index. The list's index is walked once, and subtrees whose
+	 * items have not changed since both versions are retained without being visited, so a diff between two recent
+	 * versions takes time proportional to the number of changes (times log n), rather than to the size of the list.
+	 */
+	public ListDelta<T> diff(VersionVector from, VersionVector to) {
+		long stableTs = Long.MAX_VALUE;
+		for (Map.Entry<PeerID, Long> entry : this.contents.entries().entrySet()) {
+			long seen = Math.min(from.get(entry.getKey()), to.get(entry.getKey()));
+			if (entry.getValue() > seen)
+				stableTs = Math.min(stableTs, seen + 1);
 		}
-		return item;
+		ListDelta<T> delta = new ListDelta<T>();
+		Set<PeerID> authors = this.contents.entries().keySet();
+		this.tree.diff(this.tree.getRoot(), Version.of(from, authors), Version.of(to, authors), stableTs, delta);
+		return delta.trim();
 	}
 
-	public void addEventListener(CRDTEventListener listener) {
-		this.eventListeners.add(listener);
+	/**
+	 * Returns the IDs of the items that were visible in the given version, in list order. See
+	 * {@link #valuesAt(VersionVector)}.
+	 */
+	public Iterable<ItemID> idsAt(VersionVector version) {
+		final Version v = Version.of(version, this.contents.entries().keySet());
+		return new Iterable<ItemID>() {
+			@Override
+			public Iterator<ItemID> iterator() {
+				final Iterator<Item<T>> items = tree.itemsAt(v);
+				return new Iterator<ItemID>() {
+					@Override
+					public boolean hasNext() {
+						return items.hasNext();
+					}
+
+					@Override
+					public ItemID next() {
+						return items.next().insertId;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
 	}
 
-	public void removeEventListener(CRDTEventListener listener) {
-		this.eventListeners.remove(listener);
+	/**
+	 * Returns the version of the list's current contents: the highest timestamp of any insertion or deletion by
+	 * each peer.
+	 */
+	VersionVector contentVersion() {
+		return new VersionVector(this.contents);
 	}
 
-	public void onOperation(Operation op) {
-		for (CRDTEventListener listener : this.eventListeners)
-			listener.onOperation(this, op);
+	private Iterable<T> valuesAt(final Version version) {
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				final Iterator<Item<T>> items = tree.itemsAt(version);
+				return new Iterator<T>() {
+					@Override
+					public boolean hasNext() {
+						return items.hasNext();
+					}
+
+					@Override
+					public T next() {
+						return items.next().value;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
 	}
 
 	@Override
@@ -246,9 +903,114 @@ public class OrderedList<T> extends CRDT implements Iterable<T> {
 	}
 
 	public List<T> toList() {
-		final ArrayList<T> list = new ArrayList<T>();
-		for (T val : this)
-			list.add(val);
+		final ArrayList<T> list = new ArrayList<T>(this.size);
+		for (Item<T> item = this.head; item != null; item = item.next) {
+			if (item.deleteTs == null)
+				list.add(item.value);
+		}
 		return list;
 	}
+
+	/**
+	 * Returns the values of the list in a new array of exactly the right size.
+	 */
+	public Object[] toArray() {
+		Object[] array = new Object[this.size];
+		copyInto(array, 0);
+		return array;
+	}
+
+	/**
+	 * Returns the values of the list in the given array if it is large enough (followed by <code>null</code> if it is
+	 * larger), or otherwise in a new array of the same type and exactly the right size, like
+	 * {@link java.util.Collection#toArray(Object[])}.
+	 */
+	@SuppressWarnings("unchecked")
+	public <A> A[] toArray(A[] array) {
+		if (array.length < this.size)
+			array = (A[]) Array.newInstance(array.getClass().getComponentType(), this.size);
+		copyInto(array, 0);
+		if (array.length > this.size)
+			array[this.size] = null;
+		return array;
+	}
+
+	/**
+	 * Copies the values of the list into the given array, starting at the given offset. Returns the number of values
+	 * copied, i.e. the size of the list.
+	 */
+	public int copyInto(Object[] array, int offset) {
+		if (offset < 0 || offset + this.size > array.length)
+			throw new IndexOutOfBoundsException("copyInto: " + this.size + " values do not fit at offset " + offset);
+		int i = offset;
+		for (Item<T> item = this.head; item != null; item = item.next) {
+			if (item.deleteTs == null)
+				array[i++] = item.value;
+		}
+		return this.size;
+	}
+
+	/**
+	 * Returns a spliterator over the values of the list that splits by index, using the item tree to find the first
+	 * item of each part in O(log n) time. It reports its exact size, as do the parts it splits into, so it works
+	 * well for parallel streams (see {@link #parallelStream()}). The list must not be modified while traversing.
+	 */
+	@Override
+	public Spliterator<T> spliterator() {
+		return new ItemSpliterator(0, this.size);
+	}
+
+	public Stream<T> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	public Stream<T> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	private class ItemSpliterator implements Spliterator<T> {
+		// Remaining range of indexes, and the item at index, if it has been looked up yet
+		private int index;
+		private final int end;
+		private Item<T> next = null;
+
+		ItemSpliterator(int index, int end) {
+			this.index = index;
+			this.end = end;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (this.index >= this.end)
+				return false;
+			if (this.next == null)
+				this.next = tree.byVisibleIndex(this.index);
+			T value = this.next.value;
+			this.next = ++this.index < this.end ? tree.nextVisible(this.next) : null;
+			action.accept(value);
+			return true;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			if (this.end - this.index < 2)
+				return null;
+			int mid = (this.index + this.end) >>> 1;
+			ItemSpliterator prefix = new ItemSpliterator(this.index, mid);
+			prefix.next = this.next;
+			this.index = mid;
+			this.next = null;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return this.end - this.index;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pool of page buffers shared by one or more {@link FilePageStore}s, holding at most a budget of bytes. When a page
+ * is needed and the pool is full, the buffer of the least recently used page is written back to its store if it has
+ * been changed, and reused.
+ */
+class PageCache {
+	static class Frame {
+		final ByteBuffer buffer;
+		int store, index;
+		boolean dirty;
+
+		Frame(int pageBytes) {
+			this.buffer = ByteBuffer.allocateDirect(pageBytes);
+		}
+	}
+
+	private final int pageBytes, maxFrames;
+	private int allocated = 0;
+	private long misses = 0;
+	private final List<FilePageStore> stores = new ArrayList<FilePageStore>();
+	// Keyed by store number in the high 32 bits and page number in the low 32 bits, in order of last use
+	private final LinkedHashMap<Long, Frame> frames = new LinkedHashMap<Long, Frame>(16, 0.75f, true);
+	private final ArrayDeque<Frame> free = new ArrayDeque<Frame>();
+
+	PageCache(long maxBytes, int pageBytes) {
+		if (maxBytes < 2L * pageBytes)
+			throw new IllegalArgumentException("Memory budget must hold at least two pages of " + pageBytes + " bytes: "
+					+ maxBytes);
+		this.pageBytes = pageBytes;
+		this.maxFrames = (int) Math.min(maxBytes / pageBytes, Integer.MAX_VALUE);
+	}
+
+	int register(FilePageStore store) {
+		stores.add(store);
+		return stores.size() - 1;
+	}
+
+	List<FilePageStore> stores() {
+		return stores;
+	}
+
+	/**
+	 * Returns the frame holding the given page, or <code>null</code> if it is not in the cache.
+	 */
+	Frame get(int store, int index) {
+		return frames.get(key(store, index));
+	}
+
+	/**
+	 * Returns a frame to hold the given page, which is not in the cache, evicting another page if necessary. The
+	 * caller fills the frame's buffer.
+	 */
+	Frame allocate(int store, int index) {
+		misses++;
+		Frame frame = free.poll();
+		if (frame == null && allocated < maxFrames) {
+			frame = new Frame(pageBytes);
+			allocated++;
+		} else if (frame == null) {
+			Iterator<Frame> eldest = frames.values().iterator();
+			frame = eldest.next();
+			eldest.remove();
+			stores.get(frame.store).evict(frame);
+		}
+		frame.store = store;
+		frame.index = index;
+		frame.dirty = false;
+		frames.put(key(store, index), frame);
+		return frame;
+	}
+
+	/**
+	 * Drops all pages of the given store from the cache, without writing them back.
+	 */
+	void release(int store) {
+		Iterator<Map.Entry<Long, Frame>> iterator = frames.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Frame frame = iterator.next().getValue();
+			if (frame.store == store) {
+				iterator.remove();
+				free.add(frame);
+			}
+		}
+	}
+
+	/**
+	 * Bytes of page buffers allocated, which is at most the budget.
+	 */
+	long bytes() {
+		return (long) allocated * pageBytes;
+	}
+
+	/**
+	 * Number of times a page had to be read because it was not in the cache.
+	 */
+	long misses() {
+		return misses;
+	}
+
+	private static Long key(int store, int index) {
+		return ((long) store << 32) | (index & 0xFFFFFFFFL);
+	}
+}
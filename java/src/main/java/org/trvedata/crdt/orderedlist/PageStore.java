@@ -0,0 +1,34 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size pages of memory, numbered from 0, in which an {@link ItemSlab} keeps its records and its ID index.
+ */
+interface PageStore {
+	/**
+	 * Size of each page in bytes.
+	 */
+	int pageBytes();
+
+	/**
+	 * Returns the page with the given number for reading, filled with zeros if it has not been written before. The
+	 * buffer may be reused for another page by the next call to page or writablePage, so it must not be kept.
+	 */
+	ByteBuffer page(int index);
+
+	/**
+	 * Returns the page with the given number for reading and writing, as {@link #page(int)}.
+	 */
+	ByteBuffer writablePage(int index);
+
+	/**
+	 * Discards the contents of every page, so that they read as zeros.
+	 */
+	void clear();
+
+	/**
+	 * Bytes of storage allocated to the pages.
+	 */
+	long bytes();
+}
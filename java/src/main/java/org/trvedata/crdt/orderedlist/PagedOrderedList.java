@@ -0,0 +1,56 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * An {@link OffHeapOrderedList} whose records and ID index live in files rather than direct memory, for lists too
+ * large to keep in memory. The files are divided into pages of PAGE_BYTES bytes, and only the most recently used
+ * pages, up to the memory budget given to the constructor, are kept in memory (see {@link PageCache}). Applying
+ * operations, inserting by ID or index and iterating behave as in OffHeapOrderedList; a lookup by index reads
+ * O(log n) records of the position tree, which may each be on a different page. Records are stored in the order items
+ * arrive, so for lists that grow at the end, like logs, iteration and appends touch pages mostly in sequence.
+ *
+ * The records are kept in the given file and the ID index in a file of the same name with ".index" appended. Both are
+ * scratch space, overwritten when the list is created and deleted when it is closed; the list cannot be reloaded from
+ * them. {@link #offHeapBytes()} counts the size of both files, and {@link #residentBytes()} the memory used to cache
+ * their pages.
+ */
+public class PagedOrderedList<T> extends OffHeapOrderedList<T> implements Closeable {
+	public static final int PAGE_BYTES = 1 << 16;
+
+	private final PageCache cache;
+
+	public PagedOrderedList(FixedSizeCodec<T> codec, File file, long memoryBudget) {
+		this(codec, file, new PageCache(memoryBudget, PAGE_BYTES));
+	}
+
+	private PagedOrderedList(FixedSizeCodec<T> codec, File file, PageCache cache) {
+		super(new ItemSlab<T>(codec, new FilePageStore(file, PAGE_BYTES, cache),
+				new FilePageStore(new File(file.getPath() + ".index"), PAGE_BYTES, cache)));
+		this.cache = cache;
+	}
+
+	/**
+	 * Bytes of memory used to cache pages, which is at most the memory budget.
+	 */
+	public long residentBytes() {
+		return cache.bytes();
+	}
+
+	/**
+	 * Number of times a page had to be read because it was not in memory.
+	 */
+	public long pageFaults() {
+		return cache.misses();
+	}
+
+	/**
+	 * Closes and deletes the list's files. The list must not be used afterwards.
+	 */
+	@Override
+	public void close() {
+		for (FilePageStore store : cache.stores())
+			store.close();
+	}
+}
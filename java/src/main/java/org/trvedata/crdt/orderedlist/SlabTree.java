@@ -0,0 +1,125 @@
+package org.trvedata.crdt.orderedlist;
+
+/**
+ * Balanced index by position over the items of an {@link OffHeapOrderedList}, including tombstones. Like the
+ * {@link ItemTree} of an OrderedList it is a treap, but its links and summaries are kept in the item records of an
+ * {@link ItemSlab}: each record holds the slots of its parent and children, and the number of non-deleted items in
+ * its subtree, so that finding the item at an index reads O(log n) records. Priorities are not stored, but derived
+ * from slot numbers by hashing.
+ */
+class SlabTree<T> {
+	private static final int NONE = ItemSlab.NONE;
+
+	private final ItemSlab<T> slab;
+	private int root = NONE;
+
+	SlabTree(ItemSlab<T> slab) {
+		this.slab = slab;
+	}
+
+	/**
+	 * Adds a newly added, non-deleted item to the index directly after the item in slot left, or at the start if left
+	 * is NONE.
+	 */
+	void insertAfter(int left, int slot) {
+		if (root == NONE) {
+			root = slot;
+			return;
+		}
+		int parent;
+		if (left == NONE) {
+			parent = leftmost(root);
+			slab.setLeft(parent, slot);
+		} else if (slab.right(left) == NONE) {
+			parent = left;
+			slab.setRight(parent, slot);
+		} else {
+			parent = leftmost(slab.right(left));
+			slab.setLeft(parent, slot);
+		}
+		slab.setParent(slot, parent);
+		addVisible(parent, 1);
+		while (slab.parent(slot) != NONE && priority(slot) > priority(slab.parent(slot)))
+			rotateUp(slot);
+	}
+
+	/**
+	 * Brings the counts up to date after the item in the given slot has been deleted.
+	 */
+	void deleted(int slot) {
+		addVisible(slot, -1);
+	}
+
+	/**
+	 * Returns the slot of the non-deleted item with the given index, or NONE if the index is out of range.
+	 */
+	int byVisibleIndex(int index) {
+		int node = root;
+		while (node != NONE) {
+			int leftVisible = slab.visible(slab.left(node));
+			if (index < leftVisible) {
+				node = slab.left(node);
+				continue;
+			}
+			index -= leftVisible;
+			if (!slab.isDeleted(node)) {
+				if (index == 0)
+					return node;
+				index--;
+			}
+			node = slab.right(node);
+		}
+		return NONE;
+	}
+
+	private int leftmost(int node) {
+		while (slab.left(node) != NONE)
+			node = slab.left(node);
+		return node;
+	}
+
+	private void addVisible(int node, int delta) {
+		for (; node != NONE; node = slab.parent(node))
+			slab.setVisible(node, slab.visible(node) + delta);
+	}
+
+	private void rotateUp(int node) {
+		int parent = slab.parent(node), grandparent = slab.parent(parent);
+		if (node == slab.left(parent)) {
+			int child = slab.right(node);
+			slab.setLeft(parent, child);
+			if (child != NONE)
+				slab.setParent(child, parent);
+			slab.setRight(node, parent);
+		} else {
+			int child = slab.left(node);
+			slab.setRight(parent, child);
+			if (child != NONE)
+				slab.setParent(child, parent);
+			slab.setLeft(node, parent);
+		}
+		slab.setParent(parent, node);
+		slab.setParent(node, grandparent);
+		if (grandparent == NONE)
+			root = node;
+		else if (slab.left(grandparent) == parent)
+			slab.setLeft(grandparent, node);
+		else
+			slab.setRight(grandparent, node);
+		summarise(parent);
+		summarise(node);
+	}
+
+	private void summarise(int node) {
+		slab.setVisible(node, slab.visible(slab.left(node)) + slab.visible(slab.right(node))
+				+ (slab.isDeleted(node) ? 0 : 1));
+	}
+
+	// The finalizer of MurmurHash3, which spreads consecutive slot numbers over the whole range of priorities
+	private static int priority(int slot) {
+		int h = slot;
+		h = (h ^ (h >>> 16)) * 0x85EBCA6B;
+		h = (h ^ (h >>> 13)) * 0xC2B2AE35;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,43 @@
+package org.trvedata.crdt.orderedlist;
+
+import org.trvedata.crdt.ItemID;
+
+/**
+ * One item of an {@link OrderedList} as stored in a snapshot: its ID, its deletion timestamp if it is a tombstone,
+ * and its value. Tombstones keep their value so that earlier versions can be read from a loaded list, but it may be
+ * <code>null</code> for items that were never visible to other peers.
+ */
+public class SnapshotItem<T> {
+	private final ItemID insertId;
+	private final ItemID deleteTs;
+	private final T value;
+
+	public SnapshotItem(ItemID insertId, ItemID deleteTs, T value) {
+		if (insertId == null)
+			throw new IllegalArgumentException("insertId must not be null");
+		this.insertId = insertId;
+		this.deleteTs = deleteTs;
+		this.value = value;
+	}
+
+	public ItemID getInsertId() {
+		return insertId;
+	}
+
+	public ItemID getDeleteTs() {
+		return deleteTs;
+	}
+
+	public T getValue() {
+		return value;
+	}
+
+	public boolean isDeleted() {
+		return deleteTs != null;
+	}
+
+	@Override
+	public String toString() {
+		return "SnapshotItem [insertId=" + insertId + ", deleteTs=" + deleteTs + ", value=" + value + "]";
+	}
+}
@@ -0,0 +1,159 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.orderedlist.OrderedList.Item;
+
+/**
+ * Index for finding text in an {@link OrderedList} of characters without scanning it. For every visible character,
+ * the index records the n characters starting there (fewer at the end of the text), keyed by the character's
+ * {@link ItemID}. It is updated as characters are inserted and deleted, locally or remotely: a change only affects
+ * the entries of the n-1 characters before it and its own, found through the list's item tree in O(n log size).
+ *
+ * Matches are returned as {@link ItemRange}s, which stay valid under concurrent edits elsewhere in the text, in no
+ * particular order. Their indexes are only computed when asked for.
+ */
+public class TextSearchIndex {
+	private final OrderedList<Character> list;
+	private final ItemTree<Character> tree;
+	private final int n;
+	private final HashMap<String, Set<ItemID>> startsByGram = new HashMap<String, Set<ItemID>>();
+
+	private final ItemObserver<Character> observer = new ItemObserver<Character>() {
+		@Override
+		public void itemInserted(Item<Character> item) {
+			update(item, true);
+		}
+
+		@Override
+		public void itemDeleted(Item<Character> item) {
+			update(item, false);
+		}
+
+		@Override
+		public void itemsLoaded() {
+			rebuild();
+		}
+	};
+
+	/**
+	 * Indexes the current content of the list, and keeps the index up to date until {@link #close()} is called.
+	 * Queries at least n characters long are answered from one index entry; shorter ones scan the index's keys.
+	 */
+	public TextSearchIndex(OrderedList<Character> list, int n) {
+		if (n < 1)
+			throw new IllegalArgumentException("n must be >= 1: " + n);
+		this.list = list;
+		this.tree = list.getTree();
+		this.n = n;
+		rebuild();
+		list.addItemObserver(this.observer);
+	}
+
+	/**
+	 * Stops updating the index.
+	 */
+	public void close() {
+		this.list.removeItemObserver(this.observer);
+	}
+
+	/**
+	 * Returns the ranges of the list's visible content that match the query.
+	 */
+	public List<ItemRange> find(String query) {
+		if (query.isEmpty())
+			throw new IllegalArgumentException("find: empty query");
+		Collection<ItemID> candidates;
+		if (query.length() >= this.n) {
+			Set<ItemID> starts = this.startsByGram.get(query.substring(0, this.n));
+			candidates = starts == null ? Collections.<ItemID>emptySet() : starts;
+		} else {
+			candidates = new ArrayList<ItemID>();
+			for (Map.Entry<String, Set<ItemID>> entry : this.startsByGram.entrySet()) {
+				if (entry.getKey().startsWith(query))
+					candidates.addAll(entry.getValue());
+			}
+		}
+
+		List<ItemRange> matches = new ArrayList<ItemRange>();
+		for (ItemID startId : candidates) {
+			Item<Character> item = this.list.itemById(startId), last = null;
+			int matched = 0;
+			while (item != null && matched < query.length() && item.value.charValue() == query.charAt(matched)) {
+				last = item;
+				if (++matched < query.length())
+					item = this.tree.nextVisible(item);
+			}
+			if (matched == query.length())
+				matches.add(new ItemRange(startId, last.insertId));
+		}
+		return matches;
+	}
+
+	private void rebuild() {
+		this.startsByGram.clear();
+		List<Item<Character>> items = new ArrayList<Item<Character>>(this.list.size());
+		for (Item<Character> item = this.list.firstVisibleItem(); item != null; item = this.tree.nextVisible(item))
+			items.add(item);
+		for (int i = 0; i < items.size(); i++)
+			add(gram(items, i), items.get(i).insertId);
+	}
+
+	/*
+	 * Updates the entries affected by an item becoming visible or being deleted. The list has already been updated,
+	 * so the window of visible items around it does not include the item itself.
+	 */
+	private void update(Item<Character> item, boolean inserted) {
+		List<Item<Character>> before = new ArrayList<Item<Character>>(this.n - 1);
+		for (Item<Character> prev = this.tree.prevVisible(item); prev != null && before.size() < this.n - 1; prev = this.tree.prevVisible(prev))
+			before.add(prev);
+		Collections.reverse(before);
+		List<Item<Character>> without = new ArrayList<Item<Character>>(before);
+		for (Item<Character> next = this.tree.nextVisible(item); next != null && without.size() < before.size() + this.n - 1; next = this.tree.nextVisible(next))
+			without.add(next);
+		List<Item<Character>> with = new ArrayList<Item<Character>>(without);
+		with.add(before.size(), item);
+
+		for (int i = 0; i < before.size(); i++) {
+			String oldGram = gram(inserted ? without : with, i), newGram = gram(inserted ? with : without, i);
+			if (!oldGram.equals(newGram)) {
+				remove(oldGram, before.get(i).insertId);
+				add(newGram, before.get(i).insertId);
+			}
+		}
+		if (inserted)
+			add(gram(with, before.size()), item.insertId);
+		else
+			remove(gram(with, before.size()), item.insertId);
+	}
+
+	private String gram(List<Item<Character>> items, int start) {
+		StringBuilder gram = new StringBuilder(this.n);
+		for (int i = start; i < items.size() && i < start + this.n; i++)
+			gram.append(items.get(i).value.charValue());
+		return gram.toString();
+	}
+
+	private void add(String gram, ItemID startId) {
+		Set<ItemID> starts = this.startsByGram.get(gram);
+		if (starts == null) {
+			starts = new HashSet<ItemID>();
+			this.startsByGram.put(gram, starts);
+		}
+		starts.add(startId);
+	}
+
+	private void remove(String gram, ItemID startId) {
+		Set<ItemID> starts = this.startsByGram.get(gram);
+		if (starts != null && starts.remove(startId) && starts.isEmpty())
+			this.startsByGram.remove(gram);
+	}
+}
@@ -0,0 +1,39 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.io.Serializable;
+
+/**
+ * Sent from a thin client to its {@link ThinClientHost}: a change the user made, as a {@link ListDelta} by index
+ * into the content as of the update numbered baseSeq (0 if the client has not received any update yet). Edits are
+ * numbered consecutively per client, starting from 1.
+ */
+public class ThinClientEdit<T> implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final long seq;
+	private final long baseSeq;
+	private final ListDelta<T> delta;
+
+	public ThinClientEdit(long seq, long baseSeq, ListDelta<T> delta) {
+		this.seq = seq;
+		this.baseSeq = baseSeq;
+		this.delta = delta;
+	}
+
+	public long getSeq() {
+		return seq;
+	}
+
+	public long getBaseSeq() {
+		return baseSeq;
+	}
+
+	public ListDelta<T> getDelta() {
+		return delta;
+	}
+
+	@Override
+	public String toString() {
+		return "ThinClientEdit [seq=" + seq + ", baseSeq=" + baseSeq + ", delta=" + delta + "]";
+	}
+}
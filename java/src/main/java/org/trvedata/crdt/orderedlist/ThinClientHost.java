@@ -0,0 +1,46 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Serves an {@link OrderedList} to thin clients, which keep only the visible content as a plain list and exchange
+ * index-based {@link ListDelta}s with the host, rather than running a peer with tombstones and vector clocks of their
+ * own. The host's peer owns the list: it exchanges messages with other peers as usual, and the clients' edits become
+ * its own local operations. A client's memory and CPU use therefore depend only on the size of the content, not on
+ * its history.
+ *
+ * Since thin clients may have seen items that the host's peer has not sent yet, the list no longer discards items
+ * that are inserted and deleted within the same message; they are sent as tombstones instead.
+ */
+public class ThinClientHost<T> {
+	private final OrderedList<T> list;
+	private final List<ThinClientSession<T>> sessions = new ArrayList<ThinClientSession<T>>();
+
+	public ThinClientHost(OrderedList<T> list) {
+		this.list = list;
+		list.setDiscardUnsentItems(false);
+	}
+
+	public OrderedList<T> getOrderedList() {
+		return list;
+	}
+
+	/**
+	 * Starts serving a new client. Its first update contains the entire visible content of the list.
+	 */
+	public ThinClientSession<T> openSession() {
+		ThinClientSession<T> session = new ThinClientSession<T>(this.list);
+		this.sessions.add(session);
+		return session;
+	}
+
+	public void closeSession(ThinClientSession<T> session) {
+		this.sessions.remove(session);
+	}
+
+	public List<ThinClientSession<T>> getSessions() {
+		return Collections.unmodifiableList(sessions);
+	}
+}
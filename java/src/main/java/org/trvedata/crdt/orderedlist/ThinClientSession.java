@@ -0,0 +1,157 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.VersionVector;
+
+/**
+ * The host's side of the connection to one thin client (see {@link ThinClientHost}). The session remembers the
+ * version of the list that each update it has sent was computed at, so that the next update is the diff since the
+ * last one, and so that the indexes in a client's edit can be interpreted against the content the client saw.
+ *
+ * A client may have only one edit outstanding at a time: it must wait for an update that acknowledges its edit
+ * before sending the next one, and base the next one on that update or a later one. Until then, it can show its
+ * edit on top of the content it has, and compose further changes locally. Its content after the acknowledging
+ * update is authoritative.
+ *
+ * Clients should report each update they have applied with {@link #acknowledgeUpdate(long)}, since they will not
+ * base edits on earlier ones. This lets the session forget the versions of earlier updates, which would otherwise
+ * accumulate for as long as the client does not edit.
+ */
+public class ThinClientSession<T> {
+	private final OrderedList<T> list;
+	private final TreeMap<Long, VersionVector> sentVersions = new TreeMap<Long, VersionVector>();
+	private long updateSeq = 0, editSeq = 0, editAckedInSeq = 0, appliedSeq = 0;
+	private boolean editUnacked = false;
+
+	ThinClientSession(OrderedList<T> list) {
+		this.list = list;
+		this.sentVersions.put(0L, new VersionVector());
+	}
+
+	/**
+	 * Returns an update with the changes to the list since the previous update, or <code>null</code> if there are none
+	 * and there is no edit to acknowledge. The first update contains the entire visible content.
+	 */
+	public ThinClientUpdate<T> makeUpdate() {
+		VersionVector lastSent = this.sentVersions.lastEntry().getValue();
+		VersionVector current = this.list.contentVersion();
+		if (!this.editUnacked && current.equals(lastSent))
+			return null;
+		ListDelta<T> delta = this.list.diff(lastSent, current);
+		this.updateSeq++;
+		this.sentVersions.put(this.updateSeq, current);
+		if (this.editUnacked) {
+			this.editUnacked = false;
+			this.editAckedInSeq = this.updateSeq;
+		}
+		return new ThinClientUpdate<T>(this.updateSeq, this.editSeq, delta);
+	}
+
+	/**
+	 * Records that the client has applied the update with the given number, and therefore bases its future edits on
+	 * that update or a later one. Acknowledgements may arrive late or out of order; older ones are ignored.
+	 */
+	public void acknowledgeUpdate(long seq) {
+		if (seq > this.updateSeq)
+			throw new IllegalArgumentException("acknowledgeUpdate: update " + seq + " has not been sent");
+		if (seq <= this.appliedSeq)
+			return;
+		this.appliedSeq = seq;
+		this.sentVersions.headMap(seq).clear();
+	}
+
+	/*
+	 * Number of sent updates whose version the session still keeps.
+	 */
+	int sentVersionCount() {
+		return this.sentVersions.size();
+	}
+
+	/**
+	 * Applies an edit from the client to the list as local operations of the host's peer. If the list has not
+	 * changed since the update the edit is based on, its indexes are current and it turns directly into
+	 * {@link OrderedList#insert(int, Object)} and {@link OrderedList#remove(int)} calls. Otherwise its indexes are
+	 * resolved to the items the client saw, and the values are inserted before the same items and the same items
+	 * deleted, regardless of concurrent changes elsewhere in the list.
+	 */
+	public void applyEdit(ThinClientEdit<T> edit) {
+		if (edit.getSeq() != this.editSeq + 1)
+			throw new IllegalArgumentException("applyEdit: expected edit " + (this.editSeq + 1) + ", got " + edit.getSeq());
+		if (this.editUnacked || edit.getBaseSeq() < this.editAckedInSeq)
+			throw new IllegalStateException("applyEdit: edit " + edit.getSeq() + " is not based on the acknowledgement of the previous edit");
+		VersionVector base = this.sentVersions.get(edit.getBaseSeq());
+		if (base == null)
+			throw new IllegalArgumentException("applyEdit: unknown base update " + edit.getBaseSeq());
+		acknowledgeUpdate(edit.getBaseSeq());
+
+		if (base.equals(this.list.contentVersion()))
+			applyByIndex(edit.getDelta());
+		else
+			applyByIds(base, edit.getDelta());
+		this.editSeq = edit.getSeq();
+		this.editUnacked = true;
+	}
+
+	private void applyByIndex(ListDelta<T> delta) {
+		// Check the whole edit before changing the list, so that an invalid edit is not applied (and sent) in part
+		int covered = 0;
+		for (ListDelta.Run<T> run : delta.getRuns()) {
+			if (run.getKind() != ListDelta.Kind.INSERT)
+				covered += run.getLength();
+		}
+		if (covered > this.list.size())
+			throw new IllegalArgumentException("applyEdit: edit goes beyond end of list");
+
+		int index = 0;
+		for (ListDelta.Run<T> run : delta.getRuns()) {
+			switch (run.getKind()) {
+			case RETAIN:
+				index += run.getLength();
+				break;
+			case INSERT:
+				for (T value : run.getValues())
+					this.list.insert(index++, value);
+				break;
+			case DELETE:
+				for (int i = 0; i < run.getLength(); i++)
+					this.list.remove(index);
+				break;
+			}
+		}
+	}
+
+	private void applyByIds(VersionVector base, ListDelta<T> delta) {
+		// Resolve all indexes before changing the list, which would invalidate the iterator
+		Iterator<ItemID> ids = this.list.idsAt(base).iterator();
+		ItemID cursor = ids.hasNext() ? ids.next() : null;
+		List<ItemID> deletions = new ArrayList<ItemID>();
+		List<ItemID> insertCursors = new ArrayList<ItemID>();
+		List<T> insertValues = new ArrayList<T>();
+		for (ListDelta.Run<T> run : delta.getRuns()) {
+			if (run.getKind() == ListDelta.Kind.INSERT) {
+				for (T value : run.getValues()) {
+					insertCursors.add(cursor);
+					insertValues.add(value);
+				}
+				continue;
+			}
+			for (int i = 0; i < run.getLength(); i++) {
+				if (cursor == null)
+					throw new IllegalArgumentException("applyEdit: edit goes beyond end of list");
+				if (run.getKind() == ListDelta.Kind.DELETE)
+					deletions.add(cursor);
+				cursor = ids.hasNext() ? ids.next() : null;
+			}
+		}
+
+		for (ItemID id : deletions)
+			this.list.removeId(id);
+		for (int i = 0; i < insertValues.size(); i++)
+			this.list.insertBeforeId(insertCursors.get(i), insertValues.get(i));
+	}
+}
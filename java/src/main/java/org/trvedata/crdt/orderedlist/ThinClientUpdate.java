@@ -0,0 +1,41 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.io.Serializable;
+
+/**
+ * Sent from a {@link ThinClientHost} to a thin client: the changes to the visible content of the list since the
+ * previous update, as a {@link ListDelta} by index. Updates are numbered consecutively per client, starting from 1,
+ * and the client refers to the number of the last update it has applied when it sends an edit. ackedEditSeq is the
+ * number of the client's latest edit that the host had applied when making the update; this update's delta already
+ * includes that edit and all earlier ones, so the client must not apply them again.
+ */
+public class ThinClientUpdate<T> implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final long seq;
+	private final long ackedEditSeq;
+	private final ListDelta<T> delta;
+
+	public ThinClientUpdate(long seq, long ackedEditSeq, ListDelta<T> delta) {
+		this.seq = seq;
+		this.ackedEditSeq = ackedEditSeq;
+		this.delta = delta;
+	}
+
+	public long getSeq() {
+		return seq;
+	}
+
+	public long getAckedEditSeq() {
+		return ackedEditSeq;
+	}
+
+	public ListDelta<T> getDelta() {
+		return delta;
+	}
+
+	@Override
+	public String toString() {
+		return "ThinClientUpdate [seq=" + seq + ", ackedEditSeq=" + ackedEditSeq + ", delta=" + delta + "]";
+	}
+}
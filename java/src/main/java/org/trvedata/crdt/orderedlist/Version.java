@@ -0,0 +1,77 @@
+package org.trvedata.crdt.orderedlist;
+
+import java.util.Collection;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.PeerID;
+import org.trvedata.crdt.VersionVector;
+import org.trvedata.crdt.orderedlist.OrderedList.Item;
+
+/**
+ * An earlier state of an {@link OrderedList}, given either by a version vector or by a Lamport timestamp bound. An
+ * item is visible in a version if the version contains its insertion but not its deletion. To skip subtrees of the
+ * {@link ItemTree}, a version also has a ceiling, above which it contains no timestamps, and a floor, at or below which
+ * it contains the timestamps of all peers that have ever changed the list.
+ */
+abstract class Version {
+	private final long ceiling, floor;
+
+	private Version(long ceiling, long floor) {
+		this.ceiling = ceiling;
+		this.floor = floor;
+	}
+
+	abstract boolean contains(ItemID id);
+
+	/**
+	 * An item is visible if this version contains its insertion but none of the (possibly concurrent) deletions.
+	 */
+	boolean isVisible(Item<?> item) {
+		if (!contains(item.insertId))
+			return false;
+		if (item.deleteTs == null)
+			return true;
+		if (contains(item.deleteTs))
+			return false;
+		if (item.laterDeleteTs != null) {
+			for (ItemID deleteTs : item.laterDeleteTs)
+				if (contains(deleteTs))
+					return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns false if no item in the subtree rooted at node can be visible: either none of them had been inserted
+	 * in this version, or all of them had been deleted. Since an item's deleteTs is its earliest deletion, and a
+	 * version contains all timestamps up to its floor, an item whose deleteTs is at or below the floor is deleted in
+	 * this version whichever other deletions it has.
+	 */
+	boolean mayContain(Item<?> node) {
+		return node.minInsertTs <= ceiling && node.maxDeleteTs > floor;
+	}
+
+	static Version of(final VersionVector vector, Collection<PeerID> authors) {
+		long ceiling = 0, floor = authors.isEmpty() ? 0 : Long.MAX_VALUE;
+		for (long maxTs : vector.entries().values())
+			ceiling = Math.max(ceiling, maxTs);
+		for (PeerID author : authors)
+			floor = Math.min(floor, vector.get(author));
+		return new Version(ceiling, floor) {
+			@Override
+			boolean contains(ItemID id) {
+				return vector.contains(id);
+			}
+		};
+	}
+
+	static Version ofLamport(final long maxTs) {
+		// Long.MAX_VALUE stands for "not deleted" in the tree's summaries, so the floor must stay below it
+		return new Version(maxTs, Math.min(maxTs, Long.MAX_VALUE - 1)) {
+			@Override
+			boolean contains(ItemID id) {
+				return id.getLogicalTs() <= maxTs;
+			}
+		};
+	}
+}
@@ -0,0 +1,97 @@
+package org.trvedata.crdt.trace;
+
+import java.util.List;
+
+/**
+ * Measurements from replaying a trace with {@link TraceReplayer}.
+ */
+public class ReplayResult {
+	private final long localEdits;
+	private final long remoteOperations;
+	private final long messagesReceived;
+	private final long elapsedNanos;
+	private final long allocatedBytes;
+	private final long retainedBytes;
+	private final List<Object> finalContents;
+
+	ReplayResult(long localEdits, long remoteOperations, long messagesReceived, long elapsedNanos,
+			long allocatedBytes, long retainedBytes, List<Object> finalContents) {
+		this.localEdits = localEdits;
+		this.remoteOperations = remoteOperations;
+		this.messagesReceived = messagesReceived;
+		this.elapsedNanos = elapsedNanos;
+		this.allocatedBytes = allocatedBytes;
+		this.retainedBytes = retainedBytes;
+		this.finalContents = finalContents;
+	}
+
+	public long getLocalEdits() {
+		return localEdits;
+	}
+
+	/**
+	 * Number of operations from received messages that were applied.
+	 */
+	public long getRemoteOperations() {
+		return remoteOperations;
+	}
+
+	public long getMessagesReceived() {
+		return messagesReceived;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Local edits and remote operations per second.
+	 */
+	public double getOperationsPerSecond() {
+		return elapsedNanos == 0 ? 0 : (localEdits + remoteOperations) * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * Bytes allocated by the replaying thread, or -1 if the JVM cannot measure it.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Bytes allocated per second, or -1 if the JVM cannot measure allocation.
+	 */
+	public double getAllocationRate() {
+		return allocatedBytes < 0 || elapsedNanos == 0 ? -1 : allocatedBytes * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * Approximate heap retained by the peer after the replay, measured after a garbage collection.
+	 */
+	public long getRetainedBytes() {
+		return retainedBytes;
+	}
+
+	/**
+	 * Number of items in the list at the end of the replay.
+	 */
+	public int getFinalSize() {
+		return finalContents.size();
+	}
+
+	/**
+	 * The values in the replayed list at the end of the trace.
+	 */
+	public List<Object> getFinalContents() {
+		return finalContents;
+	}
+
+	@Override
+	public String toString() {
+		return "ReplayResult [localEdits=" + localEdits + ", remoteOperations=" + remoteOperations
+				+ ", messagesReceived=" + messagesReceived + ", elapsedMillis=" + elapsedNanos / 1000000
+				+ ", opsPerSecond=" + Math.round(getOperationsPerSecond()) + ", allocationRateMBps="
+				+ Math.round(getAllocationRate() / (1024 * 1024)) + ", retainedBytes=" + retainedBytes
+				+ ", finalSize=" + getFinalSize() + "]";
+	}
+}
@@ -0,0 +1,262 @@
+package org.trvedata.crdt.trace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.PeerID;
+import org.trvedata.crdt.PeerIndex;
+import org.trvedata.crdt.PeerVClockEntry;
+import org.trvedata.crdt.RemoteClockUpdate;
+import org.trvedata.crdt.operation.ChangingOperation;
+import org.trvedata.crdt.operation.Operation;
+import org.trvedata.crdt.orderedlist.DeleteOp;
+import org.trvedata.crdt.orderedlist.InsertOp;
+import org.trvedata.crdt.orderedlist.InsertRunOp;
+
+/*
+ * Binary encoding of the values, IDs and operations in a trace file. Integers are variable-length (7 bits per byte),
+ * and peer IDs are written in full only the first time they appear, and afterwards as an index into the list of peer
+ * IDs seen so far. Operations of the ordered list are encoded field by field; any other operation falls back to Java
+ * serialization.
+ */
+class TraceCodec {
+	static final int MAGIC = 0x54525654; // "TRVT"
+	static final int VERSION = 1;
+
+	static final int EVENT_INSERT = 1;
+	static final int EVENT_REMOVE = 2;
+	static final int EVENT_INSERT_BEFORE_ID = 3;
+	static final int EVENT_REMOVE_BEFORE_ID = 4;
+	static final int EVENT_MAKE_MESSAGE = 5;
+	static final int EVENT_RECEIVE_MESSAGE = 6;
+
+	private static final int OP_INSERT = 1;
+	private static final int OP_INSERT_RUN = 2;
+	private static final int OP_DELETE = 3;
+	private static final int OP_CLOCK_UPDATE = 4;
+	private static final int OP_SERIALIZED = 5;
+
+	private static final int VALUE_NULL = 0;
+	private static final int VALUE_CHAR = 1;
+	private static final int VALUE_STRING = 2;
+	private static final int VALUE_SERIALIZED = 3;
+
+	private final Map<PeerID, Integer> indexByPeerId = new HashMap<PeerID, Integer>();
+	private final List<PeerID> peerIds = new ArrayList<PeerID>();
+
+	static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		if (value < 0)
+			throw new IllegalArgumentException("Cannot encode negative value: " + value);
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed variable-length integer");
+	}
+
+	// Peer IDs are encoded as 0 for null, 1 followed by the ID for a new peer, or index + 2 for a known peer.
+	void writePeerId(DataOutputStream out, PeerID peerId) throws IOException {
+		if (peerId == null) {
+			writeVarLong(out, 0);
+			return;
+		}
+		Integer index = this.indexByPeerId.get(peerId);
+		if (index != null) {
+			writeVarLong(out, index + 2);
+		} else {
+			writeVarLong(out, 1);
+			out.writeUTF(peerId.getPeerID());
+			this.indexByPeerId.put(peerId, this.peerIds.size());
+			this.peerIds.add(peerId);
+		}
+	}
+
+	PeerID readPeerId(DataInputStream in) throws IOException {
+		long code = readVarLong(in);
+		if (code == 0)
+			return null;
+		if (code == 1) {
+			PeerID peerId = new PeerID(in.readUTF());
+			this.peerIds.add(peerId);
+			return peerId;
+		}
+		if (code - 2 >= this.peerIds.size())
+			throw new IOException("Unknown peer index in trace: " + (code - 2));
+		return this.peerIds.get((int) (code - 2));
+	}
+
+	void writeItemId(DataOutputStream out, ItemID id) throws IOException {
+		writePeerId(out, id == null ? null : id.getPeerId());
+		if (id != null)
+			writeVarLong(out, id.getLogicalTs());
+	}
+
+	ItemID readItemId(DataInputStream in) throws IOException {
+		PeerID peerId = readPeerId(in);
+		return peerId == null ? null : new ItemID(readVarLong(in), peerId);
+	}
+
+	void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			writeVarLong(out, VALUE_NULL);
+		} else if (value instanceof Character) {
+			writeVarLong(out, VALUE_CHAR);
+			writeVarLong(out, (Character) value);
+		} else if (value instanceof String) {
+			writeVarLong(out, VALUE_STRING);
+			out.writeUTF((String) value);
+		} else {
+			writeVarLong(out, VALUE_SERIALIZED);
+			writeSerialized(out, value);
+		}
+	}
+
+	Object readValue(DataInputStream in) throws IOException {
+		int tag = (int) readVarLong(in);
+		switch (tag) {
+		case VALUE_NULL:
+			return null;
+		case VALUE_CHAR:
+			return (char) readVarLong(in);
+		case VALUE_STRING:
+			return in.readUTF();
+		case VALUE_SERIALIZED:
+			return readSerialized(in);
+		default:
+			throw new IOException("Unknown value type in trace: " + tag);
+		}
+	}
+
+	void writeOperation(DataOutputStream out, Operation operation) throws IOException {
+		if (operation instanceof InsertOp) {
+			InsertOp<?> insertOp = (InsertOp<?>) operation;
+			writeVarLong(out, OP_INSERT);
+			writeItemId(out, insertOp.getTarget());
+			writeItemId(out, insertOp.getReferenceId());
+			writeItemId(out, insertOp.getInsertId());
+			writeItemId(out, insertOp.getDeleteTs());
+			writeValue(out, insertOp.getValue());
+		} else if (operation instanceof InsertRunOp) {
+			InsertRunOp<?> runOp = (InsertRunOp<?>) operation;
+			writeVarLong(out, OP_INSERT_RUN);
+			writeItemId(out, runOp.getTarget());
+			writeItemId(out, runOp.getReferenceId());
+			writeItemId(out, runOp.getFirstId());
+			writeVarLong(out, runOp.size());
+			for (Object value : runOp.getValues())
+				writeValue(out, value);
+		} else if (operation instanceof DeleteOp) {
+			DeleteOp deleteOp = (DeleteOp) operation;
+			writeVarLong(out, OP_DELETE);
+			writeItemId(out, deleteOp.getTarget());
+			writeItemId(out, deleteOp.getDeleteId());
+			writeItemId(out, deleteOp.getDeleteTs());
+		} else if (operation instanceof RemoteClockUpdate) {
+			RemoteClockUpdate clockUpdate = (RemoteClockUpdate) operation;
+			writeVarLong(out, OP_CLOCK_UPDATE);
+			writeVarLong(out, clockUpdate.getNextTimestamp());
+			writeVarLong(out, clockUpdate.entries().size());
+			for (PeerVClockEntry entry : clockUpdate.entries()) {
+				writePeerId(out, entry.getPeerId());
+				writeVarLong(out, entry.getPeerIndex().getIdx());
+				writeVarLong(out, entry.getMsgCount());
+			}
+		} else {
+			writeVarLong(out, OP_SERIALIZED);
+			writeSerialized(out, operation);
+		}
+	}
+
+	Operation readOperation(DataInputStream in) throws IOException {
+		int tag = (int) readVarLong(in);
+		ChangingOperation changingOp;
+		switch (tag) {
+		case OP_INSERT: {
+			ItemID target = readItemId(in);
+			ItemID referenceId = readItemId(in);
+			ItemID insertId = readItemId(in);
+			ItemID deleteTs = readItemId(in);
+			changingOp = new InsertOp<Object>(referenceId, insertId, readValue(in), deleteTs);
+			changingOp.setTarget(target);
+			return changingOp;
+		}
+		case OP_INSERT_RUN: {
+			ItemID target = readItemId(in);
+			ItemID referenceId = readItemId(in);
+			ItemID firstId = readItemId(in);
+			int size = (int) readVarLong(in);
+			List<Object> values = new ArrayList<Object>(size);
+			for (int i = 0; i < size; i++)
+				values.add(readValue(in));
+			changingOp = new InsertRunOp<Object>(referenceId, firstId, values);
+			changingOp.setTarget(target);
+			return changingOp;
+		}
+		case OP_DELETE: {
+			ItemID target = readItemId(in);
+			ItemID deleteId = readItemId(in);
+			changingOp = new DeleteOp(deleteId, readItemId(in));
+			changingOp.setTarget(target);
+			return changingOp;
+		}
+		case OP_CLOCK_UPDATE: {
+			long nextTimestamp = readVarLong(in);
+			int size = (int) readVarLong(in);
+			List<PeerVClockEntry> entries = new ArrayList<PeerVClockEntry>(size);
+			for (int i = 0; i < size; i++) {
+				PeerID peerId = readPeerId(in);
+				PeerIndex peerIndex = new PeerIndex(readVarLong(in));
+				entries.add(new PeerVClockEntry(peerId, peerIndex, readVarLong(in)));
+			}
+			return new RemoteClockUpdate(nextTimestamp, entries);
+		}
+		case OP_SERIALIZED:
+			return (Operation) readSerialized(in);
+		default:
+			throw new IOException("Unknown operation type in trace: " + tag);
+		}
+	}
+
+	private static void writeSerialized(DataOutputStream out, Object value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+		objectOut.writeObject(value);
+		objectOut.close();
+		writeVarLong(out, bytes.size());
+		bytes.writeTo(out);
+	}
+
+	private static Object readSerialized(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[(int) readVarLong(in)];
+		in.readFully(bytes);
+		ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return objectIn.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Cannot deserialize value in trace", e);
+		} finally {
+			objectIn.close();
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package org.trvedata.crdt.trace;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.Message;
+
+/*
+ * One event read from a trace file. Which fields are set depends on the type.
+ */
+class TraceEvent {
+	final int type;
+	final long delayMicros;
+	int index;
+	Object value;
+	ItemID cursorId;
+	Message message;
+
+	TraceEvent(int type, long delayMicros) {
+		this.type = type;
+		this.delayMicros = delayMicros;
+	}
+}
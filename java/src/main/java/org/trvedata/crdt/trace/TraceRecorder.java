@@ -0,0 +1,112 @@
+package org.trvedata.crdt.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.Message;
+import org.trvedata.crdt.Peer;
+import org.trvedata.crdt.operation.Operation;
+import org.trvedata.crdt.orderedlist.OrderedList;
+
+/**
+ * Records an editing session of a peer whose root object is an {@link OrderedList}, so that it can be replayed by
+ * {@link TraceReplayer} for benchmarking. The application performs its edits and exchanges messages through the
+ * recorder, which passes them on to the peer and appends them, with the time since the start of the recording, to a
+ * compact binary trace.
+ *
+ * A trace contains the local edits, the points at which the peer made messages, and the messages it received, but
+ * not the messages it sent: replaying the local edits on a peer with the same ID regenerates them.
+ */
+public class TraceRecorder<T> implements Closeable {
+	private final Peer peer;
+	private final OrderedList<T> list;
+	private final DataOutputStream out;
+	private final TraceCodec codec = new TraceCodec();
+	private final long startNanos;
+	private long lastEventNanos;
+
+	@SuppressWarnings("unchecked")
+	public TraceRecorder(Peer peer, OutputStream out) throws IOException {
+		if (!(peer.getCRDT() instanceof OrderedList))
+			throw new IllegalArgumentException("Can only record peers whose root object is an OrderedList: " + peer.getCRDT());
+		this.peer = peer;
+		this.list = (OrderedList<T>) peer.getCRDT();
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.out.writeInt(TraceCodec.MAGIC);
+		this.out.writeInt(TraceCodec.VERSION);
+		this.out.writeUTF(peer.getPeerId().getPeerID());
+		this.startNanos = System.nanoTime();
+		this.lastEventNanos = this.startNanos;
+	}
+
+	private void writeEvent(int eventType) throws IOException {
+		long now = System.nanoTime();
+		this.out.writeByte(eventType);
+		TraceCodec.writeVarLong(this.out, Math.max(0, now - this.lastEventNanos) / 1000);
+		this.lastEventNanos = now;
+	}
+
+	public TraceRecorder<T> insert(int index, T value) throws IOException {
+		writeEvent(TraceCodec.EVENT_INSERT);
+		TraceCodec.writeVarLong(this.out, index);
+		this.codec.writeValue(this.out, value);
+		this.list.insert(index, value);
+		return this;
+	}
+
+	public TraceRecorder<T> remove(int index) throws IOException {
+		writeEvent(TraceCodec.EVENT_REMOVE);
+		TraceCodec.writeVarLong(this.out, index);
+		this.list.remove(index);
+		return this;
+	}
+
+	public ItemID insertBeforeId(ItemID cursorId, T value) throws IOException {
+		writeEvent(TraceCodec.EVENT_INSERT_BEFORE_ID);
+		this.codec.writeItemId(this.out, cursorId);
+		this.codec.writeValue(this.out, value);
+		return this.list.insertBeforeId(cursorId, value);
+	}
+
+	public ItemID removeBeforeId(ItemID cursorId, int numItems) throws IOException {
+		writeEvent(TraceCodec.EVENT_REMOVE_BEFORE_ID);
+		this.codec.writeItemId(this.out, cursorId);
+		TraceCodec.writeVarLong(this.out, numItems);
+		return this.list.removeBeforeId(cursorId, numItems);
+	}
+
+	public Message makeMessage() throws IOException {
+		writeEvent(TraceCodec.EVENT_MAKE_MESSAGE);
+		return this.peer.makeMessage();
+	}
+
+	/**
+	 * Records a message received from another peer, and passes it to the peer. The message is recorded before the
+	 * peer sees it, since processing may modify its operations.
+	 */
+	public boolean processMessage(Message message) throws IOException {
+		writeEvent(TraceCodec.EVENT_RECEIVE_MESSAGE);
+		this.codec.writePeerId(this.out, message.getOriginPeerId());
+		TraceCodec.writeVarLong(this.out, message.getMsgCounter());
+		TraceCodec.writeVarLong(this.out, message.getOperations().size());
+		for (Operation operation : message.getOperations())
+			this.codec.writeOperation(this.out, operation);
+		return this.peer.processMessage(message);
+	}
+
+	/**
+	 * Time since the recording started, in milliseconds.
+	 */
+	public long elapsedMillis() {
+		return (System.nanoTime() - this.startNanos) / 1000000;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.out.close();
+	}
+}
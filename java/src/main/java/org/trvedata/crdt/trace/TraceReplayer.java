@@ -0,0 +1,182 @@
+package org.trvedata.crdt.trace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.trvedata.crdt.Message;
+import org.trvedata.crdt.Peer;
+import org.trvedata.crdt.PeerID;
+import org.trvedata.crdt.operation.Operation;
+import org.trvedata.crdt.operation.OperationList;
+import org.trvedata.crdt.orderedlist.OrderedList;
+
+/**
+ * Replays a trace written by {@link TraceRecorder} into a fresh peer as fast as possible, and measures how long it
+ * takes, how much it allocates and how much memory the peer retains afterwards. The trace is read into memory when
+ * the replayer is created, and decoded again before each replay starts, so that neither reading nor decoding is
+ * measured. Decoding it afresh gives each replay its own message objects, since processing a message modifies its
+ * operations.
+ */
+public class TraceReplayer {
+	private final PeerID peerId;
+	private final byte[] trace;
+	private final int eventsOffset;
+	private final int eventCount;
+
+	public TraceReplayer(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0)
+			bytes.write(buffer, 0, n);
+		this.trace = bytes.toByteArray();
+		DataInputStream data = new DataInputStream(new ByteArrayInputStream(this.trace));
+		if (data.readInt() != TraceCodec.MAGIC)
+			throw new IOException("Not a trace file");
+		int version = data.readInt();
+		if (version != TraceCodec.VERSION)
+			throw new IOException("Unsupported trace version: " + version);
+		this.peerId = new PeerID(data.readUTF());
+		this.eventsOffset = this.trace.length - data.available();
+		this.eventCount = readEvents().size();
+	}
+
+	private List<TraceEvent> readEvents() throws IOException {
+		ByteArrayInputStream bytes = new ByteArrayInputStream(this.trace);
+		bytes.skip(this.eventsOffset);
+		return readEvents(new DataInputStream(bytes));
+	}
+
+	private static List<TraceEvent> readEvents(DataInputStream in) throws IOException {
+		TraceCodec codec = new TraceCodec();
+		List<TraceEvent> events = new ArrayList<TraceEvent>();
+		while (true) {
+			int type;
+			try {
+				type = in.readUnsignedByte();
+			} catch (EOFException e) {
+				return events;
+			}
+			TraceEvent event = new TraceEvent(type, TraceCodec.readVarLong(in));
+			switch (type) {
+			case TraceCodec.EVENT_INSERT:
+				event.index = (int) TraceCodec.readVarLong(in);
+				event.value = codec.readValue(in);
+				break;
+			case TraceCodec.EVENT_REMOVE:
+				event.index = (int) TraceCodec.readVarLong(in);
+				break;
+			case TraceCodec.EVENT_INSERT_BEFORE_ID:
+				event.cursorId = codec.readItemId(in);
+				event.value = codec.readValue(in);
+				break;
+			case TraceCodec.EVENT_REMOVE_BEFORE_ID:
+				event.cursorId = codec.readItemId(in);
+				event.index = (int) TraceCodec.readVarLong(in);
+				break;
+			case TraceCodec.EVENT_MAKE_MESSAGE:
+				break;
+			case TraceCodec.EVENT_RECEIVE_MESSAGE: {
+				PeerID originPeerId = codec.readPeerId(in);
+				long msgCounter = TraceCodec.readVarLong(in);
+				int size = (int) TraceCodec.readVarLong(in);
+				Deque<Operation> operations = new ArrayDeque<Operation>(size);
+				for (int i = 0; i < size; i++)
+					operations.addLast(codec.readOperation(in));
+				event.message = new Message(originPeerId, msgCounter, OperationList.create(operations));
+				break;
+			}
+			default:
+				throw new IOException("Unknown event type in trace: " + type);
+			}
+			events.add(event);
+		}
+	}
+
+	public PeerID getPeerId() {
+		return peerId;
+	}
+
+	public int eventCount() {
+		return eventCount;
+	}
+
+	/**
+	 * Replays the trace into a new peer with the recorded peer ID, and returns the measurements. The trace can be
+	 * replayed several times, e.g. to warm up the JIT compiler first.
+	 */
+	public ReplayResult replay() {
+		List<TraceEvent> events;
+		try {
+			events = readEvents();
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to decode trace", e); // it was decoded without error before
+		}
+		final long usedBefore = usedMemory();
+		final long allocatedBefore = allocatedBytes();
+		final long startNanos = System.nanoTime();
+		Peer peer = new Peer(this.peerId, new OrderedList<Object>());
+		@SuppressWarnings("unchecked")
+		OrderedList<Object> list = (OrderedList<Object>) peer.getCRDT();
+		long localEdits = 0, messagesReceived = 0;
+		for (TraceEvent event : events) {
+			switch (event.type) {
+			case TraceCodec.EVENT_INSERT:
+				list.insert(event.index, event.value);
+				localEdits++;
+				break;
+			case TraceCodec.EVENT_REMOVE:
+				list.remove(event.index);
+				localEdits++;
+				break;
+			case TraceCodec.EVENT_INSERT_BEFORE_ID:
+				list.insertBeforeId(event.cursorId, event.value);
+				localEdits++;
+				break;
+			case TraceCodec.EVENT_REMOVE_BEFORE_ID:
+				list.removeBeforeId(event.cursorId, event.index);
+				localEdits++;
+				break;
+			case TraceCodec.EVENT_MAKE_MESSAGE:
+				peer.makeMessage();
+				break;
+			case TraceCodec.EVENT_RECEIVE_MESSAGE:
+				if (peer.processMessage(event.message))
+					messagesReceived++;
+				break;
+			}
+		}
+		final long elapsedNanos = System.nanoTime() - startNanos;
+		final long allocatedAfter = allocatedBytes();
+		final long retainedBytes = usedMemory() - usedBefore;
+		return new ReplayResult(localEdits, peer.appliedOperationCount(), messagesReceived, elapsedNanos,
+				allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore, retainedBytes, list.toList());
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+		if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled())
+			return -1;
+		return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
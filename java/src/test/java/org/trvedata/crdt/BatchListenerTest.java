@@ -0,0 +1,116 @@
+package org.trvedata.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+import org.trvedata.crdt.operation.Operation;
+import org.trvedata.crdt.orderedlist.OrderedListPeer;
+
+public class BatchListenerTest {
+	private static class RecordingListener implements CRDTBatchListener {
+		final List<Integer> batchSizes = new ArrayList<Integer>();
+		final List<Object> sources = new ArrayList<Object>();
+
+		@Override
+		public void onOperations(Object source, List<Operation> operations) {
+			batchSizes.add(operations.size());
+			sources.add(source);
+		}
+	}
+
+	// Runs tasks only when asked to, standing in for a busy executor thread
+	private static class ManualExecutor implements Executor {
+		final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+		boolean rejecting = false;
+
+		@Override
+		public void execute(Runnable task) {
+			if (rejecting)
+				throw new RejectedExecutionException("executor is shut down");
+			tasks.add(task);
+		}
+
+		void runAll() {
+			while (!tasks.isEmpty())
+				tasks.poll().run();
+		}
+	}
+
+	@Test
+	public void testOneBatchPerMessage() { // should deliver all operations of a message in one call
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		RecordingListener listener = new RecordingListener();
+		peer2.getOrderedList().addBatchListener(listener);
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c');
+		peer2.processMessage(peer1.makeMessage());
+		peer1.getOrderedList().remove(0);
+		peer2.processMessage(peer1.makeMessage());
+		assertEquals(listener.batchSizes.toString(), "[3, 1]");
+	}
+
+	@Test
+	public void testAsyncDispatchCoalesces() { // should not call the listener during ingestion, and merge queued batches
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		RecordingListener listener = new RecordingListener();
+		ManualExecutor executor = new ManualExecutor();
+		AsyncBatchListener async = new AsyncBatchListener(listener, executor, 2);
+		peer2.getOrderedList().addBatchListener(async);
+		for (int i = 0; i < 4; i++) {
+			peer1.getOrderedList().insert(i, 'x');
+			peer2.processMessage(peer1.makeMessage());
+		}
+		assertEquals(listener.batchSizes.size(), 0);
+		assertEquals(async.queuedBatchCount(), 2);
+		assertEquals(async.coalescedBatchCount(), 2);
+		executor.runAll();
+		assertEquals(listener.batchSizes.toString(), "[1, 3]");
+		assertEquals(async.queuedBatchCount(), 0);
+	}
+
+	@Test
+	public void testBoundQueueWithAlternatingSources() { // should coalesce per source when batches from several sources interleave
+		RecordingListener listener = new RecordingListener();
+		ManualExecutor executor = new ManualExecutor();
+		AsyncBatchListener async = new AsyncBatchListener(listener, executor, 2);
+		List<Operation> operations = Collections.<Operation> singletonList(null);
+		for (int i = 0; i < 100; i++) {
+			async.onOperations("a", operations);
+			async.onOperations("b", operations);
+		}
+		assertEquals(async.queuedBatchCount(), 2);
+		assertEquals(async.coalescedBatchCount(), 198L);
+		executor.runAll();
+		assertEquals(listener.sources.toString(), "[a, b]");
+		assertEquals(listener.batchSizes.toString(), "[100, 100]");
+	}
+
+	@Test
+	public void testRetryAfterRejectedExecution() { // should deliver queued batches once the executor accepts the drain again
+		RecordingListener listener = new RecordingListener();
+		ManualExecutor executor = new ManualExecutor();
+		AsyncBatchListener async = new AsyncBatchListener(listener, executor, 2);
+		List<Operation> operations = Collections.<Operation> singletonList(null);
+		executor.rejecting = true;
+		try {
+			async.onOperations("a", operations);
+			fail();
+		} catch (RejectedExecutionException e) {
+		}
+		executor.rejecting = false;
+		async.onOperations("a", operations);
+		executor.runAll();
+		assertEquals(listener.batchSizes.toString(), "[1, 1]");
+		assertEquals(async.queuedBatchCount(), 0);
+	}
+}
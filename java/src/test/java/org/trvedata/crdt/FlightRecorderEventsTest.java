@@ -0,0 +1,114 @@
+package org.trvedata.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.trvedata.crdt.orderedlist.OrderedList;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Configuration loadProfile() throws Exception {
+		InputStreamReader reader = new InputStreamReader(
+				FlightRecorderEventsTest.class.getResourceAsStream("/trvesync.jfc"), StandardCharsets.UTF_8);
+		try {
+			return Configuration.create(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testRecordWithShippedProfile() throws Exception { // should record message processing and stalls
+		Peer peer1 = new Peer("peer1", null);
+		Peer peer2 = new Peer("peer2", null);
+		Peer peer3 = new Peer("peer3", null);
+		@SuppressWarnings("unchecked")
+		OrderedList<Character> list1 = (OrderedList<Character>) peer1.getCRDT();
+		list1.insert(0, 'a');
+		Message msg1 = peer1.makeMessage();
+		peer2.processMessage(msg1);
+		@SuppressWarnings("unchecked")
+		OrderedList<Character> list2 = (OrderedList<Character>) peer2.getCRDT();
+		list2.insert(1, 'b');
+		Message msg2 = peer2.makeMessage();
+
+		File file = folder.newFile("test.jfr");
+		Recording recording = new Recording(loadProfile());
+		try {
+			recording.start();
+			peer3.processMessage(msg2);
+			peer3.processMessage(msg1);
+			recording.stop();
+			recording.dump(file.toPath());
+		} finally {
+			recording.close();
+		}
+
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		RecordedEvent stall = null;
+		for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+			String name = event.getEventType().getName();
+			Integer count = counts.get(name);
+			counts.put(name, count == null ? 1 : count + 1);
+			if (name.equals("org.trvedata.crdt.CausalStall"))
+				stall = event;
+		}
+		assertEquals(counts.get("org.trvedata.crdt.ProcessMessage"), Integer.valueOf(2));
+		assertEquals(counts.get("org.trvedata.crdt.CausalStall"), Integer.valueOf(1));
+		assertEquals(stall.getString("originPeerId"), "peer2");
+		assertTrue(stall.getLong("waitNanos") > 0);
+	}
+
+	@Test
+	public void testRecordBatchProcessing() throws Exception { // should record an event for every message of a batch
+		Peer peer1 = new Peer("peer1", null);
+		Peer peer2 = new Peer("peer2", null);
+		@SuppressWarnings("unchecked")
+		OrderedList<Character> list1 = (OrderedList<Character>) peer1.getCRDT();
+		List<Message> batch = new ArrayList<Message>();
+		for (char c = 'a'; c <= 'c'; c++) {
+			list1.insert(0, c);
+			batch.add(peer1.makeMessage());
+		}
+
+		File file = folder.newFile("batch.jfr");
+		Recording recording = new Recording(loadProfile());
+		try {
+			recording.start();
+			peer2.processMessages(batch);
+			recording.stop();
+			recording.dump(file.toPath());
+		} finally {
+			recording.close();
+		}
+
+		long opsApplied = 0;
+		int count = 0;
+		for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+			if (event.getEventType().getName().equals("org.trvedata.crdt.ProcessMessage")) {
+				count++;
+				opsApplied += event.getLong("opsApplied");
+			}
+		}
+		assertEquals(count, 3);
+		assertEquals(opsApplied, 3L);
+	}
+}
@@ -0,0 +1,156 @@
+package org.trvedata.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.trvedata.crdt.operation.Operation;
+import org.trvedata.crdt.operation.OperationSize;
+import org.trvedata.crdt.orderedlist.OrderedListPeer;
+
+public class MessageSchedulerTest {
+	private ScheduledExecutorService executor;
+	private BlockingQueue<Message> sent;
+	private BlockingQueue<CursorMessage> sentCursors;
+	private MessageScheduler.MessageSink sink;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newSingleThreadScheduledExecutor();
+		sent = new LinkedBlockingQueue<Message>();
+		sentCursors = new LinkedBlockingQueue<CursorMessage>();
+		sink = new MessageScheduler.MessageSink() {
+			@Override
+			public void sendMessage(Message message) {
+				sent.add(message);
+			}
+
+			@Override
+			public void sendCursorMessage(CursorMessage message) {
+				sentCursors.add(message);
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testFlushWhenMaxOpsReached() throws InterruptedException {
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer1");
+		new MessageScheduler(peer, new FlushPolicy().setMaxOps(3).setMaxLingerMillis(60000), sink, executor);
+		synchronized (peer) {
+			peer.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c');
+		}
+		Message message = sent.poll(5, TimeUnit.SECONDS);
+		assertNotNull(message);
+		assertEquals(message.getOperations().size(), 3);
+		assertFalse(peer.anythingToSend());
+	}
+
+	@Test
+	public void testSplitLargeBatch() throws InterruptedException { // should send a bulk edit as several bounded messages
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> remote = new OrderedListPeer<Character>("peer2");
+		new MessageScheduler(peer, new FlushPolicy().setMaxOps(1000).setMaxBytes(16 * 1024), sink, executor);
+		synchronized (peer) {
+			for (int i = 0; i < 10000; i++)
+				peer.getOrderedList().insert(i, 'x');
+		}
+		int messages = 0;
+		while (remote.getOrderedList().size() < 10000) {
+			Message message = sent.poll(5, TimeUnit.SECONDS);
+			assertNotNull(message);
+			assertTrue(message.getOperations().size() <= 1000);
+			int bytes = 0;
+			for (Operation operation : message.getOperations())
+				bytes += OperationSize.estimate(operation);
+			assertTrue(bytes <= 16 * 1024);
+			remote.processMessage(message);
+			messages++;
+		}
+		assertTrue(messages >= 10);
+		assertEquals(remote.getOrderedList().toList(), peer.getOrderedList().toList());
+		assertFalse(peer.anythingToSend());
+	}
+
+	@Test
+	public void testFlushAfterLingerTime() throws InterruptedException {
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer1");
+		new MessageScheduler(peer, new FlushPolicy().setMaxLingerMillis(50), sink, executor);
+		synchronized (peer) {
+			peer.getOrderedList().insert(0, 'a').insert(1, 'b');
+		}
+		Message message = sent.poll(5, TimeUnit.SECONDS);
+		assertNotNull(message);
+		assertEquals(message.getOperations().size(), 2);
+		assertEquals(message.getMsgCounter(), 1L);
+	}
+
+	@Test
+	public void testInteractiveEditsDontWaitForRoundTrip() throws InterruptedException {
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer1");
+		MessageScheduler scheduler = new MessageScheduler(peer,
+				new FlushPolicy().setMinLingerMillis(60000).setMaxLingerMillis(60000), sink, executor);
+		scheduler.recordRoundTrip(500);
+		scheduler.setInteractive(true);
+		synchronized (peer) {
+			peer.getOrderedList().insert(0, 'a');
+		}
+		assertNotNull(sent.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testLingerAdaptsToRoundTripTime() {
+		FlushPolicy policy = new FlushPolicy().setMinLingerMillis(5).setMaxLingerMillis(200);
+		assertEquals(policy.lingerMillis(-1), 200);
+		assertEquals(policy.lingerMillis(2), 5);
+		assertEquals(policy.lingerMillis(100), 50);
+		assertEquals(policy.lingerMillis(1000), 200);
+	}
+
+	@Test
+	public void testCloseCancelsPendingFlush() throws InterruptedException {
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer1");
+		MessageScheduler scheduler = new MessageScheduler(peer, new FlushPolicy().setMaxLingerMillis(50), sink, executor);
+		synchronized (peer) {
+			peer.getOrderedList().insert(0, 'a');
+		}
+		scheduler.close();
+		assertNull(sent.poll(200, TimeUnit.MILLISECONDS));
+		assertEquals(peer.anythingToSend(), true);
+	}
+
+	@Test
+	public void testCoalesceCursorMoves() throws InterruptedException {
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer1");
+		new MessageScheduler(peer, new FlushPolicy().setCursorFlushMillis(50), sink, executor);
+		ItemID a, b;
+		synchronized (peer) {
+			a = peer.getOrderedList().insertBeforeId(null, 'a');
+			b = peer.getOrderedList().insertBeforeId(null, 'b');
+			peer.getCursors().setLocalCursor(a);
+			peer.getCursors().setLocalCursor(b);
+			peer.getCursors().setLocalCursor(null);
+		}
+		CursorMessage message = sentCursors.poll(5, TimeUnit.SECONDS);
+		assertNotNull(message);
+		assertEquals(message.getUpdates().size(), 1);
+		assertEquals(message.getUpdates().get(0).getSeq(), 3L);
+		assertNull(message.getUpdates().get(0).getPosition());
+		assertNull(sentCursors.poll(200, TimeUnit.MILLISECONDS));
+	}
+}
@@ -0,0 +1,76 @@
+package org.trvedata.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.trvedata.crdt.map.Map;
+import org.trvedata.crdt.orderedlist.OrderedList;
+
+public class NestedObjectsTest {
+	private static final ItemID CHARACTERS_ID = new ItemID(0, new PeerID("schema"));
+	private static final ItemID CURSORS_ID = new ItemID(1, new PeerID("schema"));
+
+	private static Peer createTextDocumentPeer(String peerId) {
+		Peer peer = new Peer(peerId, null);
+		peer.registerObject(CHARACTERS_ID, new OrderedList<Character>());
+		peer.registerObject(CURSORS_ID, new Map<PeerID, ItemID>());
+		return peer;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static OrderedList<Character> characters(Peer peer) {
+		return (OrderedList<Character>) peer.getObject(CHARACTERS_ID);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<PeerID, ItemID> cursors(Peer peer) {
+		return (Map<PeerID, ItemID>) peer.getObject(CURSORS_ID);
+	}
+
+	@Test
+	public void testRouteOperationsByTarget() { // should route operations to the object they target
+		Peer peer1 = createTextDocumentPeer("peer1");
+		Peer peer2 = createTextDocumentPeer("peer2");
+		ItemID cursor = characters(peer1).insertBeforeId(null, 'a');
+		characters(peer1).insertBeforeId(null, 'b');
+		cursors(peer1).put(peer1.getPeerId(), cursor);
+		peer2.processMessage(peer1.makeMessage());
+
+		assertEquals(characters(peer2).toList(), Arrays.asList('a', 'b'));
+		assertEquals(cursors(peer2).get(peer1.getPeerId()), cursor);
+		assertEquals(((OrderedList<?>) peer2.getCRDT()).toList().isEmpty(), true);
+	}
+
+	@Test
+	public void testShareCausalDeliveryAcrossObjects() { // should deliver operations on different objects causally
+		Peer peer1 = createTextDocumentPeer("peer1");
+		Peer peer2 = createTextDocumentPeer("peer2");
+		Peer peer3 = createTextDocumentPeer("peer3");
+		ItemID a = characters(peer1).insertBeforeId(null, 'a');
+		Message msg1 = peer1.makeMessage();
+		peer2.processMessage(msg1);
+		cursors(peer2).put(peer2.getPeerId(), a);
+		Message msg2 = peer2.makeMessage();
+
+		peer3.processMessage(msg2);
+		assertEquals(cursors(peer3).size(), 0);
+		peer3.processMessage(msg1);
+		assertEquals(cursors(peer3).get(peer2.getPeerId()), a);
+		assertEquals(characters(peer3).toList(), Arrays.asList('a'));
+	}
+
+	@Test
+	public void testRootObject() { // should treat a null object ID as the root object
+		Peer peer = createTextDocumentPeer("peer1");
+		assertSame(peer.getObject(null), peer.getCRDT());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectDuplicateObjectId() { // should not register two objects under the same ID
+		Peer peer = createTextDocumentPeer("peer1");
+		peer.registerObject(CHARACTERS_ID, new OrderedList<Character>());
+	}
+}
@@ -168,5 +168,41 @@ public class PeerMatrixTest {
         assertEquals(peer1.anythingToSend() || peer2.anythingToSend(), false);
     }
 
+    @Test
+    public void testOneClockUpdatePerMessageInPerMessageMode() {
+        OrderedListPeer<Character> local = new OrderedListPeer<Character>();
+        OrderedListPeer<Character> remote1 = new OrderedListPeer<Character>();
+        OrderedListPeer<Character> remote2 = new OrderedListPeer<Character>();
+        local.setClockUpdateMode(ClockUpdateMode.PER_MESSAGE);
+        remote1.getOrderedList().insert(0, 'a');
+        Message msg1 = remote1.makeMessage();
+        local.processMessage(msg1);
+        local.getOrderedList().insert(1, 'b');
+        remote2.getOrderedList().insert(0, 'c');
+        local.processMessage(remote2.makeMessage());
+        local.getOrderedList().insert(3, 'd');
+
+        Message message = local.makeMessage();
+        List<Operation> ops = new ArrayList<Operation>(message.getOperations());
+        assertEquals(ops.size(), 3);
+        assertEquals(((ClockUpdate) ops.get(0)).entries(), Arrays.asList(
+                new PeerVClockEntry(remote1.getPeerId(), new PeerIndex(1), 1),
+                new PeerVClockEntry(remote2.getPeerId(), new PeerIndex(2), 1)));
+
+        remote2.processMessage(msg1);
+        remote2.processMessage(message);
+        assertEquals(remote2.getOrderedList().toList(), local.getOrderedList().toList());
+    }
 
+    @Test
+    public void testPeerIndexMappingComparesPeerIdsByValue() { // should accept an equal peer ID that is a different object
+        OrderedListPeer<Character> local = new OrderedListPeer<Character>();
+        OrderedListPeer<Character> remote = new OrderedListPeer<Character>();
+        remote.getOrderedList().insert(0, 'a');
+        local.processMessage(remote.makeMessage());
+
+        PeerID copy = new PeerID(remote.getPeerId().getPeerID());
+        PeerVClockEntry entry = local.getPeerMatrix().peerIndexMapping(local.getPeerId(), copy, new PeerIndex(1));
+        assertEquals(entry.getPeerId(), remote.getPeerId());
+    }
 }
@@ -0,0 +1,123 @@
+package org.trvedata.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.trvedata.crdt.orderedlist.OrderedListPeer;
+
+public class ReceiveBufferTest {
+	@Rule
+	public TemporaryFolder spillDirectory = new TemporaryFolder();
+
+	@Test
+	public void testSpillBlockedOperationsAndReload() throws Exception {
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		OrderedListPeer<Character> peer3 = new OrderedListPeer<Character>("peer3");
+		peer3.getReceiveBuffer().setMemoryLimit(100, spillDirectory.getRoot());
+
+		peer1.getOrderedList().insert(0, 'a');
+		Message msg1 = peer1.makeMessage();
+		peer2.processMessage(msg1);
+		for (int i = 1; i <= 20; i++) {
+			peer2.getOrderedList().insert(i, (char) ('a' + i));
+			peer3.processMessage(peer2.makeMessage());
+		}
+
+		ReceiveBuffer buffer = peer3.getReceiveBuffer();
+		assertTrue(buffer.spilledSegmentCount() > 0);
+		assertTrue(buffer.bufferedBytes() <= 100);
+		assertTrue(spillDirectory.getRoot().list().length > 0);
+
+		peer3.processMessage(msg1);
+		assertEquals(peer3.getOrderedList().toList(), peer2.getOrderedList().toList());
+		assertEquals(buffer.spilledSegmentCount(), 0);
+		assertEquals(buffer.spilledBytes(), 0L);
+		assertEquals(spillDirectory.getRoot().list().length, 0);
+	}
+
+	@Test
+	public void testSpillWhileEnqueueingBatch() throws Exception { // should check the memory limit after each message of a batch
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		OrderedListPeer<Character> peer3 = new OrderedListPeer<Character>("peer3");
+		peer3.getReceiveBuffer().setMemoryLimit(100, spillDirectory.getRoot());
+
+		peer1.getOrderedList().insert(0, 'a');
+		Message msg1 = peer1.makeMessage();
+		peer2.processMessage(msg1);
+		List<Message> batch = new ArrayList<Message>();
+		for (int i = 1; i <= 20; i++) {
+			peer2.getOrderedList().insert(i, (char) ('a' + i));
+			batch.add(peer2.makeMessage());
+		}
+
+		peer3.processMessages(batch);
+		ReceiveBuffer buffer = peer3.getReceiveBuffer();
+		assertTrue(buffer.spilledSegmentCount() > 1);
+		assertTrue(buffer.bufferedBytes() <= 100);
+
+		peer3.processMessage(msg1);
+		assertEquals(peer3.getOrderedList().toList(), peer2.getOrderedList().toList());
+		assertEquals(spillDirectory.getRoot().list().length, 0);
+	}
+
+	@Test
+	public void testSpillHeldMessages() throws Exception { // should count messages held after a gap against the memory limit
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer2.getReceiveBuffer().setMemoryLimit(100, spillDirectory.getRoot());
+
+		peer1.getOrderedList().insert(0, 'a');
+		Message lost = peer1.makeMessage();
+		for (int i = 1; i <= 20; i++) {
+			peer1.getOrderedList().insert(i, (char) ('a' + i));
+			ProcessingResult result = peer2.processMessages(Collections.singletonList(peer1.makeMessage()));
+			assertEquals(result.getMessagesHeld(), (long) i);
+		}
+
+		ReceiveBuffer buffer = peer2.getReceiveBuffer();
+		assertEquals(buffer.heldMessageCount(), 20);
+		assertTrue(buffer.spilledSegmentCount() > 0);
+		assertTrue(buffer.spilledBytes() > 0);
+		assertTrue(buffer.bufferedBytes() <= 100);
+		assertTrue(spillDirectory.getRoot().list().length > 0);
+
+		peer2.processMessage(lost);
+		assertEquals(peer2.getOrderedList().toList(), peer1.getOrderedList().toList());
+		assertEquals(buffer.heldMessageCount(), 0);
+		assertEquals(buffer.spilledSegmentCount(), 0);
+		assertEquals(buffer.spilledBytes(), 0L);
+		assertEquals(spillDirectory.getRoot().list().length, 0);
+	}
+
+	@Test
+	public void testReportOldestBlockedDependency() {
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		OrderedListPeer<Character> peer3 = new OrderedListPeer<Character>("peer3");
+		peer1.getOrderedList().insert(0, 'a');
+		Message msg1 = peer1.makeMessage();
+		peer2.processMessage(msg1);
+		peer2.getOrderedList().insert(1, 'b');
+
+		assertNull(peer3.oldestBlockedDependency());
+		peer3.processMessage(peer2.makeMessage());
+		BlockedDependency blocked = peer3.oldestBlockedDependency();
+		assertEquals(blocked.getBlockedPeerId(), peer2.getPeerId());
+		assertEquals(blocked.getMissingMsgCounts(), Collections.singletonMap(peer1.getPeerId(), 1L));
+
+		peer3.processMessage(msg1);
+		assertNull(peer3.oldestBlockedDependency());
+		assertEquals(peer3.getOrderedList().toList(), Arrays.asList('a', 'b'));
+	}
+}
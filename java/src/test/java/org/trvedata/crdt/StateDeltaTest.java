@@ -0,0 +1,123 @@
+package org.trvedata.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.trvedata.crdt.map.MapPeer;
+import org.trvedata.crdt.orderedlist.OrderedList;
+import org.trvedata.crdt.orderedlist.OrderedListPeer;
+
+public class StateDeltaTest {
+
+	@Test
+	public void testJoinFromDelta() { // should bring a new peer up to date without replaying messages
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c');
+		Message msg1 = peer1.makeMessage();
+		peer2.processMessage(msg1);
+		peer2.getOrderedList().remove(1).insert(0, 'x');
+		Message msg2 = peer2.makeMessage();
+		peer1.processMessage(msg2);
+
+		OrderedListPeer<Character> peer3 = new OrderedListPeer<Character>("peer3");
+		StateDelta delta = peer1.makeStateDelta(peer3.getVersionVector());
+		assertEquals(delta.getOperations().size(), 4);
+		peer3.applyStateDelta(delta);
+		assertEquals(peer3.getOrderedList().toList(), Arrays.asList('x', 'a', 'c'));
+		assertEquals(peer3.getVersionVector(), peer1.getVersionVector());
+
+		assertFalse(peer3.processMessage(msg1));
+		assertFalse(peer3.processMessage(msg2));
+		peer2.getOrderedList().insert(3, 'd');
+		peer3.processMessage(peer2.makeMessage());
+		assertEquals(peer3.getOrderedList().toList(), Arrays.asList('x', 'a', 'c', 'd'));
+
+		peer3.getOrderedList().insert(0, 'y');
+		Message msg3 = peer3.makeMessage();
+		peer2.processMessage(msg3);
+		assertEquals(peer2.getOrderedList().toList(), Arrays.asList('y', 'x', 'a', 'c', 'd'));
+	}
+
+	@Test
+	public void testDeltaMatchesReplay() { // should produce the same list as replaying all messages
+		for (int seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			List<OrderedListPeer<Character>> peers = new ArrayList<OrderedListPeer<Character>>();
+			for (int i = 0; i < 3; i++)
+				peers.add(new OrderedListPeer<Character>("peer" + i));
+			OrderedListPeer<Character> late = new OrderedListPeer<Character>("late");
+			// queues[from][to] holds messages sent from one peer to another but not yet delivered
+			List<List<ArrayDeque<Message>>> queues = new ArrayList<List<ArrayDeque<Message>>>();
+			for (int i = 0; i < peers.size(); i++) {
+				queues.add(new ArrayList<ArrayDeque<Message>>());
+				for (int j = 0; j < peers.size(); j++)
+					queues.get(i).add(new ArrayDeque<Message>());
+			}
+			List<Message> earlyMessages = new ArrayList<Message>(), allMessages = new ArrayList<Message>();
+
+			for (int round = 0; round < 10; round++) {
+				for (int i = 0; i < peers.size(); i++) {
+					OrderedList<Character> list = peers.get(i).getOrderedList();
+					for (int edit = random.nextInt(4); edit > 0; edit--) {
+						if (list.size() > 0 && random.nextInt(3) == 0)
+							list.remove(random.nextInt(list.size()));
+						else
+							list.insert(random.nextInt(list.size() + 1), (char) ('a' + random.nextInt(26)));
+					}
+					Message message = peers.get(i).makeMessage();
+					allMessages.add(message);
+					if (round < 5)
+						earlyMessages.add(message);
+					for (int j = 0; j < peers.size(); j++)
+						if (j != i)
+							queues.get(i).get(j).addLast(message);
+				}
+				for (int i = 0; i < peers.size(); i++)
+					for (int j = 0; j < peers.size(); j++)
+						for (int n = random.nextInt(3); n > 0 && !queues.get(i).get(j).isEmpty(); n--)
+							peers.get(j).processMessage(queues.get(i).get(j).pollFirst());
+			}
+
+			late.processMessages(earlyMessages);
+			OrderedListPeer<Character> source = peers.get(random.nextInt(peers.size()));
+			late.applyStateDelta(source.makeStateDelta(late.getVersionVector()));
+			assertEquals("seed " + seed, late.getOrderedList().toList(), source.getOrderedList().toList());
+
+			for (int i = 0; i < peers.size(); i++)
+				for (int j = 0; j < peers.size(); j++)
+					while (!queues.get(i).get(j).isEmpty())
+						peers.get(j).processMessage(queues.get(i).get(j).pollFirst());
+			late.processMessages(allMessages);
+			for (OrderedListPeer<Character> peer : peers)
+				assertEquals("seed " + seed, late.getOrderedList().toList(), peer.getOrderedList().toList());
+			assertEquals(late.bufferedOperationCount(), 0L);
+		}
+	}
+
+	@Test
+	public void testJoinMapWithMergedPuts() { // should send concurrent puts of a key, so that writes can refer to any of them
+		MapPeer<String, Integer> peer1 = new MapPeer<String, Integer>("peer1");
+		MapPeer<String, Integer> peer2 = new MapPeer<String, Integer>("peer2");
+		peer1.getMap().put("a", 1);
+		peer2.getMap().put("a", 2);
+		Message msg1 = peer1.makeMessage(), msg2 = peer2.makeMessage();
+		peer1.processMessage(msg2);
+		peer2.processMessage(msg1);
+
+		MapPeer<String, Integer> peer3 = new MapPeer<String, Integer>("peer3");
+		peer3.applyStateDelta(peer1.makeStateDelta(peer3.getVersionVector()));
+		assertEquals(peer3.getMap().toMap(), peer1.getMap().toMap());
+		// peer2 writes through its own put, which peer1 merged into the item of its put
+		peer2.getMap().put("a", 3);
+		peer3.processMessage(peer2.makeMessage());
+		assertEquals(peer3.getMap().get("a"), Integer.valueOf(3));
+	}
+}
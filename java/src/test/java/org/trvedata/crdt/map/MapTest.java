@@ -0,0 +1,143 @@
+package org.trvedata.crdt.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.Message;
+import org.trvedata.crdt.PeerID;
+import org.trvedata.crdt.operation.Operation;
+
+public class MapTest {
+	@Test
+	public void testPutAndRemove() { // should apply local puts and removes
+		MapPeer<String, Integer> peer = new MapPeer<String, Integer>("peer1");
+		peer.getMap().put("a", 1).put("b", 2).put("a", 3).remove("b");
+		assertEquals(peer.getMap().get("a"), Integer.valueOf(3));
+		assertNull(peer.getMap().get("b"));
+		assertFalse(peer.getMap().containsKey("b"));
+		assertEquals(peer.getMap().size(), 1);
+		assertEquals(peer.getMap().tombstoneCount(), 1);
+	}
+
+	@Test
+	public void testConcurrentPutsLastWriterWins() { // should resolve concurrent puts by operation ID
+		MapPeer<String, Integer> peer1 = new MapPeer<String, Integer>("peer1");
+		MapPeer<String, Integer> peer2 = new MapPeer<String, Integer>("peer2");
+		peer1.getMap().put("a", 1);
+		peer2.getMap().put("a", 2);
+		Message msg1 = peer1.makeMessage(), msg2 = peer2.makeMessage();
+		peer1.processMessage(msg2);
+		peer2.processMessage(msg1);
+		assertEquals(peer1.getMap().get("a"), Integer.valueOf(2));
+		assertEquals(peer2.getMap().get("a"), Integer.valueOf(2));
+	}
+
+	@Test
+	public void testConcurrentPutAndRemove() { // should resolve a concurrent put and remove by operation ID
+		MapPeer<String, Integer> peer1 = new MapPeer<String, Integer>("peer1");
+		MapPeer<String, Integer> peer2 = new MapPeer<String, Integer>("peer2");
+		peer1.getMap().put("a", 1);
+		peer2.processMessage(peer1.makeMessage());
+		peer1.getMap().put("x", 0).put("a", 2);
+		peer2.getMap().remove("a");
+		Message msg1 = peer1.makeMessage(), msg2 = peer2.makeMessage();
+		peer1.processMessage(msg2);
+		peer2.processMessage(msg1);
+		assertEquals(peer1.getMap().toMap(), peer2.getMap().toMap());
+		assertEquals(peer2.getMap().get("a"), Integer.valueOf(2));
+	}
+
+	@Test
+	public void testPutAllSendsOneOperation() { // should send a bulk put as a single operation
+		MapPeer<String, Integer> peer1 = new MapPeer<String, Integer>("peer1");
+		MapPeer<String, Integer> peer2 = new MapPeer<String, Integer>("peer2");
+		HashMap<String, Integer> entries = new HashMap<String, Integer>();
+		for (int i = 0; i < 100; i++)
+			entries.put("key" + i, i);
+		peer1.getMap().putAll(entries);
+		Message message = peer1.makeMessage();
+		List<Operation> ops = new ArrayList<Operation>(message.getOperations());
+		assertEquals(ops.size(), 1);
+		peer2.processMessage(message);
+		assertEquals(peer2.getMap().toMap(), entries);
+	}
+
+	@Test
+	public void testCollectTombstones() { // should discard tombstones older than the stable timestamp
+		MapPeer<String, Integer> peer = new MapPeer<String, Integer>("peer1");
+		peer.getMap().put("a", 1).put("b", 2).remove("a").remove("b");
+		assertEquals(peer.getMap().collectTombstones(new ItemID(4, new PeerID("peer1"))), 1);
+		assertEquals(peer.getMap().tombstoneCount(), 1);
+		assertEquals(peer.getMap().size(), 0);
+	}
+
+	@Test
+	public void testWritesReferToPutId() { // should write and remove an existing key by the ID of its put
+		MapPeer<String, Integer> peer1 = new MapPeer<String, Integer>("peer1");
+		MapPeer<String, Integer> peer2 = new MapPeer<String, Integer>("peer2");
+		peer1.getMap().put("a", 1);
+		peer2.processMessage(peer1.makeMessage());
+		peer1.getMap().put("a", 2).remove("a");
+		Message message = peer1.makeMessage();
+		List<Operation> ops = new ArrayList<Operation>(message.getOperations());
+		assertEquals(ops.get(0), new WriteOp<Integer>(new ItemID(2, peer1.getPeerId()), new ItemID(1, peer1.getPeerId()), 2));
+		assertEquals(ops.get(1), new RemoveOp(new ItemID(3, peer1.getPeerId()), new ItemID(1, peer1.getPeerId())));
+		peer2.processMessage(message);
+		assertFalse(peer2.getMap().containsKey("a"));
+		assertEquals(peer2.getMap().tombstoneCount(), 1);
+	}
+
+	@Test
+	public void testConcurrentPutsOfSameKeyMerge() { // should accept later writes that refer to either concurrent put
+		MapPeer<String, Integer> peer1 = new MapPeer<String, Integer>("peer1");
+		MapPeer<String, Integer> peer2 = new MapPeer<String, Integer>("peer2");
+		peer1.getMap().put("a", 1);
+		peer2.getMap().put("a", 2);
+		Message msg1 = peer1.makeMessage(), msg2 = peer2.makeMessage();
+		peer1.getMap().put("a", 3);
+		Message msg3 = peer1.makeMessage();
+		peer2.processMessage(msg1);
+		peer2.processMessage(msg3);
+		peer1.processMessage(msg2);
+		assertEquals(peer1.getMap().get("a"), Integer.valueOf(3));
+		assertEquals(peer2.getMap().get("a"), Integer.valueOf(3));
+		assertEquals(peer2.getMap().size(), 1);
+	}
+
+	@Test
+	public void testPutAgainAfterCollection() { // should put a key anew after its tombstone has been collected
+		MapPeer<String, Integer> peer1 = new MapPeer<String, Integer>("peer1");
+		MapPeer<String, Integer> peer2 = new MapPeer<String, Integer>("peer2");
+		peer1.getMap().put("a", 1).remove("a");
+		peer2.processMessage(peer1.makeMessage());
+		assertEquals(peer2.getMap().collectTombstones(new ItemID(3, peer1.getPeerId())), 1);
+		peer1.getMap().put("a", 4);
+		peer2.processMessage(peer1.makeMessage());
+		assertEquals(peer2.getMap().get("a"), Integer.valueOf(4));
+		assertEquals(peer2.getMap().tombstoneCount(), 0);
+	}
+
+	@Test
+	public void testStateDelta() { // should send a put before writes the remote peer cannot refer to yet
+		MapPeer<String, Integer> peer1 = new MapPeer<String, Integer>("peer1");
+		MapPeer<String, Integer> peer2 = new MapPeer<String, Integer>("peer2");
+		peer1.getMap().put("a", 1).put("b", 2);
+		peer2.processMessage(peer1.makeMessage());
+		peer1.getMap().put("a", 3).remove("b").put("c", 4).put("c", 5);
+		peer1.makeMessage();
+
+		MapPeer<String, Integer> peer3 = new MapPeer<String, Integer>("peer3");
+		peer2.applyStateDelta(peer1.makeStateDelta(peer2.getVersionVector()));
+		peer3.applyStateDelta(peer1.makeStateDelta(peer3.getVersionVector()));
+		assertEquals(peer2.getMap().toMap(), peer1.getMap().toMap());
+		assertEquals(peer3.getMap().toMap(), peer1.getMap().toMap());
+		assertEquals(peer3.getMap().tombstoneCount(), 1);
+	}
+}
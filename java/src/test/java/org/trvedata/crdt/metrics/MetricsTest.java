@@ -0,0 +1,108 @@
+package org.trvedata.crdt.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.trvedata.crdt.Message;
+import org.trvedata.crdt.Peer;
+import org.trvedata.crdt.orderedlist.OrderedList;
+
+public class MetricsTest {
+
+	@Test
+	public void testHistogramPercentiles() { // should bound percentiles by power-of-two buckets
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 100; i++)
+			histogram.record(i);
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(snapshot.getCount(), 100);
+		assertEquals(snapshot.getSum(), 5050);
+		assertEquals(snapshot.getPercentile(50), 63);
+		assertEquals(snapshot.getPercentile(100), 127);
+		assertEquals(new Histogram().snapshot().getPercentile(99), 0);
+	}
+
+	@Test
+	public void testPeerMetrics() { // should count messages and operations, and report list sizes
+		Peer peer1 = new Peer("peer1", null);
+		Peer peer2 = new Peer("peer2", null);
+		@SuppressWarnings("unchecked")
+		OrderedList<Character> list1 = (OrderedList<Character>) peer1.getCRDT();
+		list1.insert(0, 'a').insert(1, 'b').insert(2, 'c').remove(1);
+		Message message = peer1.makeMessage();
+		peer2.processMessage(message);
+		peer2.processMessage(message);
+
+		MetricsSnapshot sent = peer1.getMetrics().snapshot();
+		assertEquals(sent.getCounters().get("peer.messages.sent"), Long.valueOf(1));
+		assertEquals(sent.getGauges().get("crdt.size"), Long.valueOf(2));
+		assertEquals(sent.getGauges().get("crdt.tombstones"), Long.valueOf(1));
+
+		MetricsSnapshot received = peer2.getMetrics().snapshot();
+		assertEquals(received.getCounters().get("peer.messages.received"), Long.valueOf(1));
+		assertEquals(received.getCounters().get("peer.messages.duplicate"), Long.valueOf(1));
+		assertEquals(received.getCounters().get("peer.ops.applied.InsertOp"), Long.valueOf(3));
+		assertEquals(received.getCounters().get("peer.ops.applied.DeleteOp"), Long.valueOf(1));
+		assertEquals(received.getGauges().get("peer.peerMatrix.peers"), Long.valueOf(2));
+		assertNull(received.getGauges().get("peer.recvBuf.operations.peer1"));
+		assertEquals(received.getHistograms().get("peer.causalWait.micros").getCount(), 1);
+		assertEquals(received.getGauges().get("crdt.size"), Long.valueOf(2));
+		assertEquals(received.getGauges().get("crdt.tombstones"), Long.valueOf(1));
+
+		// Local edits are published with the next message, not read by the reporting thread as they happen
+		list1.insert(0, 'd');
+		assertEquals(peer1.getMetrics().snapshot().getGauges().get("crdt.size"), Long.valueOf(2));
+		peer1.makeMessage();
+		assertEquals(peer1.getMetrics().snapshot().getGauges().get("crdt.size"), Long.valueOf(3));
+	}
+
+	@Test
+	public void testRemoveSenderGaugeWhenDrained() { // should report a sender's queue only while it is blocked
+		Peer peer1 = new Peer("peer1", null);
+		Peer peer2 = new Peer("peer2", null);
+		Peer peer3 = new Peer("peer3", null);
+		@SuppressWarnings("unchecked")
+		OrderedList<Character> list1 = (OrderedList<Character>) peer1.getCRDT();
+		@SuppressWarnings("unchecked")
+		OrderedList<Character> list2 = (OrderedList<Character>) peer2.getCRDT();
+		list1.insert(0, 'a');
+		Message msg1 = peer1.makeMessage();
+		peer2.processMessage(msg1);
+		list2.insert(1, 'b');
+
+		peer3.processMessage(peer2.makeMessage());
+		Long queued = peer3.getMetrics().snapshot().getGauges().get("peer.recvBuf.operations.peer2");
+		assertTrue(queued > 0);
+		assertEquals(peer3.getMetrics().snapshot().getGauges().get("peer.recvBuf.operations"), Long.valueOf(1));
+
+		peer3.processMessage(msg1);
+		MetricsSnapshot drained = peer3.getMetrics().snapshot();
+		assertNull(drained.getGauges().get("peer.recvBuf.operations.peer2"));
+		assertEquals(drained.getGauges().get("peer.recvBuf.operations"), Long.valueOf(0));
+	}
+
+	@Test
+	public void testJmxExport() throws Exception { // should expose metrics as MBean attributes
+		Peer peer = new Peer("peer1", null);
+		((OrderedList<?>) peer.getCRDT()).itemByIndex(0);
+		peer.makeMessage();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("org.trvedata.crdt:type=Peer,name=MetricsTest");
+		JmxMetricsExporter.register(peer.getMetrics(), server, name);
+		try {
+			assertEquals(server.getAttribute(name, "peer.messages.sent"), Long.valueOf(1));
+			assertEquals(server.getAttribute(name, "crdt.itemByIndex.nanos.count"), Long.valueOf(1));
+			assertEquals(server.getAttribute(name, "peer.peerMatrix.peers"), Long.valueOf(1));
+			assertTrue(server.getMBeanInfo(name).getAttributes().length > 0);
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+}
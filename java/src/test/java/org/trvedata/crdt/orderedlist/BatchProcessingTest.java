@@ -0,0 +1,54 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.trvedata.crdt.Message;
+import org.trvedata.crdt.ProcessingResult;
+
+public class BatchProcessingTest {
+	@Test
+	public void testProcessMessagesInAnyOrder() { // should apply a batch of messages regardless of their order
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		OrderedListPeer<Character> peer3 = new OrderedListPeer<Character>("peer3");
+		List<Message> messages = new ArrayList<Message>();
+		peer1.getOrderedList().insert(0, 'a');
+		messages.add(peer1.makeMessage());
+		peer1.getOrderedList().insert(1, 'b');
+		messages.add(peer1.makeMessage());
+		peer2.processMessages(messages);
+		peer2.getOrderedList().insert(2, 'c');
+		messages.add(peer2.makeMessage());
+
+		Collections.reverse(messages);
+		ProcessingResult result = peer3.processMessages(messages);
+		assertEquals(result.getOperationsApplied(), 3L);
+		assertEquals(result.getOperationsBuffered(), 0L);
+		assertEquals(peer3.getOrderedList().toList(), Arrays.asList('a', 'b', 'c'));
+	}
+
+	@Test
+	public void testReportBufferedOperations() { // should report operations still waiting for dependencies
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		OrderedListPeer<Character> peer3 = new OrderedListPeer<Character>("peer3");
+		peer1.getOrderedList().insert(0, 'a');
+		Message msg1 = peer1.makeMessage();
+		peer2.processMessage(msg1);
+		peer2.getOrderedList().insert(1, 'b').insert(2, 'c');
+		Message msg2 = peer2.makeMessage();
+
+		ProcessingResult result = peer3.processMessages(Arrays.asList(msg2));
+		assertEquals(result.getOperationsApplied(), 0L);
+		assertEquals(result.getOperationsBuffered(), 2L);
+		result = peer3.processMessages(Arrays.asList(msg1));
+		assertEquals(result.getOperationsApplied(), 3L);
+		assertEquals(result.getOperationsBuffered(), 0L);
+	}
+}
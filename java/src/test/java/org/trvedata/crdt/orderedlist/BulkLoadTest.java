@@ -0,0 +1,85 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.PeerID;
+
+public class BulkLoadTest {
+	private static List<SnapshotItem<Character>> snapshotOf(OrderedList<Character> list) {
+		List<SnapshotItem<Character>> items = new ArrayList<SnapshotItem<Character>>();
+		for (SnapshotItem<Character> item : list.snapshot())
+			items.add(item);
+		return items;
+	}
+
+	@Test
+	public void testLoadSnapshot() { // should rebuild the list, including tombstones, from a snapshot
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c');
+		peer2.processMessage(peer1.makeMessage());
+		peer2.getOrderedList().insert(1, 'x').remove(2);
+		peer1.processMessage(peer2.makeMessage());
+		List<SnapshotItem<Character>> snapshot = snapshotOf(peer1.getOrderedList());
+
+		OrderedListPeer<Character> reopened = new OrderedListPeer<Character>("peer1");
+		reopened.getOrderedList().load(snapshot.iterator(), snapshot.size());
+		assertEquals(reopened.getOrderedList().toList(), Arrays.asList('a', 'x', 'c'));
+		assertEquals(reopened.getOrderedList().size(), 3);
+		assertEquals(reopened.getOrderedList().tombstoneCount(), 1);
+		assertEquals(snapshotOf(reopened.getOrderedList()).toString(), snapshot.toString());
+
+		ItemID next = reopened.nextId();
+		assertTrue(next.getLogicalTs() > snapshot.get(snapshot.size() - 1).getInsertId().getLogicalTs());
+	}
+
+	@Test
+	public void testApplyOperationsAfterLoad() { // should accept operations referring to loaded items and tombstones
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').remove(1);
+		List<SnapshotItem<Character>> snapshot = snapshotOf(peer1.getOrderedList());
+		ItemID tombstoneId = snapshot.get(1).getInsertId();
+
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer2.getOrderedList().load(snapshot.iterator(), 0);
+		peer2.getOrderedList().applyOperation(new InsertOp<Character>(tombstoneId, new ItemID(10, new PeerID("peer3")), 'c'));
+		peer2.getOrderedList().insert(0, 'z');
+		assertEquals(peer2.getOrderedList().toList(), Arrays.asList('z', 'a', 'c'));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRejectLoadIntoNonEmptyList() { // should only load into an empty list
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		peer1.getOrderedList().insert(0, 'a');
+		List<SnapshotItem<Character>> snapshot = snapshotOf(peer1.getOrderedList());
+		peer1.getOrderedList().load(snapshot.iterator(), snapshot.size());
+	}
+
+	@Test
+	public void testRejectDuplicateIdsWithoutChangingList() { // should leave the list empty if the snapshot is invalid
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b');
+		List<SnapshotItem<Character>> snapshot = snapshotOf(peer1.getOrderedList());
+		snapshot.add(snapshot.get(0));
+
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		try {
+			peer2.getOrderedList().load(snapshot.iterator(), snapshot.size());
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(peer2.getOrderedList().size(), 0);
+		assertEquals(peer2.getOrderedList().toList(), Collections.emptyList());
+		peer2.getOrderedList().load(snapshot.subList(0, 2).iterator(), 2);
+		assertEquals(peer2.getOrderedList().toList(), Arrays.asList('a', 'b'));
+	}
+}
@@ -1,6 +1,8 @@
 package org.trvedata.crdt.orderedlist;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -27,4 +29,70 @@ public class CausalityTest {
 		peer3.processMessage(peer1Msg);
 		assertEquals(peer3.getOrderedList().toList(), Arrays.asList('a', 'b'));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testDropDuplicateMessages() { // should drop messages that have already been applied or buffered
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		OrderedListPeer<Character> peer3 = new OrderedListPeer<Character>("peer3");
+		peer1.getOrderedList().insert(0, 'a');
+		Message peer1Msg = peer1.makeMessage();
+		peer2.processMessage(peer1Msg);
+		peer2.getOrderedList().insert(1, 'b');
+		Message peer2Msg = peer2.makeMessage();
+
+		assertTrue(peer3.processMessage(peer2Msg));
+		assertFalse(peer3.processMessage(peer2Msg));
+		assertTrue(peer3.processMessage(peer1Msg));
+		assertFalse(peer3.processMessage(peer1Msg));
+		assertFalse(peer3.processMessage(peer2Msg));
+		assertEquals(peer3.getOrderedList().toList(), Arrays.asList('a', 'b'));
+		assertEquals(peer3.duplicateMessageCount(), 3L);
+	}
+
+	@Test
+	public void testClockUpdatesKeepTheirOrder() { // should send several clock updates in one message in the order they were made
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		OrderedListPeer<Character> peer3 = new OrderedListPeer<Character>("peer3");
+		OrderedListPeer<Character> peer4 = new OrderedListPeer<Character>("peer4");
+		peer1.getOrderedList().insert(0, 'a');
+		Message peer1Msg = peer1.makeMessage();
+		peer2.getOrderedList().insert(0, 'b');
+		Message peer2Msg = peer2.makeMessage();
+
+		// Each clock update assigns peer3's next index to a newly seen peer
+		peer3.processMessage(peer1Msg);
+		peer3.getOrderedList().insert(0, 'c');
+		peer3.processMessage(peer2Msg);
+		peer3.getOrderedList().insert(0, 'd');
+		Message peer3Msg = peer3.makeMessage();
+
+		peer4.processMessage(peer1Msg);
+		peer4.processMessage(peer2Msg);
+		peer4.processMessage(peer3Msg);
+		assertEquals(peer4.getOrderedList().toList(), peer3.getOrderedList().toList());
+	}
+
+	@Test
+	public void testHoldMessagesAfterGap() { // should hold a message that skips one until the missing message is resent
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.getOrderedList().insert(0, 'a');
+		Message msg1 = peer1.makeMessage();
+		peer1.getOrderedList().insert(1, 'b');
+		Message msg2 = peer1.makeMessage();
+		peer1.getOrderedList().insert(2, 'c');
+		Message msg3 = peer1.makeMessage();
+
+		assertTrue(peer2.processMessage(msg1));
+		assertTrue(peer2.processMessage(msg3));
+		assertEquals(peer2.getOrderedList().toList(), Arrays.asList('a'));
+		assertEquals(peer2.heldMessageCount(), 1);
+		assertFalse(peer2.processMessage(msg3));
+		assertTrue(peer2.processMessage(msg2));
+		assertEquals(peer2.getOrderedList().toList(), Arrays.asList('a', 'b', 'c'));
+		assertEquals(peer2.heldMessageCount(), 0);
+		assertFalse(peer2.processMessage(msg2));
+	}
+}
@@ -0,0 +1,136 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import org.junit.Test;
+
+public class ChangeFeedTest {
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable task) {
+			task.run();
+		}
+	};
+
+	private static class RecordingSubscriber implements Flow.Subscriber<ListChange<Character>> {
+		Flow.Subscription subscription;
+		final List<ListChange<Character>> changes = new ArrayList<ListChange<Character>>();
+		List<Character> content = new ArrayList<Character>();
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(ListChange<Character> change) {
+			changes.add(change);
+			content = change.getDelta().applyTo(content);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			throw new AssertionError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+		}
+	}
+
+	@Test
+	public void testLaggingSubscriberGetsOneDelta() { // should coalesce changes while the subscriber has no demand
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.getOrderedList().insert(0, 'a');
+		peer2.processMessage(peer1.makeMessage());
+		ListChangeFeed<Character> feed = new ListChangeFeed<Character>(peer2.getOrderedList(), DIRECT);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		feed.subscribe(subscriber);
+		subscriber.subscription.request(1);
+		assertEquals(subscriber.content, Arrays.asList('a'));
+
+		for (char c = 'b'; c <= 'e'; c++) {
+			peer1.getOrderedList().insert(0, c);
+			peer2.processMessage(peer1.makeMessage());
+		}
+		assertEquals(subscriber.changes.size(), 1);
+		subscriber.subscription.request(5);
+		assertEquals(subscriber.changes.size(), 2);
+		assertEquals(subscriber.content, peer2.getOrderedList().toList());
+
+		peer2.getOrderedList().remove(0);
+		feed.publish();
+		assertEquals(subscriber.changes.size(), 3);
+		assertEquals(subscriber.content, peer2.getOrderedList().toList());
+	}
+
+	@Test
+	public void testResumeFromVersion() { // should start from the changes since the given version
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		ListChangeFeed<Character> feed = new ListChangeFeed<Character>(peer1.getOrderedList(), DIRECT);
+		RecordingSubscriber first = new RecordingSubscriber();
+		feed.subscribe(first);
+		first.subscription.request(Long.MAX_VALUE);
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b');
+		feed.publish();
+		first.subscription.cancel();
+
+		peer1.getOrderedList().remove(0).insert(1, 'c');
+		RecordingSubscriber resumed = new RecordingSubscriber();
+		resumed.content = first.content;
+		feed.subscribe(resumed, first.changes.get(first.changes.size() - 1).getToVersion());
+		resumed.subscription.request(1);
+		assertEquals(resumed.changes.get(0).getDelta().toString(), "[DELETE 1, RETAIN 1, INSERT [c]]");
+		assertEquals(resumed.content, Arrays.asList('b', 'c'));
+		assertEquals(first.changes.size(), 1);
+	}
+
+	@Test
+	public void testConcurrentDeleteOfSameItem() { // should not publish a deletion again when a peer deleted the item concurrently
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c');
+		peer2.processMessage(peer1.makeMessage());
+		ListChangeFeed<Character> feed = new ListChangeFeed<Character>(peer1.getOrderedList(), DIRECT);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		feed.subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+
+		peer1.getOrderedList().remove(1);
+		peer2.getOrderedList().remove(1);
+		feed.publish();
+		assertEquals(subscriber.content, Arrays.asList('a', 'c'));
+		peer1.processMessage(peer2.makeMessage());
+		feed.publish();
+		assertEquals(subscriber.content, Arrays.asList('a', 'c'));
+		assertEquals(subscriber.content, peer1.getOrderedList().toList());
+	}
+
+	@Test
+	public void testDeleteOfUnsentItemWithCoalescing() { // should publish the deletion of an item published before the peer sent it
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		peer1.setCoalescing(true);
+		peer1.getOrderedList().insert(0, 'x');
+		peer1.makeMessage();
+		ListChangeFeed<Character> feed = new ListChangeFeed<Character>(peer1.getOrderedList(), DIRECT);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		feed.subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+
+		peer1.getOrderedList().insert(1, 'a');
+		feed.publish();
+		assertEquals(subscriber.content, Arrays.asList('x', 'a'));
+		peer1.getOrderedList().remove(1);
+		peer1.makeMessage();
+		feed.publish();
+		assertEquals(peer1.getOrderedList().toList(), Arrays.asList('x'));
+		assertEquals(subscriber.content, Arrays.asList('x'));
+	}
+}
@@ -0,0 +1,137 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.junit.Test;
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.Message;
+import org.trvedata.crdt.Peer;
+import org.trvedata.crdt.PeerID;
+import org.trvedata.crdt.operation.ClockUpdate;
+import org.trvedata.crdt.operation.Operation;
+
+public class CoalescingTest {
+	private static ItemID id(long ts, String peer) {
+		return new ItemID(ts, new PeerID(peer));
+	}
+
+	@Test
+	public void testElideWordTypedAndDeleted() { // should not send items that were inserted and deleted in one batch
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.setCoalescing(true);
+		peer1.getOrderedList().insert(0, 'a');
+		peer2.processMessage(peer1.makeMessage());
+
+		peer1.getOrderedList().insert(1, 'x').insert(2, 'y').insert(3, 'z');
+		peer1.getOrderedList().removeBeforeId(null, 3);
+		Message message = peer1.makeMessage();
+		assertTrue(message.getOperations().isEmpty());
+		peer2.processMessage(message);
+
+		peer1.getOrderedList().insert(1, 'b');
+		peer2.processMessage(peer1.makeMessage());
+		assertEquals(peer1.getOrderedList().toList(), Arrays.asList('a', 'b'));
+		assertEquals(peer2.getOrderedList().toList(), Arrays.asList('a', 'b'));
+	}
+
+	@Test
+	public void testSendReferencedItemAsTombstone() { // should send deleted items that are referenced as tombstones
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.setCoalescing(true);
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').remove(0);
+		Message message = peer1.makeMessage();
+		List<Operation> ops = new ArrayList<Operation>(message.getOperations());
+		assertEquals(ops, Arrays.<Operation>asList(
+				new InsertOp<Character>(null, id(1, "peer1"), 'a', id(3, "peer1")),
+				new InsertOp<Character>(id(1, "peer1"), id(2, "peer1"), 'b')));
+		peer2.processMessage(message);
+		assertEquals(peer2.getOrderedList().toList(), Arrays.asList('b'));
+		assertEquals(peer2.getOrderedList().valuesAt(1).iterator().next(), Character.valueOf('a'));
+	}
+
+	@Test
+	public void testMergeAdjacentInsertsIntoRun() { // should merge consecutive single-item inserts into a run
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.setCoalescing(true);
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c').insert(0, 'x');
+		Message message = peer1.makeMessage();
+		List<Operation> ops = new ArrayList<Operation>(message.getOperations());
+		assertEquals(ops, Arrays.<Operation>asList(
+				new InsertRunOp<Character>(null, id(1, "peer1"), Arrays.asList('a', 'b', 'c')),
+				new InsertOp<Character>(null, id(4, "peer1"), 'x')));
+		peer2.processMessage(message);
+		assertEquals(peer2.getOrderedList().toList(), Arrays.asList('x', 'a', 'b', 'c'));
+	}
+
+	@Test
+	public void testMergeClockUpdates() { // should send at most one clock update per message
+		OrderedListPeer<Character> local = new OrderedListPeer<Character>("local");
+		OrderedListPeer<Character> remote1 = new OrderedListPeer<Character>("remote1");
+		OrderedListPeer<Character> remote2 = new OrderedListPeer<Character>("remote2");
+		local.setCoalescing(true);
+		remote1.getOrderedList().insert(0, 'a');
+		local.processMessage(remote1.makeMessage());
+		local.getOrderedList().insert(1, 'b');
+		remote2.getOrderedList().insert(0, 'c');
+		local.processMessage(remote2.makeMessage());
+		local.getOrderedList().insert(2, 'd');
+
+		int clockUpdates = 0;
+		for (Operation op : local.makeMessage().getOperations())
+			if (op instanceof ClockUpdate)
+				clockUpdates++;
+		assertEquals(clockUpdates, 1);
+	}
+
+	@Test
+	public void testKeepItemReferencedByRunAfterSplit() { // should not discard an item referenced by a run left from an earlier message
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.setCoalescing(true);
+		OrderedList<Character> list = peer1.getOrderedList();
+		list.insert(0, 'q').insert(0, 'z').insert(2, 'x').insert(0, 'r').insert(4, 'a').insert(5, 'b');
+		Message message1 = peer1.makeMessage(1, Integer.MAX_VALUE);
+		// x is still buffered, and only the run of a and b refers to it
+		list.remove(3);
+		Message message2 = peer1.makeMessage();
+		peer2.processMessage(message1);
+		peer2.processMessage(message2);
+		assertEquals(list.toList(), Arrays.asList('r', 'z', 'q', 'a', 'b'));
+		assertEquals(peer2.getOrderedList().toList(), list.toList());
+	}
+
+	@Test
+	public void testCoalesceOnceWhenSplitting() { // should coalesce a buffer once however many messages it is sent in
+		final int[] coalesceCalls = {0};
+		OrderedList<Character> list = new OrderedList<Character>() {
+			@Override
+			public Deque<Operation> coalesce(Deque<Operation> operations) {
+				coalesceCalls[0]++;
+				return super.coalesce(operations);
+			}
+		};
+		Peer peer1 = new Peer(new PeerID("peer1"), list);
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.setCoalescing(true);
+		for (int i = 0; i < 100; i++)
+			list.insert(0, (char) ('a' + i % 26));
+		int messages = 0;
+		while (peer1.anythingToSend()) {
+			peer2.processMessage(peer1.makeMessage(10, Integer.MAX_VALUE));
+			messages++;
+		}
+		assertEquals(messages, 10);
+		assertEquals(coalesceCalls[0], 1);
+		assertEquals(peer1.pendingBytes(), 0);
+		assertEquals(peer2.getOrderedList().toList(), list.toList());
+	}
+}
@@ -0,0 +1,82 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.trvedata.crdt.CursorMessage;
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.Message;
+
+public class CursorSharingTest {
+	@Test
+	public void testShareLatestCursorPosition() { // should send only the latest position of the local cursor
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		ItemID a = peer1.getOrderedList().insertBeforeId(null, 'a');
+		ItemID b = peer1.getOrderedList().insertBeforeId(null, 'b');
+		peer2.processMessage(peer1.makeMessage());
+
+		peer1.getCursors().setLocalCursor(a);
+		peer1.getCursors().setLocalCursor(b);
+		CursorMessage message = peer1.getCursors().makeCursorMessage();
+		assertEquals(message.getUpdates().size(), 1);
+		assertNull(peer1.getCursors().makeCursorMessage());
+
+		peer2.getCursors().processCursorMessage(message);
+		assertEquals(peer2.getCursors().getCursor(peer1.getPeerId()), b);
+		assertEquals(peer2.getOrderedList().indexOfId(b), 1);
+	}
+
+	@Test
+	public void testIgnoreStaleCursorUpdates() { // should ignore cursor updates that arrive out of order
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		ItemID a = peer1.getOrderedList().insertBeforeId(null, 'a');
+		peer1.getCursors().setLocalCursor(a);
+		CursorMessage first = peer1.getCursors().makeCursorMessage();
+		peer1.getCursors().setLocalCursor(null);
+		CursorMessage second = peer1.getCursors().makeCursorMessage();
+
+		peer2.getCursors().processCursorMessage(second);
+		peer2.getCursors().processCursorMessage(first);
+		assertTrue(peer2.getCursors().hasCursor(peer1.getPeerId()));
+		assertNull(peer2.getCursors().getCursor(peer1.getPeerId()));
+	}
+
+	@Test
+	public void testCursorsBypassCausalDelivery() { // should apply cursor positions before the items they refer to
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		ItemID a = peer1.getOrderedList().insertBeforeId(null, 'a');
+		peer1.getCursors().setLocalCursor(a);
+		Message message = peer1.makeMessage();
+
+		peer2.getCursors().processCursorMessage(peer1.getCursors().makeCursorMessage());
+		assertEquals(peer2.getCursors().getCursor(peer1.getPeerId()), a);
+		assertEquals(peer2.getOrderedList().indexOfId(a), -1);
+		assertFalse(peer2.anythingToSend());
+
+		peer2.processMessage(message);
+		assertEquals(peer2.getOrderedList().indexOfId(a), 0);
+	}
+
+	@Test
+	public void testAcceptCursorAfterRestart() { // should accept a restarted peer's cursor although its sequence number is lower
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		ItemID a = peer1.getOrderedList().insertBeforeId(null, 'a');
+		ItemID b = peer1.getOrderedList().insertBeforeId(null, 'b');
+		peer2.processMessage(peer1.makeMessage());
+		for (int i = 0; i < 5; i++)
+			peer1.getCursors().setLocalCursor(a);
+		peer2.getCursors().processCursorMessage(peer1.getCursors().makeCursorMessage());
+
+		OrderedListPeer<Character> restarted = new OrderedListPeer<Character>("peer1");
+		restarted.getCursors().setLocalCursor(b);
+		peer2.getCursors().processCursorMessage(restarted.getCursors().makeCursorMessage());
+		assertEquals(peer2.getCursors().getCursor(peer1.getPeerId()), b);
+	}
+}
@@ -0,0 +1,76 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.trvedata.crdt.VersionVector;
+
+public class DiffTest {
+
+	@Test
+	public void testDiffAsRuns() { // should describe the changes between versions as retain/insert/delete runs
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c');
+		peer2.processMessage(peer1.makeMessage());
+		VersionVector v1 = peer2.getVersionVector();
+		peer2.getOrderedList().remove(1).insert(0, 'x').insert(4, 'd');
+		VersionVector v2 = peer2.getVersionVector();
+
+		OrderedList<Character> list = peer2.getOrderedList();
+		assertEquals(list.diff(v1, v2).toString(), "[INSERT [x], RETAIN 1, DELETE 1, RETAIN 1, INSERT [d]]");
+		assertEquals(list.diff(v2, v1).toString(), "[DELETE 1, RETAIN 1, INSERT [b], RETAIN 1, DELETE 1]");
+		assertEquals(list.diff(v1, v2).applyTo(Arrays.asList('a', 'b', 'c')), Arrays.asList('x', 'a', 'c', 'd'));
+		assertTrue(list.diff(v2, v2).isEmpty());
+	}
+
+	@Test
+	public void testSmallEditInLargeList() { // should produce a compact diff for a small edit far into the list
+		OrderedListPeer<Integer> peer = new OrderedListPeer<Integer>("peer1");
+		OrderedList<Integer> list = peer.getOrderedList();
+		for (int i = 0; i < 10000; i++)
+			list.insertBeforeId(null, i);
+		VersionVector before = peer.getVersionVector();
+		list.remove(5000).insert(7000, -1);
+		ListDelta<Integer> delta = list.diff(before, peer.getVersionVector());
+		assertEquals(delta.toString(), "[RETAIN 5000, DELETE 1, RETAIN 2000, INSERT [-1]]");
+	}
+
+	@Test
+	public void testRandomDiffsMatchVersions() { // should turn any recorded version into any other
+		Random random = new Random(7);
+		OrderedListPeer<Integer> peer1 = new OrderedListPeer<Integer>("peer1");
+		OrderedListPeer<Integer> peer2 = new OrderedListPeer<Integer>("peer2");
+		List<VersionVector> versions = new ArrayList<VersionVector>();
+		for (int i = 0; i < 1000; i++) {
+			OrderedListPeer<Integer> peer = random.nextBoolean() ? peer1 : peer2;
+			OrderedList<Integer> list = peer.getOrderedList();
+			if (list.size() > 0 && random.nextInt(3) == 0)
+				list.remove(random.nextInt(list.size()));
+			else
+				list.insert(random.nextInt(list.size() + 1), i);
+			if (i % 20 == 0) {
+				peer2.processMessage(peer1.makeMessage());
+				peer1.processMessage(peer2.makeMessage());
+				versions.add(peer1.getVersionVector());
+			}
+		}
+		OrderedList<Integer> list = peer1.getOrderedList();
+		for (int i = 0; i < 50; i++) {
+			VersionVector from = versions.get(random.nextInt(versions.size()));
+			VersionVector to = versions.get(random.nextInt(versions.size()));
+			List<Integer> fromValues = new ArrayList<Integer>(), toValues = new ArrayList<Integer>();
+			for (Integer value : list.valuesAt(from))
+				fromValues.add(value);
+			for (Integer value : list.valuesAt(to))
+				toValues.add(value);
+			assertEquals(list.diff(from, to).applyTo(fromValues), toValues);
+		}
+	}
+}
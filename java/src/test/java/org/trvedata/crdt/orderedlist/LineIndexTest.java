@@ -0,0 +1,69 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LineIndexTest {
+	private static String textOf(Iterable<Character> values) {
+		StringBuilder text = new StringBuilder();
+		for (Character value : values)
+			text.append(value);
+		return text.toString();
+	}
+
+	@Test
+	public void testLineConversions() { // should convert between offsets and lines, following remote edits
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		OrderedList<Character> list = peer2.getOrderedList();
+		list.enableLineIndex('\n');
+		String text = "ab\ncd\n\nefg";
+		for (int i = 0; i < text.length(); i++)
+			peer1.getOrderedList().insert(i, text.charAt(i));
+		peer2.processMessage(peer1.makeMessage());
+
+		assertEquals(list.lineCount(), 4);
+		assertEquals(list.lineStartOffset(1), 3);
+		assertEquals(list.lineStartOffset(3), 7);
+		assertEquals(list.lineOfOffset(4), 1);
+		assertEquals(list.columnOfOffset(8), 1);
+		assertEquals(list.lineOfOffset(list.size()), 3);
+		assertEquals(textOf(list.valuesInLines(1, 3)), "cd\n\n");
+
+		peer1.getOrderedList().remove(2);
+		peer2.processMessage(peer1.makeMessage());
+		assertEquals(list.lineCount(), 3);
+		assertEquals(textOf(list.valuesInLines(0, 1)), "abcd\n");
+	}
+
+	@Test
+	public void testRandomEdits() { // should agree with a scan of the text after many edits
+		Random random = new Random(3);
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer1");
+		OrderedList<Character> list = peer.getOrderedList();
+		list.insert(0, 'x').insert(1, '\n');
+		list.enableLineIndex('\n');
+		for (int i = 0; i < 3000; i++) {
+			if (list.size() > 0 && random.nextInt(3) == 0)
+				list.remove(random.nextInt(list.size()));
+			else
+				list.insert(random.nextInt(list.size() + 1), random.nextInt(5) == 0 ? '\n' : 'a');
+		}
+		List<Character> values = list.toList();
+		String text = textOf(values);
+		String[] lines = text.split("\n", -1);
+		assertEquals(list.lineCount(), lines.length);
+		int offset = 0;
+		for (int line = 0; line < lines.length; line++) {
+			assertEquals(list.lineStartOffset(line), offset);
+			assertEquals(list.lineOfOffset(offset), line);
+			assertEquals(textOf(list.valuesInLines(line, line + 1)), line < lines.length - 1 ? lines[line] + "\n" : lines[line]);
+			offset += lines[line].length() + 1;
+		}
+		assertEquals(textOf(list.valuesInRange(5, 50)), text.substring(5, 50));
+	}
+}
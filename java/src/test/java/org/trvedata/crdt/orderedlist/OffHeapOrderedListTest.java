@@ -0,0 +1,106 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.Peer;
+import org.trvedata.crdt.StateDelta;
+
+public class OffHeapOrderedListTest {
+
+	@Test
+	public void testInteroperatesWithOrderedList() { // should converge with a peer that keeps its list on the heap
+		Random random = new Random(5);
+		OrderedListPeer<Character> heapPeer = new OrderedListPeer<Character>("peer1");
+		OffHeapOrderedList<Character> offHeap = new OffHeapOrderedList<Character>(FixedSizeCodec.CHARACTER);
+		Peer offHeapPeer = new Peer("peer2", offHeap);
+		heapPeer.setCoalescing(true);
+		for (int round = 0; round < 50; round++) {
+			for (int i = 0; i < 10; i++) {
+				OrderedList<Character> list = heapPeer.getOrderedList();
+				if (list.size() > 0 && random.nextInt(3) == 0)
+					list.remove(random.nextInt(list.size()));
+				else
+					list.insert(random.nextInt(list.size() + 1), (char) ('a' + random.nextInt(26)));
+				if (offHeap.size() > 0 && random.nextInt(3) == 0)
+					offHeap.remove(random.nextInt(offHeap.size()));
+				else
+					offHeap.insert(random.nextInt(offHeap.size() + 1), (char) ('A' + random.nextInt(26)));
+			}
+			offHeapPeer.processMessage(heapPeer.makeMessage());
+			heapPeer.processMessage(offHeapPeer.makeMessage());
+			assertEquals(offHeap.toList(), heapPeer.getOrderedList().toList());
+		}
+	}
+
+	@Test
+	public void testStateDeltas() { // should join from a state delta and produce one for another peer
+		OrderedListPeer<Character> heapPeer = new OrderedListPeer<Character>("peer1");
+		heapPeer.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c').remove(1);
+		heapPeer.makeMessage();
+
+		OffHeapOrderedList<Character> offHeap = new OffHeapOrderedList<Character>(FixedSizeCodec.CHARACTER);
+		Peer offHeapPeer = new Peer("peer2", offHeap);
+		offHeapPeer.applyStateDelta(heapPeer.makeStateDelta(offHeapPeer.getVersionVector()));
+		assertEquals(offHeap.toList(), Arrays.asList('a', 'c'));
+		assertEquals(offHeap.tombstoneCount(), 1);
+		offHeap.insert(2, 'd').remove(0);
+		offHeapPeer.makeMessage();
+
+		OrderedListPeer<Character> joiner = new OrderedListPeer<Character>("peer3");
+		StateDelta delta = offHeapPeer.makeStateDelta(joiner.getVersionVector());
+		assertEquals(delta.getOperations().size(), 4);
+		joiner.applyStateDelta(delta);
+		assertEquals(joiner.getOrderedList().toList(), Arrays.asList('c', 'd'));
+		assertEquals(joiner.getOrderedList().tombstoneCount(), 2);
+	}
+
+	@Test
+	public void testLargeList() { // should grow beyond one chunk of records and find items by ID
+		OffHeapOrderedList<Long> list = new OffHeapOrderedList<Long>(FixedSizeCodec.LONG);
+		new Peer("peer1", list);
+		ItemID middle = null;
+		for (long i = 0; i < 200000; i++) {
+			ItemID id = list.insertBeforeId(null, i);
+			if (i == 100000)
+				middle = id;
+		}
+		list.insertBeforeId(middle, -1L);
+		assertEquals(list.size(), 200001);
+		assertEquals(list.toList().get(100000), Long.valueOf(-1));
+		assertEquals(list.toList().get(100001), Long.valueOf(100000));
+		assertTrue(list.offHeapBytes() >= 200000L * 40);
+	}
+
+	@Test
+	public void testEditByIndex() { // should find items by index through the position tree as the list is edited
+		Random random = new Random(11);
+		OffHeapOrderedList<Long> list = new OffHeapOrderedList<Long>(FixedSizeCodec.LONG);
+		new Peer("peer1", list);
+		List<Long> expected = new ArrayList<Long>();
+		for (long i = 0; i < 20000; i++) {
+			int op = random.nextInt(4);
+			if (op == 0 && !expected.isEmpty()) {
+				int index = random.nextInt(expected.size());
+				list.remove(index);
+				expected.remove(index);
+			} else if (op == 1) {
+				list.insert(expected.size(), i);
+				expected.add(i);
+			} else {
+				int index = random.nextInt(expected.size() + 1);
+				list.insert(index, i);
+				expected.add(index, i);
+			}
+		}
+		assertEquals(list.size(), expected.size());
+		assertEquals(list.toList(), expected);
+	}
+}
@@ -0,0 +1,68 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.trvedata.crdt.Peer;
+
+public class PagedOrderedListTest {
+	private static final long TWO_PAGES = 2 * PagedOrderedList.PAGE_BYTES;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// Pages that are not written back read as zeros, which link the items into a cycle rather than failing an assertion
+	@Test(timeout = 60000)
+	public void testEvictAndWriteBack() throws IOException { // should write evicted pages to the file and read them back intact
+		File file = folder.newFile("list");
+		PagedOrderedList<Long> list = new PagedOrderedList<Long>(FixedSizeCodec.LONG, file, TWO_PAGES);
+		try {
+			new Peer("peer1", list);
+			List<Long> expected = new ArrayList<Long>();
+			// Inserting at the front and the middle links records on many pages, which are evicted while still dirty
+			for (long i = 0; i < 10000; i++) {
+				int index = (int) (i % 3 == 0 ? 0 : i / 2);
+				list.insert(index, i);
+				expected.add(index, i);
+			}
+			for (int i = 0; i < 1000; i++) {
+				list.remove(i * 3);
+				expected.remove(i * 3);
+			}
+			assertEquals(list.residentBytes(), TWO_PAGES);
+			assertTrue(list.offHeapBytes() > 4 * PagedOrderedList.PAGE_BYTES);
+			assertTrue(file.length() > TWO_PAGES);
+
+			long faults = list.pageFaults();
+			assertEquals(list.toList(), expected);
+			assertTrue(list.pageFaults() > faults);
+			assertEquals(list.residentBytes(), TWO_PAGES);
+		} finally {
+			list.close();
+		}
+	}
+
+	@Test
+	public void testCloseDeletesFiles() throws IOException { // should delete the records and index files when closed
+		File file = folder.newFile("list");
+		File index = new File(file.getPath() + ".index");
+		PagedOrderedList<Long> list = new PagedOrderedList<Long>(FixedSizeCodec.LONG, file, TWO_PAGES);
+		new Peer("peer1", list);
+		for (long i = 0; i < 100; i++)
+			list.insert((int) (i / 2), i);
+		assertTrue(file.exists());
+		assertTrue(index.exists());
+		list.close();
+		assertFalse(file.exists());
+		assertFalse(index.exists());
+	}
+}
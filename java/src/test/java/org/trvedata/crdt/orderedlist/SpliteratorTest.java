@@ -0,0 +1,52 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class SpliteratorTest {
+
+	@Test
+	public void testSplitSizes() { // should split into parts of exactly known size
+		OrderedListPeer<Integer> peer = new OrderedListPeer<Integer>("peer1");
+		OrderedList<Integer> list = peer.getOrderedList();
+		for (int i = 0; i < 10; i++)
+			list.insert(i, i);
+		list.remove(0).remove(4);
+		Spliterator<Integer> suffix = list.spliterator();
+		assertEquals(suffix.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED), true);
+		Spliterator<Integer> prefix = suffix.trySplit();
+		assertEquals(prefix.estimateSize(), 4);
+		assertEquals(suffix.estimateSize(), 4);
+		final StringBuilder values = new StringBuilder();
+		Consumer<Integer> append = new Consumer<Integer>() {
+			@Override
+			public void accept(Integer value) {
+				values.append(value);
+			}
+		};
+		while (prefix.tryAdvance(append))
+			;
+		values.append('|');
+		suffix.forEachRemaining(append);
+		assertEquals(values.toString(), "1234|6789");
+	}
+
+	@Test
+	public void testParallelStream() { // should give the same result as a sequential traversal
+		OrderedListPeer<Integer> peer = new OrderedListPeer<Integer>("peer1");
+		OrderedList<Integer> list = peer.getOrderedList();
+		for (int i = 0; i < 20000; i++)
+			list.insertBeforeId(null, i);
+		for (int i = 0; i < 5000; i++)
+			list.remove(i);
+		List<Integer> parallel = list.parallelStream().collect(Collectors.toList());
+		assertEquals(parallel, list.toList());
+		assertEquals(list.parallelStream().count(), 15000);
+	}
+}
@@ -0,0 +1,97 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.PeerID;
+
+public class TextSearchIndexTest {
+	private static String textOf(OrderedList<Character> list) {
+		StringBuilder text = new StringBuilder();
+		for (Character value : list)
+			text.append(value);
+		return text.toString();
+	}
+
+	private static List<Integer> startsOf(List<ItemRange> ranges, OrderedList<Character> list) {
+		List<Integer> starts = new ArrayList<Integer>();
+		for (ItemRange range : ranges)
+			starts.add(range.startIndex(list));
+		Collections.sort(starts);
+		return starts;
+	}
+
+	private static List<Integer> scan(String text, String query) {
+		List<Integer> starts = new ArrayList<Integer>();
+		for (int i = text.indexOf(query); i >= 0; i = text.indexOf(query, i + 1))
+			starts.add(i);
+		return starts;
+	}
+
+	@Test
+	public void testMatchesFollowRemoteEdits() { // should find text inserted remotely and keep ranges stable
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		TextSearchIndex index = new TextSearchIndex(peer2.getOrderedList(), 3);
+		String text = "the cat sat on the mat";
+		for (int i = 0; i < text.length(); i++)
+			peer1.getOrderedList().insert(i, text.charAt(i));
+		peer2.processMessage(peer1.makeMessage());
+
+		OrderedList<Character> list = peer2.getOrderedList();
+		List<ItemRange> matches = index.find("the");
+		assertEquals(startsOf(matches, list).toString(), "[0, 15]");
+		assertEquals(startsOf(index.find("at"), list).toString(), "[5, 9, 20]");
+
+		peer1.getOrderedList().insert(0, '>').remove(5);
+		peer2.processMessage(peer1.makeMessage());
+		assertEquals(textOf(list), ">the at sat on the mat");
+		assertEquals(startsOf(matches, list).toString(), "[1, 15]");
+		assertEquals(matches.get(0).endIndex(list) - matches.get(0).startIndex(list), 3);
+		assertEquals(index.find("cat").size(), 0);
+		assertEquals(startsOf(index.find("e at"), list).toString(), "[3]");
+	}
+
+	@Test
+	public void testRandomEdits() { // should agree with a scan of the text after many local edits
+		Random random = new Random(11);
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer1");
+		OrderedList<Character> list = peer.getOrderedList();
+		list.insert(0, 'a').insert(1, 'b');
+		TextSearchIndex index = new TextSearchIndex(list, 3);
+		for (int i = 0; i < 3000; i++) {
+			if (list.size() > 0 && random.nextInt(3) == 0)
+				list.remove(random.nextInt(list.size()));
+			else
+				list.insert(random.nextInt(list.size() + 1), (char) ('a' + random.nextInt(3)));
+		}
+		String text = textOf(list);
+		for (String query : new String[] { "a", "ab", "abc", "cab", "abca", "bbbb" })
+			assertEquals(startsOf(index.find(query), list), scan(text, query));
+	}
+
+	@Test
+	public void testIgnoreTombstoneInserts() { // should not index items that arrive already deleted
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		TextSearchIndex index = new TextSearchIndex(peer2.getOrderedList(), 2);
+		peer1.setCoalescing(true);
+		// b is referenced by c, so it is sent as the insertion of a tombstone
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c').remove(1);
+		peer2.processMessage(peer1.makeMessage());
+		// Tombstones may also arrive without a value, e.g. in the state delta of an off-heap list
+		PeerID peer3 = new PeerID("peer3");
+		peer2.getOrderedList().applyOperation(new InsertOp<Character>(null, new ItemID(1, peer3), null, new ItemID(2, peer3)));
+
+		OrderedList<Character> list = peer2.getOrderedList();
+		assertEquals(textOf(list), "ac");
+		assertEquals(startsOf(index.find("ac"), list).toString(), "[0]");
+		assertEquals(index.find("b").size(), 0);
+	}
+}
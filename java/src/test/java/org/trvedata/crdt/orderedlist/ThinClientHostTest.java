@@ -0,0 +1,137 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ThinClientHostTest {
+
+	@Test
+	public void testEditInSync() { // should apply a client's edit and acknowledge it in the next update
+		OrderedListPeer<Character> server = new OrderedListPeer<Character>("server");
+		server.getOrderedList().insert(0, 'a').insert(1, 'b').remove(0);
+		ThinClientHost<Character> host = new ThinClientHost<Character>(server.getOrderedList());
+		ThinClientSession<Character> session = host.openSession();
+
+		ThinClientUpdate<Character> update1 = session.makeUpdate();
+		List<Character> content = update1.getDelta().applyTo(new ArrayList<Character>());
+		assertEquals(content, Arrays.asList('b'));
+		assertNull(session.makeUpdate());
+
+		session.applyEdit(new ThinClientEdit<Character>(1, update1.getSeq(), new ListDelta<Character>().insert('x').retain(1).insert('y')));
+		assertEquals(server.getOrderedList().toList(), Arrays.asList('x', 'b', 'y'));
+		ThinClientUpdate<Character> update2 = session.makeUpdate();
+		assertEquals(update2.getAckedEditSeq(), 1);
+		content = update2.getDelta().applyTo(content);
+		assertEquals(content, Arrays.asList('x', 'b', 'y'));
+	}
+
+	@Test
+	public void testEditConcurrentWithPeer() { // should apply an edit to the items the client saw despite remote changes
+		OrderedListPeer<Character> server = new OrderedListPeer<Character>("server");
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer");
+		ThinClientHost<Character> host = new ThinClientHost<Character>(server.getOrderedList());
+		server.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c');
+		peer.processMessage(server.makeMessage());
+		ThinClientSession<Character> session = host.openSession();
+		ThinClientUpdate<Character> update1 = session.makeUpdate();
+		List<Character> content = update1.getDelta().applyTo(new ArrayList<Character>());
+
+		peer.getOrderedList().insert(0, 'p').remove(2);
+		server.processMessage(peer.makeMessage());
+		session.applyEdit(new ThinClientEdit<Character>(1, update1.getSeq(), new ListDelta<Character>().retain(1).delete(1).insert('x')));
+		assertEquals(server.getOrderedList().toList(), Arrays.asList('p', 'a', 'x', 'c'));
+
+		ThinClientUpdate<Character> update2 = session.makeUpdate();
+		content = update2.getDelta().applyTo(content);
+		assertEquals(content, server.getOrderedList().toList());
+		peer.processMessage(server.makeMessage());
+		assertEquals(peer.getOrderedList().toList(), content);
+	}
+
+	@Test
+	public void testConcurrentDeleteOfSameItem() { // should not send a delete again when a peer deleted the same item concurrently
+		OrderedListPeer<Character> server = new OrderedListPeer<Character>("server");
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer");
+		ThinClientHost<Character> host = new ThinClientHost<Character>(server.getOrderedList());
+		server.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c');
+		peer.processMessage(server.makeMessage());
+		ThinClientSession<Character> session = host.openSession();
+		List<Character> content = session.makeUpdate().getDelta().applyTo(new ArrayList<Character>());
+
+		server.getOrderedList().remove(1);
+		peer.getOrderedList().remove(1);
+		content = session.makeUpdate().getDelta().applyTo(content);
+		assertEquals(content, Arrays.asList('a', 'c'));
+
+		server.processMessage(peer.makeMessage());
+		ThinClientUpdate<Character> update = session.makeUpdate();
+		assertTrue(update.getDelta().isEmpty());
+		content = update.getDelta().applyTo(content);
+		assertEquals(server.getOrderedList().toList(), content);
+	}
+
+	@Test
+	public void testForgetAcknowledgedUpdates() { // should keep only the versions of updates the client may still edit
+		OrderedListPeer<Character> server = new OrderedListPeer<Character>("server");
+		ThinClientSession<Character> session = new ThinClientHost<Character>(server.getOrderedList()).openSession();
+		for (char c = 'a'; c <= 'e'; c++) {
+			server.getOrderedList().insert(0, c);
+			session.makeUpdate();
+		}
+		assertEquals(session.sentVersionCount(), 6);
+		session.acknowledgeUpdate(4);
+		assertEquals(session.sentVersionCount(), 2);
+		session.acknowledgeUpdate(2);
+		assertEquals(session.sentVersionCount(), 2);
+
+		session.applyEdit(new ThinClientEdit<Character>(1, 5, new ListDelta<Character>().insert('x')));
+		assertEquals(session.sentVersionCount(), 1);
+		assertEquals(server.getOrderedList().toList(), Arrays.asList('x', 'e', 'd', 'c', 'b', 'a'));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectEditOnForgottenUpdate() { // should reject an edit based on an update older than an acknowledged one
+		OrderedListPeer<Character> server = new OrderedListPeer<Character>("server");
+		ThinClientSession<Character> session = new ThinClientHost<Character>(server.getOrderedList()).openSession();
+		server.getOrderedList().insert(0, 'a');
+		session.makeUpdate();
+		session.acknowledgeUpdate(1);
+		session.applyEdit(new ThinClientEdit<Character>(1, 0, new ListDelta<Character>().insert('b')));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRejectSecondOutstandingEdit() { // should only accept an edit after the previous one was acknowledged
+		OrderedListPeer<Character> server = new OrderedListPeer<Character>("server");
+		ThinClientSession<Character> session = new ThinClientHost<Character>(server.getOrderedList()).openSession();
+		session.applyEdit(new ThinClientEdit<Character>(1, 0, new ListDelta<Character>().insert('a')));
+		session.applyEdit(new ThinClientEdit<Character>(2, 0, new ListDelta<Character>().insert('b')));
+	}
+
+	@Test
+	public void testRejectEditBeyondEndWithoutChanges() { // should leave the list unchanged when an edit deletes beyond its end
+		OrderedListPeer<Character> server = new OrderedListPeer<Character>("server");
+		ThinClientSession<Character> session = new ThinClientHost<Character>(server.getOrderedList()).openSession();
+		server.getOrderedList().insert(0, 'a').insert(1, 'b');
+		server.makeMessage();
+		session.makeUpdate();
+		try {
+			session.applyEdit(new ThinClientEdit<Character>(1, 1, new ListDelta<Character>().insert('x').delete(3)));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(server.getOrderedList().toList(), Arrays.asList('a', 'b'));
+		assertFalse(server.anythingToSend());
+
+		session.applyEdit(new ThinClientEdit<Character>(1, 1, new ListDelta<Character>().insert('x').delete(1)));
+		assertEquals(server.getOrderedList().toList(), Arrays.asList('x', 'b'));
+	}
+}
@@ -28,4 +28,16 @@ public class ToArrayTest {
 		peer.getOrderedList().insert(0, 'a').insert(1, 'b').remove(0);
 		assertEquals(peer.getOrderedList().toList(), Arrays.asList('b'));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testToArray() { // should copy the items into an array of the right size
+		OrderedListPeer<Character> peer = new OrderedListPeer<Character>("peer1");
+		peer.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c').remove(1);
+		assertEquals(Arrays.asList(peer.getOrderedList().toArray()), Arrays.<Object>asList('a', 'c'));
+		Character[] array = peer.getOrderedList().toArray(new Character[3]);
+		assertEquals(Arrays.asList(array), Arrays.asList('a', 'c', null));
+		Object[] target = new Object[4];
+		assertEquals(peer.getOrderedList().copyInto(target, 2), 2);
+		assertEquals(Arrays.asList(target), Arrays.<Object>asList(null, null, 'a', 'c'));
+	}
+}
@@ -0,0 +1,122 @@
+package org.trvedata.crdt.orderedlist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.Message;
+import org.trvedata.crdt.StateDelta;
+import org.trvedata.crdt.VersionVector;
+
+public class VersionReadTest {
+	private static <T> List<T> listOf(Iterable<T> values) {
+		List<T> list = new ArrayList<T>();
+		for (T value : values)
+			list.add(value);
+		return list;
+	}
+
+	@Test
+	public void testReadAtVersionVector() { // should return the list as it was when the version vector was taken
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c');
+		peer2.processMessage(peer1.makeMessage());
+		VersionVector v1 = peer2.getVersionVector();
+
+		peer2.getOrderedList().remove(1).insert(0, 'x');
+		peer1.getOrderedList().insert(3, 'd');
+		VersionVector v2 = peer2.getVersionVector();
+		peer2.processMessage(peer1.makeMessage());
+		peer1.processMessage(peer2.makeMessage());
+
+		OrderedList<Character> list = peer1.getOrderedList();
+		assertEquals(listOf(list.valuesAt(v1)), Arrays.asList('a', 'b', 'c'));
+		assertEquals(listOf(list.valuesAt(v2)), Arrays.asList('x', 'a', 'c'));
+		assertEquals(listOf(list.valuesAt(peer1.getVersionVector())), list.toList());
+		assertEquals(listOf(list.valuesAt(new VersionVector())), Arrays.<Character>asList());
+	}
+
+	@Test
+	public void testConcurrentDeletesInAnyOrder() { // should read the same versions whichever concurrent delete arrives first
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedListPeer<Character> peer2 = new OrderedListPeer<Character>("peer2");
+		OrderedListPeer<Character> peer3 = new OrderedListPeer<Character>("peer3");
+		OrderedListPeer<Character> peer4 = new OrderedListPeer<Character>("peer4");
+		peer1.getOrderedList().insert(0, 'a').insert(1, 'b').insert(2, 'c');
+		Message msg0 = peer1.makeMessage();
+		for (OrderedListPeer<Character> peer : Arrays.asList(peer2, peer3, peer4))
+			peer.processMessage(msg0);
+		VersionVector before = peer2.getVersionVector();
+
+		peer1.getOrderedList().remove(1);
+		Message msg1 = peer1.makeMessage();
+		peer2.getOrderedList().remove(1);
+		Message msg2 = peer2.makeMessage();
+		VersionVector onlyPeer1 = peer1.getVersionVector(), onlyPeer2 = peer2.getVersionVector();
+		peer3.processMessage(msg1);
+		peer3.processMessage(msg2);
+		peer4.processMessage(msg2);
+		peer4.processMessage(msg1);
+
+		for (OrderedListPeer<Character> peer : Arrays.asList(peer3, peer4)) {
+			OrderedList<Character> list = peer.getOrderedList();
+			assertEquals(listOf(list.valuesAt(before)), Arrays.asList('a', 'b', 'c'));
+			assertEquals(listOf(list.valuesAt(onlyPeer1)), Arrays.asList('a', 'c'));
+			assertEquals(listOf(list.valuesAt(onlyPeer2)), Arrays.asList('a', 'c'));
+			assertEquals(listOf(list.valuesAt(peer.getVersionVector())), Arrays.asList('a', 'c'));
+			assertTrue(list.diff(onlyPeer1, onlyPeer2).isEmpty());
+		}
+		StateDelta delta = peer3.makeStateDelta(onlyPeer2);
+		assertEquals(delta.getOperations().size(), 1);
+		peer2.applyStateDelta(delta);
+		assertEquals(listOf(peer2.getOrderedList().valuesAt(onlyPeer1)), Arrays.asList('a', 'c'));
+	}
+
+	@Test
+	public void testReadAtLamportBound() { // should return the list as of a logical timestamp
+		OrderedListPeer<Character> peer1 = new OrderedListPeer<Character>("peer1");
+		OrderedList<Character> list = peer1.getOrderedList();
+		list.insert(0, 'a').insert(1, 'b');
+		long ts = peer1.getVersionVector().get(peer1.getPeerId());
+		list.remove(0).insert(1, 'c');
+		assertEquals(listOf(list.valuesAt(ts)), Arrays.asList('a', 'b'));
+		assertEquals(listOf(list.valuesAt(ts + 1)), Arrays.asList('b'));
+		assertEquals(listOf(list.valuesAt(Long.MAX_VALUE)), Arrays.asList('b', 'c'));
+	}
+
+	@Test
+	public void testRandomEditsMatchRecordedVersions() { // should keep indexes and versions consistent over many edits
+		Random random = new Random(42);
+		OrderedListPeer<Integer> peer = new OrderedListPeer<Integer>("peer1");
+		OrderedList<Integer> list = peer.getOrderedList();
+		List<VersionVector> versions = new ArrayList<VersionVector>();
+		List<List<Integer>> contents = new ArrayList<List<Integer>>();
+		List<ItemID> ids = new ArrayList<ItemID>();
+		for (int i = 0; i < 2000; i++) {
+			if (list.size() > 0 && random.nextInt(3) == 0) {
+				int index = random.nextInt(list.size());
+				list.remove(index);
+				ids.remove(index);
+			} else {
+				int index = random.nextInt(list.size() + 1);
+				ItemID cursorId = index == ids.size() ? null : ids.get(index);
+				ids.add(index, list.insertBeforeId(cursorId, i));
+			}
+			if (i % 50 == 0) {
+				versions.add(peer.getVersionVector());
+				contents.add(list.toList());
+			}
+		}
+		for (int i = 0; i < ids.size(); i++)
+			assertEquals(list.indexOfId(ids.get(i)), i);
+		for (int i = 0; i < versions.size(); i++)
+			assertEquals(listOf(list.valuesAt(versions.get(i))), contents.get(i));
+	}
+}
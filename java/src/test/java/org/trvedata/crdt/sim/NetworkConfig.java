@@ -0,0 +1,68 @@
+package org.trvedata.crdt.sim;
+
+/**
+ * Behaviour of a {@link SimulatedNetwork}. Each message takes a latency drawn uniformly between minLatencyMillis and
+ * maxLatencyMillis, so messages from different senders are reordered. Each transmission is lost with probability
+ * dropProbability and retransmitted after retransmitTimeoutMillis; with the same probability the acknowledgement is
+ * lost, so that a message that did arrive is delivered a second time. With probability reorderProbability a message
+ * does not wait for the messages sent before it on the same link, like a datagram, so that it may overtake them.
+ */
+public class NetworkConfig {
+	private long minLatencyMillis = 10;
+	private long maxLatencyMillis = 100;
+	private double dropProbability = 0;
+	private long retransmitTimeoutMillis = 500;
+	private double reorderProbability = 0;
+
+	public long getMinLatencyMillis() {
+		return minLatencyMillis;
+	}
+
+	public long getMaxLatencyMillis() {
+		return maxLatencyMillis;
+	}
+
+	/**
+	 * Sets the range from which the latency of each message is drawn.
+	 */
+	public NetworkConfig setLatencyMillis(long minLatencyMillis, long maxLatencyMillis) {
+		if (minLatencyMillis < 0 || maxLatencyMillis < minLatencyMillis)
+			throw new IllegalArgumentException("Invalid latency range: " + minLatencyMillis + " to " + maxLatencyMillis);
+		this.minLatencyMillis = minLatencyMillis;
+		this.maxLatencyMillis = maxLatencyMillis;
+		return this;
+	}
+
+	public double getDropProbability() {
+		return dropProbability;
+	}
+
+	public NetworkConfig setDropProbability(double dropProbability) {
+		if (dropProbability < 0 || dropProbability >= 1)
+			throw new IllegalArgumentException("dropProbability must be in [0, 1): " + dropProbability);
+		this.dropProbability = dropProbability;
+		return this;
+	}
+
+	public long getRetransmitTimeoutMillis() {
+		return retransmitTimeoutMillis;
+	}
+
+	public NetworkConfig setRetransmitTimeoutMillis(long retransmitTimeoutMillis) {
+		if (retransmitTimeoutMillis < 1)
+			throw new IllegalArgumentException("retransmitTimeoutMillis must be >= 1: " + retransmitTimeoutMillis);
+		this.retransmitTimeoutMillis = retransmitTimeoutMillis;
+		return this;
+	}
+
+	public double getReorderProbability() {
+		return reorderProbability;
+	}
+
+	public NetworkConfig setReorderProbability(double reorderProbability) {
+		if (reorderProbability < 0 || reorderProbability > 1)
+			throw new IllegalArgumentException("reorderProbability must be in [0, 1]: " + reorderProbability);
+		this.reorderProbability = reorderProbability;
+		return this;
+	}
+}
@@ -0,0 +1,182 @@
+package org.trvedata.crdt.sim;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.trvedata.crdt.Message;
+import org.trvedata.crdt.Peer;
+
+/**
+ * A fully connected virtual network between peers, driven by a {@link VirtualClock}. By default links behave like
+ * TCP connections over a lossy network: messages on one link are delivered in the order they were sent (a lost
+ * message holds up the ones behind it until it is retransmitted), but messages from different senders interleave
+ * arbitrarily. If the configuration has a reorder probability, some messages skip the queue of their link, so that
+ * peers also receive messages from one sender out of order. Retransmissions may deliver a message twice, which peers
+ * must recognise as a duplicate.
+ *
+ * The network can be partitioned into two sides. Messages sent across the partition are held back and sent when the
+ * partition heals.
+ */
+public class SimulatedNetwork {
+	private static class Link {
+		long lastDeliveryMillis = 0;
+		final ArrayDeque<Message> held = new ArrayDeque<Message>();
+	}
+
+	private final VirtualClock clock;
+	private final NetworkConfig config;
+	private final Random random;
+	private final List<Peer> peers;
+	private final Map<Long, Link> links = new HashMap<Long, Link>();
+	private boolean[] partitionSide = null;
+	private long messagesSent = 0;
+	private long messagesDelivered = 0;
+	private long duplicatesDelivered = 0;
+	private long transmissionsLost = 0;
+	private long messagesReordered = 0;
+	private long lastDeliveryMillis = 0;
+
+	public SimulatedNetwork(VirtualClock clock, NetworkConfig config, Random random, List<Peer> peers) {
+		this.clock = clock;
+		this.config = config;
+		this.random = random;
+		this.peers = peers;
+	}
+
+	/**
+	 * Sends a message from the peer with the given index to all other peers.
+	 */
+	public void broadcast(int from, Message message) {
+		for (int to = 0; to < this.peers.size(); to++) {
+			if (to != from)
+				send(from, to, message);
+		}
+	}
+
+	public void send(int from, int to, Message message) {
+		this.messagesSent++;
+		Link link = link(from, to);
+		if (isPartitioned(from, to) || !link.held.isEmpty()) {
+			link.held.addLast(message);
+			return;
+		}
+		transmit(link, to, message);
+	}
+
+	private void transmit(Link link, final int to, final Message message) {
+		long deliveryMillis = this.clock.nowMillis() + latency();
+		while (this.random.nextDouble() < this.config.getDropProbability()) {
+			deliveryMillis += this.config.getRetransmitTimeoutMillis();
+			this.transmissionsLost++;
+		}
+		// A reordered message neither waits for earlier messages nor holds up later ones
+		if (this.config.getReorderProbability() == 0 || this.random.nextDouble() >= this.config.getReorderProbability()) {
+			deliveryMillis = Math.max(deliveryMillis, link.lastDeliveryMillis);
+			link.lastDeliveryMillis = deliveryMillis;
+		} else {
+			this.messagesReordered++;
+		}
+		Runnable delivery = new Runnable() {
+			@Override
+			public void run() {
+				deliver(to, message);
+			}
+		};
+		this.clock.scheduleAt(deliveryMillis, delivery);
+		if (this.random.nextDouble() < this.config.getDropProbability())
+			this.clock.scheduleAt(deliveryMillis + this.config.getRetransmitTimeoutMillis(), delivery);
+	}
+
+	private void deliver(int to, Message message) {
+		if (this.peers.get(to).processMessage(message))
+			this.messagesDelivered++;
+		else
+			this.duplicatesDelivered++;
+		this.lastDeliveryMillis = this.clock.nowMillis();
+	}
+
+	private long latency() {
+		long range = this.config.getMaxLatencyMillis() - this.config.getMinLatencyMillis();
+		return this.config.getMinLatencyMillis() + (range == 0 ? 0 : (long) (this.random.nextDouble() * (range + 1)));
+	}
+
+	private Link link(int from, int to) {
+		Long key = (long) from * this.peers.size() + to;
+		Link link = this.links.get(key);
+		if (link == null) {
+			link = new Link();
+			this.links.put(key, link);
+		}
+		return link;
+	}
+
+	private boolean isPartitioned(int from, int to) {
+		return this.partitionSide != null && this.partitionSide[from] != this.partitionSide[to];
+	}
+
+	/**
+	 * Cuts the links between the given peers and all others, until {@link #heal()} is called.
+	 */
+	public void partition(Collection<Integer> side) {
+		this.partitionSide = new boolean[this.peers.size()];
+		for (int peer : side)
+			this.partitionSide[peer] = true;
+	}
+
+	/**
+	 * Ends a partition, sending all messages that were held back in their original order.
+	 */
+	public void heal() {
+		this.partitionSide = null;
+		for (Map.Entry<Long, Link> entry : this.links.entrySet()) {
+			Link link = entry.getValue();
+			int to = (int) (entry.getKey() % this.peers.size());
+			while (!link.held.isEmpty())
+				transmit(link, to, link.held.pollFirst());
+		}
+	}
+
+	public boolean isPartitioned() {
+		return this.partitionSide != null;
+	}
+
+	/**
+	 * Number of messages sent, counting each recipient of a broadcast separately.
+	 */
+	public long messagesSent() {
+		return messagesSent;
+	}
+
+	public long messagesDelivered() {
+		return messagesDelivered;
+	}
+
+	/**
+	 * Number of deliveries that peers recognised as duplicates of earlier ones.
+	 */
+	public long duplicatesDelivered() {
+		return duplicatesDelivered;
+	}
+
+	public long transmissionsLost() {
+		return transmissionsLost;
+	}
+
+	/**
+	 * Number of transmissions that were allowed to overtake earlier messages on their link.
+	 */
+	public long messagesReordered() {
+		return messagesReordered;
+	}
+
+	/**
+	 * Virtual time at which the most recent message was delivered.
+	 */
+	public long lastDeliveryMillis() {
+		return lastDeliveryMillis;
+	}
+}
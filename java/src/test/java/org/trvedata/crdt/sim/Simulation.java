@@ -0,0 +1,203 @@
+package org.trvedata.crdt.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.trvedata.crdt.Peer;
+import org.trvedata.crdt.orderedlist.OrderedList;
+
+/**
+ * Drives many peers editing a shared {@link OrderedList} through a {@link SimulatedNetwork}, to test convergence and
+ * find scaling limits of causal delivery and the list. Each peer makes editsPerPeer random insertions and deletions,
+ * spaced on average editIntervalMillis apart, and sends its pending operations to all other peers flushIntervalMillis
+ * after the first of them. Optionally, a fraction of the peers is partitioned from the rest for a while.
+ *
+ * Everything runs on a virtual clock with a random number generator seeded from the configuration, so a run with
+ * the same configuration always produces the same sequence of events (only the real-time measurements differ).
+ *
+ * Run {@link #main(String[])} with the number of peers, edits per peer and seed to get a quick report.
+ */
+public class Simulation {
+	private int peerCount = 10;
+	private int editsPerPeer = 100;
+	private long editIntervalMillis = 100;
+	private long flushIntervalMillis = 20;
+	private double deleteProbability = 0.25;
+	private long seed = 0;
+	private NetworkConfig network = new NetworkConfig();
+	private long partitionStartMillis = -1, partitionDurationMillis;
+	private double partitionFraction;
+	private boolean measureMemory = true;
+
+	public Simulation setPeerCount(int peerCount) {
+		if (peerCount < 1)
+			throw new IllegalArgumentException("peerCount must be >= 1: " + peerCount);
+		this.peerCount = peerCount;
+		return this;
+	}
+
+	public Simulation setEditsPerPeer(int editsPerPeer) {
+		this.editsPerPeer = editsPerPeer;
+		return this;
+	}
+
+	public Simulation setEditIntervalMillis(long editIntervalMillis) {
+		if (editIntervalMillis < 1)
+			throw new IllegalArgumentException("editIntervalMillis must be >= 1: " + editIntervalMillis);
+		this.editIntervalMillis = editIntervalMillis;
+		return this;
+	}
+
+	public Simulation setFlushIntervalMillis(long flushIntervalMillis) {
+		this.flushIntervalMillis = flushIntervalMillis;
+		return this;
+	}
+
+	public Simulation setDeleteProbability(double deleteProbability) {
+		this.deleteProbability = deleteProbability;
+		return this;
+	}
+
+	public Simulation setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	public Simulation setNetwork(NetworkConfig network) {
+		this.network = network;
+		return this;
+	}
+
+	/**
+	 * Partitions the given fraction of peers from the others, starting at the given virtual time.
+	 */
+	public Simulation setPartition(long startMillis, long durationMillis, double fraction) {
+		this.partitionStartMillis = startMillis;
+		this.partitionDurationMillis = durationMillis;
+		this.partitionFraction = fraction;
+		return this;
+	}
+
+	/**
+	 * Whether to measure heap usage per peer, which requires garbage collections before and after the run.
+	 */
+	public Simulation setMeasureMemory(boolean measureMemory) {
+		this.measureMemory = measureMemory;
+		return this;
+	}
+
+	public SimulationResult run() {
+		final long usedBefore = this.measureMemory ? usedMemory() : 0;
+		final long startNanos = System.nanoTime();
+		final Random random = new Random(this.seed);
+		final VirtualClock clock = new VirtualClock();
+		final List<Peer> peers = new ArrayList<Peer>(this.peerCount);
+		for (int i = 0; i < this.peerCount; i++)
+			peers.add(new Peer(String.format("peer%05d", i), new OrderedList<Character>()));
+		final SimulatedNetwork net = new SimulatedNetwork(clock, this.network, random, peers);
+		final long[] lastEditMillis = new long[1];
+		final long[] localEdits = new long[1];
+
+		for (int i = 0; i < this.peerCount; i++) {
+			final int peerIndex = i;
+			final boolean[] flushScheduled = new boolean[1];
+			final Runnable flush = new Runnable() {
+				@Override
+				public void run() {
+					flushScheduled[0] = false;
+					Peer peer = peers.get(peerIndex);
+					if (peer.anythingToSend())
+						net.broadcast(peerIndex, peer.makeMessage());
+				}
+			};
+			clock.schedule(nextEditDelay(random), new Runnable() {
+				int remaining = editsPerPeer;
+
+				@Override
+				public void run() {
+					edit(peers.get(peerIndex), random);
+					localEdits[0]++;
+					lastEditMillis[0] = clock.nowMillis();
+					if (!flushScheduled[0]) {
+						flushScheduled[0] = true;
+						clock.schedule(flushIntervalMillis, flush);
+					}
+					if (--remaining > 0)
+						clock.schedule(nextEditDelay(random), this);
+				}
+			});
+		}
+
+		if (this.partitionStartMillis >= 0) {
+			final List<Integer> side = new ArrayList<Integer>();
+			for (int i = 0; i < this.peerCount * this.partitionFraction; i++)
+				side.add(i);
+			clock.scheduleAt(this.partitionStartMillis, new Runnable() {
+				@Override
+				public void run() {
+					net.partition(side);
+				}
+			});
+			clock.scheduleAt(this.partitionStartMillis + this.partitionDurationMillis, new Runnable() {
+				@Override
+				public void run() {
+					net.heal();
+				}
+			});
+		}
+
+		clock.runUntilIdle();
+		final long wallMillis = (System.nanoTime() - startNanos) / 1000000;
+
+		boolean converged = true;
+		long appliedOperations = 0;
+		List<Character> expected = list(peers.get(0)).toList();
+		for (Peer peer : peers) {
+			appliedOperations += peer.appliedOperationCount();
+			if (peer.bufferedOperationCount() != 0 || peer.heldMessageCount() != 0
+					|| !list(peer).toList().equals(expected))
+				converged = false;
+		}
+		final long bytesPerPeer = this.measureMemory ? (usedMemory() - usedBefore) / this.peerCount : -1;
+		SimulationResult result = new SimulationResult(this.peerCount, localEdits[0], appliedOperations,
+				net.messagesDelivered(), net.duplicatesDelivered(), net.transmissionsLost(), net.messagesReordered(),
+				lastEditMillis[0], net.lastDeliveryMillis(), converged, wallMillis, bytesPerPeer);
+		// Keep the peers reachable until memory has been measured.
+		peers.clear();
+		return result;
+	}
+
+	private long nextEditDelay(Random random) {
+		return 1 + (long) (random.nextDouble() * 2 * this.editIntervalMillis);
+	}
+
+	private void edit(Peer peer, Random random) {
+		OrderedList<Character> list = list(peer);
+		if (list.size() > 0 && random.nextDouble() < this.deleteProbability)
+			list.remove(random.nextInt(list.size()));
+		else
+			list.insert(random.nextInt(list.size() + 1), (char) ('a' + random.nextInt(26)));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static OrderedList<Character> list(Peer peer) {
+		return (OrderedList<Character>) peer.getCRDT();
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	public static void main(String[] args) {
+		int peers = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int edits = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+		SimulationResult result = new Simulation().setPeerCount(peers).setEditsPerPeer(edits).setSeed(seed)
+				.setNetwork(new NetworkConfig().setDropProbability(0.01)).run();
+		System.out.println(result);
+	}
+}
@@ -0,0 +1,124 @@
+package org.trvedata.crdt.sim;
+
+/**
+ * Measurements from one run of a {@link Simulation}.
+ */
+public class SimulationResult {
+	private final int peerCount;
+	private final long localEdits;
+	private final long appliedOperations;
+	private final long messagesDelivered;
+	private final long duplicatesDelivered;
+	private final long transmissionsLost;
+	private final long messagesReordered;
+	private final long lastEditMillis;
+	private final long convergedAtMillis;
+	private final boolean converged;
+	private final long wallMillis;
+	private final long bytesPerPeer;
+
+	SimulationResult(int peerCount, long localEdits, long appliedOperations, long messagesDelivered,
+			long duplicatesDelivered, long transmissionsLost, long messagesReordered, long lastEditMillis,
+			long convergedAtMillis, boolean converged, long wallMillis, long bytesPerPeer) {
+		this.peerCount = peerCount;
+		this.localEdits = localEdits;
+		this.appliedOperations = appliedOperations;
+		this.messagesDelivered = messagesDelivered;
+		this.duplicatesDelivered = duplicatesDelivered;
+		this.transmissionsLost = transmissionsLost;
+		this.messagesReordered = messagesReordered;
+		this.lastEditMillis = lastEditMillis;
+		this.convergedAtMillis = convergedAtMillis;
+		this.converged = converged;
+		this.wallMillis = wallMillis;
+		this.bytesPerPeer = bytesPerPeer;
+	}
+
+	public int getPeerCount() {
+		return peerCount;
+	}
+
+	public long getLocalEdits() {
+		return localEdits;
+	}
+
+	/**
+	 * Total number of remote operations applied, summed over all peers.
+	 */
+	public long getAppliedOperations() {
+		return appliedOperations;
+	}
+
+	public long getMessagesDelivered() {
+		return messagesDelivered;
+	}
+
+	public long getDuplicatesDelivered() {
+		return duplicatesDelivered;
+	}
+
+	public long getTransmissionsLost() {
+		return transmissionsLost;
+	}
+
+	/**
+	 * Number of messages that were allowed to overtake earlier messages from the same sender.
+	 */
+	public long getMessagesReordered() {
+		return messagesReordered;
+	}
+
+	/**
+	 * True if all peers ended up with the same list contents and no buffered operations or held messages.
+	 */
+	public boolean isConverged() {
+		return converged;
+	}
+
+	/**
+	 * Virtual time between the last local edit and the last message delivery, after which all peers were in the
+	 * same state.
+	 */
+	public long getConvergenceMillis() {
+		return Math.max(0, convergedAtMillis - lastEditMillis);
+	}
+
+	/**
+	 * Virtual time at which the last message was delivered.
+	 */
+	public long getConvergedAtMillis() {
+		return convergedAtMillis;
+	}
+
+	/**
+	 * Real time taken to run the simulation.
+	 */
+	public long getWallMillis() {
+		return wallMillis;
+	}
+
+	/**
+	 * Remote operations applied per second of real time, i.e. the throughput of causal delivery and the CRDT.
+	 */
+	public double getAppliedOperationsPerSecond() {
+		return wallMillis == 0 ? 0 : appliedOperations * 1000.0 / wallMillis;
+	}
+
+	/**
+	 * Approximate heap usage per peer at the end of the simulation, or -1 if memory was not measured.
+	 */
+	public long getBytesPerPeer() {
+		return bytesPerPeer;
+	}
+
+	@Override
+	public String toString() {
+		return "SimulationResult [peers=" + peerCount + ", localEdits=" + localEdits + ", appliedOperations="
+				+ appliedOperations + ", messagesDelivered=" + messagesDelivered + ", duplicatesDelivered="
+				+ duplicatesDelivered + ", transmissionsLost=" + transmissionsLost + ", messagesReordered=" + messagesReordered
+				+ ", converged=" + converged
+				+ ", convergenceMillis=" + getConvergenceMillis() + ", wallMillis=" + wallMillis
+				+ ", appliedOpsPerSecond=" + Math.round(getAppliedOperationsPerSecond()) + ", bytesPerPeer="
+				+ bytesPerPeer + "]";
+	}
+}
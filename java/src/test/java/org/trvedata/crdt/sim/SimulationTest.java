@@ -0,0 +1,42 @@
+package org.trvedata.crdt.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SimulationTest {
+
+	@Test
+	public void testConvergeDespiteDropsAndPartition() { // should converge after drops, duplicates and a partition
+		SimulationResult result = new Simulation().setPeerCount(20).setEditsPerPeer(30).setSeed(42)
+				.setNetwork(new NetworkConfig().setLatencyMillis(5, 200).setDropProbability(0.1))
+				.setPartition(500, 2000, 0.3).setMeasureMemory(false).run();
+		assertTrue(result.toString(), result.isConverged());
+		assertEquals(result.getLocalEdits(), 600);
+		assertTrue(result.getTransmissionsLost() > 0);
+		assertTrue(result.getDuplicatesDelivered() > 0);
+		assertTrue(result.getConvergenceMillis() > 0);
+	}
+
+	@Test
+	public void testConvergeDespiteReordering() { // should converge when messages from one sender arrive out of order
+		SimulationResult result = new Simulation().setPeerCount(10).setEditsPerPeer(30).setSeed(3)
+				.setNetwork(new NetworkConfig().setLatencyMillis(5, 200).setDropProbability(0.05)
+						.setReorderProbability(0.5)).setMeasureMemory(false).run();
+		assertTrue(result.toString(), result.isConverged());
+		assertTrue(result.getMessagesReordered() > 0);
+		assertEquals(result.getLocalEdits(), 300);
+	}
+
+	@Test
+	public void testDeterministicForSeed() { // should replay the same events for the same seed
+		Simulation simulation = new Simulation().setPeerCount(10).setEditsPerPeer(20).setSeed(7)
+				.setNetwork(new NetworkConfig().setDropProbability(0.05)).setMeasureMemory(false);
+		SimulationResult first = simulation.run();
+		SimulationResult second = simulation.run();
+		assertEquals(first.getConvergedAtMillis(), second.getConvergedAtMillis());
+		assertEquals(first.getMessagesDelivered(), second.getMessagesDelivered());
+		assertEquals(first.getAppliedOperations(), second.getAppliedOperations());
+	}
+}
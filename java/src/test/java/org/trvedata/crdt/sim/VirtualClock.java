@@ -0,0 +1,81 @@
+package org.trvedata.crdt.sim;
+
+import java.util.PriorityQueue;
+
+/**
+ * Discrete-event clock for simulations. Tasks are scheduled at a virtual time, and running a task advances the
+ * clock to that time. Tasks scheduled for the same time run in the order in which they were scheduled, so a
+ * simulation driven by a seeded random number generator always runs the same way.
+ */
+public class VirtualClock {
+	private static class Task implements Comparable<Task> {
+		final long timeMillis;
+		final long seq;
+		final Runnable action;
+
+		Task(long timeMillis, long seq, Runnable action) {
+			this.timeMillis = timeMillis;
+			this.seq = seq;
+			this.action = action;
+		}
+
+		@Override
+		public int compareTo(Task other) {
+			if (this.timeMillis != other.timeMillis)
+				return Long.compare(this.timeMillis, other.timeMillis);
+			return Long.compare(this.seq, other.seq);
+		}
+	}
+
+	private final PriorityQueue<Task> tasks = new PriorityQueue<Task>();
+	private long nowMillis = 0;
+	private long nextSeq = 0;
+
+	public long nowMillis() {
+		return nowMillis;
+	}
+
+	public void schedule(long delayMillis, Runnable action) {
+		scheduleAt(this.nowMillis + delayMillis, action);
+	}
+
+	public void scheduleAt(long timeMillis, Runnable action) {
+		if (timeMillis < this.nowMillis)
+			throw new IllegalArgumentException("Cannot schedule in the past: " + timeMillis + " < " + this.nowMillis);
+		this.tasks.add(new Task(timeMillis, this.nextSeq++, action));
+	}
+
+	/**
+	 * Runs the next task, advancing the clock to its time. Returns <code>false</code> if no tasks are scheduled.
+	 */
+	public boolean runNext() {
+		Task task = this.tasks.poll();
+		if (task == null)
+			return false;
+		this.nowMillis = task.timeMillis;
+		task.action.run();
+		return true;
+	}
+
+	/**
+	 * Runs all tasks scheduled up to the given time (including those they schedule), then advances the clock to it.
+	 */
+	public void runUntil(long timeMillis) {
+		while (!this.tasks.isEmpty() && this.tasks.peek().timeMillis <= timeMillis)
+			runNext();
+		if (this.nowMillis < timeMillis)
+			this.nowMillis = timeMillis;
+	}
+
+	/**
+	 * Runs tasks until none are left.
+	 */
+	public void runUntilIdle() {
+		while (runNext())
+			;
+	}
+
+	public int pendingTasks() {
+		return this.tasks.size();
+	}
+}
@@ -0,0 +1,27 @@
+package org.trvedata.crdt.trace;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Replays a trace file several times with {@link TraceReplayer} and prints the measurements of each run; the first
+ * runs also warm up the JIT compiler. Usage: <code>TraceReplayBenchmark &lt;trace file&gt; [iterations]</code>.
+ */
+public class TraceReplayBenchmark {
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: TraceReplayBenchmark <trace file> [iterations]");
+			System.exit(1);
+		}
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		TraceReplayer replayer;
+		FileInputStream in = new FileInputStream(args[0]);
+		try {
+			replayer = new TraceReplayer(in);
+		} finally {
+			in.close();
+		}
+		for (int i = 0; i < iterations; i++)
+			System.out.println(replayer.replay());
+	}
+}
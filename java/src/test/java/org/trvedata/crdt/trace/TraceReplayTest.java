@@ -0,0 +1,50 @@
+package org.trvedata.crdt.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+import org.trvedata.crdt.ItemID;
+import org.trvedata.crdt.Peer;
+import org.trvedata.crdt.orderedlist.OrderedList;
+
+public class TraceReplayTest {
+
+	@Test
+	public void testRecordAndReplay() throws Exception { // should reproduce the recorded session on every replay
+		Peer peer1 = new Peer("peer1", new OrderedList<Character>());
+		Peer peer2 = new Peer("peer2", new OrderedList<Character>());
+		@SuppressWarnings("unchecked")
+		OrderedList<Character> list2 = (OrderedList<Character>) peer2.getCRDT();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TraceRecorder<Character> recorder = new TraceRecorder<Character>(peer1, bytes);
+		recorder.insert(0, 'a').insert(1, 'b');
+		ItemID c = recorder.insertBeforeId(null, 'c');
+		peer2.processMessage(recorder.makeMessage());
+		list2.insert(3, 'd').remove(0);
+		list2.insertBeforeId(c, 'x');
+		recorder.processMessage(peer2.makeMessage());
+		recorder.removeBeforeId(c, 1);
+		recorder.remove(0);
+		recorder.close();
+
+		@SuppressWarnings("unchecked")
+		OrderedList<Character> list1 = (OrderedList<Character>) peer1.getCRDT();
+		TraceReplayer replayer = new TraceReplayer(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(replayer.getPeerId(), peer1.getPeerId());
+		assertEquals(replayer.eventCount(), 7);
+		for (int i = 0; i < 2; i++) {
+			ReplayResult result = replayer.replay();
+			assertEquals(result.getLocalEdits(), 5);
+			assertEquals(result.getMessagesReceived(), 1);
+			assertEquals(result.getRemoteOperations(), 3);
+			assertEquals(result.getFinalSize(), list1.size());
+			assertEquals(result.getFinalContents(), list1.toList());
+			assertTrue(result.getOperationsPerSecond() > 0);
+		}
+	}
+}